@@ -24,6 +24,8 @@ import org.ceskaexpedice.fedoramodel.DigitalObject;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Main repository access point for managing digital objects and datastreams.
@@ -77,6 +79,17 @@ public interface AkubraRepository {
      */
     DigitalObjectMetadata getMetadata(String pid);
 
+    /**
+     * Collects several facts about a digital object in a single streaming pass over its FOXML.
+     * Parsing stops as soon as all requested fields are known, e.g. right after the RELS-EXT datastream
+     * for {@link InspectionField#MODEL}, so large objects are not read to the end.
+     *
+     * @param pid    The persistent identifier of the object.
+     * @param fields The fields to collect.
+     * @return The inspection result, or {@code null} if the object does not exist.
+     */
+    ObjectInspection inspect(String pid, InspectionField... fields);
+
     /**
      * Deletes a digital object from the repository.
      *
@@ -231,6 +244,22 @@ public interface AkubraRepository {
      */
     void updateExternalDatastream(String pid, KnownDatastreams dsId, String url, String mimeType);
 
+    /**
+     * Creates, replaces and deletes several datastreams of a digital object at once.
+     * All operations run under one lock of the object, the object is written once
+     * and the processing index is updated at most once. Does nothing if the object does not exist.
+     * <pre>{@code
+     * repository.updateDatastreams(pid, batch -> batch
+     *         .createXMLDatastream(KnownDatastreams.BIBLIO_MODS, "text/xml", mods)
+     *         .createManagedDatastream(KnownDatastreams.IMG_FULL, "image/jp2", image)
+     *         .deleteDatastream(KnownDatastreams.IMG_PREVIEW));
+     * }</pre>
+     *
+     * @param pid        The persistent identifier of the object.
+     * @param operations Fills the batch with the changes.
+     */
+    void updateDatastreams(String pid, Consumer<DatastreamBatch> operations);
+
     /**
      * Checks if a datastream exists for a given object.
      *
@@ -318,6 +347,17 @@ public interface AkubraRepository {
      */
     ProcessingIndex pi();
 
+    /**
+     * Waits until processing index updates caused by writes so far are applied and committed.
+     * Only relevant when the repository is configured to update the processing index in background,
+     * returns {@code true} immediately otherwise.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The time unit of the timeout.
+     * @return {@code true} if all updates are done, {@code false} if the timeout elapsed.
+     */
+    boolean awaitProcessingIndexUpdates(long timeout, TimeUnit unit);
+
     //-------------------- RelsExt -----------------------
 
     /**
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra;
+
+import java.io.InputStream;
+
+/**
+ * Collects datastream changes of one digital object that are written together.
+ * <p>
+ * Used with {@link AkubraRepository#updateDatastreams(String, java.util.function.Consumer)}; all operations run
+ * under one lock of the object and result in a single write of the object and at most one processing index update.
+ * Creating a datastream that already exists replaces it. Operations are applied in the order they are called.
+ * </p>
+ */
+public interface DatastreamBatch {
+
+    /**
+     * Creates or replaces an XML datastream.
+     *
+     * @param dsId       The datastream identifier.
+     * @param mimeType   The MIME type of the datastream.
+     * @param xmlContent The XML content as an input stream.
+     * @return This batch.
+     */
+    DatastreamBatch createXMLDatastream(String dsId, String mimeType, InputStream xmlContent);
+
+    /**
+     * Creates or replaces an XML datastream.
+     *
+     * @param dsId       The datastream identifier as enum.
+     * @param mimeType   The MIME type of the datastream.
+     * @param xmlContent The XML content as an input stream.
+     * @return This batch.
+     */
+    default DatastreamBatch createXMLDatastream(KnownDatastreams dsId, String mimeType, InputStream xmlContent) {
+        return createXMLDatastream(dsId.toString(), mimeType, xmlContent);
+    }
+
+    /**
+     * Creates or replaces a managed datastream. The content is streamed to the datastream store right away.
+     *
+     * @param dsId          The datastream identifier.
+     * @param mimeType      The MIME type of the datastream.
+     * @param binaryContent The binary content as an input stream.
+     * @return This batch.
+     */
+    DatastreamBatch createManagedDatastream(String dsId, String mimeType, InputStream binaryContent);
+
+    /**
+     * Creates or replaces a managed datastream. The content is streamed to the datastream store right away.
+     *
+     * @param dsId          The datastream identifier as enum.
+     * @param mimeType      The MIME type of the datastream.
+     * @param binaryContent The binary content as an input stream.
+     * @return This batch.
+     */
+    default DatastreamBatch createManagedDatastream(KnownDatastreams dsId, String mimeType, InputStream binaryContent) {
+        return createManagedDatastream(dsId.toString(), mimeType, binaryContent);
+    }
+
+    /**
+     * Creates or replaces an external datastream linking to an external resource. (Type of datastream is 'E')
+     *
+     * @param dsId     The datastream identifier.
+     * @param url      The external URL.
+     * @param mimeType The MIME type of the datastream.
+     * @return This batch.
+     */
+    DatastreamBatch createExternalDatastream(String dsId, String url, String mimeType);
+
+    /**
+     * Creates or replaces an external datastream linking to an external resource. (Type of datastream is 'E')
+     *
+     * @param dsId     The datastream identifier as enum.
+     * @param url      The external URL.
+     * @param mimeType The MIME type of the datastream.
+     * @return This batch.
+     */
+    default DatastreamBatch createExternalDatastream(KnownDatastreams dsId, String url, String mimeType) {
+        return createExternalDatastream(dsId.toString(), url, mimeType);
+    }
+
+    /**
+     * Deletes a datastream; does nothing if it does not exist.
+     *
+     * @param dsId The datastream identifier.
+     * @return This batch.
+     */
+    DatastreamBatch deleteDatastream(String dsId);
+
+    /**
+     * Deletes a datastream; does nothing if it does not exist.
+     *
+     * @param dsId The datastream identifier as enum.
+     * @return This batch.
+     */
+    default DatastreamBatch deleteDatastream(KnownDatastreams dsId) {
+        return deleteDatastream(dsId.toString());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra;
+
+/**
+ * Facts that can be collected from a digital object in one pass by {@link AkubraRepository#inspect(String, InspectionField...)}.
+ *
+ * @author pavels, petrp
+ */
+public enum InspectionField {
+    /**
+     * Model of the object from RELS-EXT (e.g. {@code page}).
+     */
+    MODEL,
+    /**
+     * Tiles URL from RELS-EXT.
+     */
+    TILES_URL,
+    /**
+     * PID of the first child from RELS-EXT.
+     */
+    FIRST_CHILD,
+    /**
+     * Object properties (label, created date, last modified date...).
+     */
+    OBJECT_PROPERTIES,
+    /**
+     * IDs of all datastreams of the object.
+     */
+    DATASTREAM_NAMES
+}
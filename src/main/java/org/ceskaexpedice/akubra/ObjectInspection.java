@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Result of {@link AkubraRepository#inspect(String, InspectionField...)}.
+ * <p>
+ * Only the requested fields are collected; getters of the fields that were not requested return null.
+ * </p>
+ *
+ * @author pavels, petrp
+ */
+public interface ObjectInspection {
+
+    /**
+     * Returns the fields this inspection was requested for.
+     *
+     * @return The requested fields.
+     */
+    Set<InspectionField> getFields();
+
+    /**
+     * Retrieves the model of the object.
+     *
+     * @return The model or null if not found.
+     */
+    String getModel();
+
+    /**
+     * Retrieves the URL of the tileset associated with the object.
+     *
+     * @return The URL or null if not found.
+     */
+    String getTilesUrl();
+
+    /**
+     * Retrieves the PID of the first child object in the hierarchy.
+     *
+     * @return The PID of the first child or null if not found.
+     */
+    String getPidOfFirstChild();
+
+    /**
+     * Retrieves the object properties.
+     *
+     * @return The object metadata.
+     */
+    DigitalObjectMetadata getMetadata();
+
+    /**
+     * Retrieves IDs of all datastreams of the object.
+     *
+     * @return The datastream IDs.
+     */
+    List<String> getDatastreamNames();
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.config;
+
+/**
+ * How explicit processing index commits are sent to Solr.
+ */
+public enum CommitStrategy {
+    /**
+     * Hard commit for every request; changes are durable and visible when the call returns.
+     */
+    HARD,
+    /**
+     * Soft commit for every request; changes are visible when the call returns, durability is left to the autoCommit of the core.
+     */
+    SOFT,
+    /**
+     * No explicit commits, updates carry commitWithin and Solr makes them visible within the configured time.
+     */
+    COMMIT_WITHIN,
+    /**
+     * Hard commits, concurrent requests are merged; a request waits for one commit started after it was made.
+     */
+    GROUP
+}
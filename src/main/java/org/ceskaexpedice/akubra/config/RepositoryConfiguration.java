@@ -16,6 +16,7 @@
  */
 package org.ceskaexpedice.akubra.config;
 
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexUpdateFailureListener;
 import org.ceskaexpedice.hazelcast.HazelcastConfiguration;
 
 /**
@@ -30,6 +31,28 @@ public class RepositoryConfiguration {
     private final String datastreamStorePath;
     private final String datastreamStorePattern;
     private final HazelcastConfiguration hazelcastConfiguration;
+    private final long objectCacheMaxBytes;
+    private final long objectCacheExpirationSecs;
+    private final int jaxbPoolMaxSize;
+    private final long jaxbPoolAcquireTimeoutSecs;
+    private final int jaxbPoolWarmupSize;
+    private final FoxmlBinding foxmlBinding;
+    private final boolean processingIndexAsyncUpdates;
+    private final int processingIndexUpdateThreads;
+    private final int processingIndexUpdateQueueSize;
+    private final CommitStrategy processingIndexCommitStrategy;
+    private final int processingIndexCommitWithinMs;
+    private final boolean processingIndexTargetStreamsFromStorage;
+    private final int processingIndexSolrThreads;
+    private final int processingIndexSolrQueueSize;
+    private final int processingIndexSolrBatchSize;
+    private final ProcessingIndexUpdateFailureListener processingIndexUpdateFailureListener;
+    private final String processingIndexRetrySpoolPath;
+    private final long processingIndexRetryInitialDelayMs;
+    private final long processingIndexRetryMaxDelayMs;
+    private final int processingIndexCursorPrefetchPages;
+    private final long processingIndexQueryCacheSize;
+    private final long processingIndexQueryCacheExpirationSecs;
 
     /**
      * Constructor for RepositoryConfiguration using the Builder pattern.
@@ -43,6 +66,28 @@ public class RepositoryConfiguration {
         this.datastreamStorePath = builder.datastreamStorePath;
         this.datastreamStorePattern = builder.datastreamStorePattern;
         this.hazelcastConfiguration = builder.hazelcastConfiguration;
+        this.objectCacheMaxBytes = builder.objectCacheMaxBytes;
+        this.objectCacheExpirationSecs = builder.objectCacheExpirationSecs;
+        this.jaxbPoolMaxSize = builder.jaxbPoolMaxSize;
+        this.jaxbPoolAcquireTimeoutSecs = builder.jaxbPoolAcquireTimeoutSecs;
+        this.jaxbPoolWarmupSize = builder.jaxbPoolWarmupSize;
+        this.foxmlBinding = builder.foxmlBinding;
+        this.processingIndexAsyncUpdates = builder.processingIndexAsyncUpdates;
+        this.processingIndexUpdateThreads = builder.processingIndexUpdateThreads;
+        this.processingIndexUpdateQueueSize = builder.processingIndexUpdateQueueSize;
+        this.processingIndexCommitStrategy = builder.processingIndexCommitStrategy;
+        this.processingIndexCommitWithinMs = builder.processingIndexCommitWithinMs;
+        this.processingIndexTargetStreamsFromStorage = builder.processingIndexTargetStreamsFromStorage;
+        this.processingIndexSolrThreads = builder.processingIndexSolrThreads;
+        this.processingIndexSolrQueueSize = builder.processingIndexSolrQueueSize;
+        this.processingIndexSolrBatchSize = builder.processingIndexSolrBatchSize;
+        this.processingIndexUpdateFailureListener = builder.processingIndexUpdateFailureListener;
+        this.processingIndexRetrySpoolPath = builder.processingIndexRetrySpoolPath;
+        this.processingIndexRetryInitialDelayMs = builder.processingIndexRetryInitialDelayMs;
+        this.processingIndexRetryMaxDelayMs = builder.processingIndexRetryMaxDelayMs;
+        this.processingIndexCursorPrefetchPages = builder.processingIndexCursorPrefetchPages;
+        this.processingIndexQueryCacheSize = builder.processingIndexQueryCacheSize;
+        this.processingIndexQueryCacheExpirationSecs = builder.processingIndexQueryCacheExpirationSecs;
     }
 
     public String getProcessingIndexHost() {
@@ -69,6 +114,94 @@ public class RepositoryConfiguration {
         return hazelcastConfiguration;
     }
 
+    public long getObjectCacheMaxBytes() {
+        return objectCacheMaxBytes;
+    }
+
+    public long getObjectCacheExpirationSecs() {
+        return objectCacheExpirationSecs;
+    }
+
+    public int getJaxbPoolMaxSize() {
+        return jaxbPoolMaxSize;
+    }
+
+    public long getJaxbPoolAcquireTimeoutSecs() {
+        return jaxbPoolAcquireTimeoutSecs;
+    }
+
+    public int getJaxbPoolWarmupSize() {
+        return jaxbPoolWarmupSize;
+    }
+
+    public FoxmlBinding getFoxmlBinding() {
+        return foxmlBinding;
+    }
+
+    public boolean isProcessingIndexAsyncUpdates() {
+        return processingIndexAsyncUpdates;
+    }
+
+    public int getProcessingIndexUpdateThreads() {
+        return processingIndexUpdateThreads;
+    }
+
+    public int getProcessingIndexUpdateQueueSize() {
+        return processingIndexUpdateQueueSize;
+    }
+
+    public CommitStrategy getProcessingIndexCommitStrategy() {
+        return processingIndexCommitStrategy;
+    }
+
+    public int getProcessingIndexCommitWithinMs() {
+        return processingIndexCommitWithinMs;
+    }
+
+    public boolean isProcessingIndexTargetStreamsFromStorage() {
+        return processingIndexTargetStreamsFromStorage;
+    }
+
+    public int getProcessingIndexSolrThreads() {
+        return processingIndexSolrThreads;
+    }
+
+    public int getProcessingIndexSolrQueueSize() {
+        return processingIndexSolrQueueSize;
+    }
+
+    public int getProcessingIndexSolrBatchSize() {
+        return processingIndexSolrBatchSize;
+    }
+
+    public ProcessingIndexUpdateFailureListener getProcessingIndexUpdateFailureListener() {
+        return processingIndexUpdateFailureListener;
+    }
+
+    public String getProcessingIndexRetrySpoolPath() {
+        return processingIndexRetrySpoolPath;
+    }
+
+    public long getProcessingIndexRetryInitialDelayMs() {
+        return processingIndexRetryInitialDelayMs;
+    }
+
+    public long getProcessingIndexRetryMaxDelayMs() {
+        return processingIndexRetryMaxDelayMs;
+    }
+
+    public int getProcessingIndexCursorPrefetchPages() {
+        return processingIndexCursorPrefetchPages;
+    }
+
+    public long getProcessingIndexQueryCacheSize() {
+        return processingIndexQueryCacheSize;
+    }
+
+    public long getProcessingIndexQueryCacheExpirationSecs() {
+        return processingIndexQueryCacheExpirationSecs;
+    }
+
     /**
      * Builder class for constructing a {@link RepositoryConfiguration}.
      */
@@ -80,6 +213,28 @@ public class RepositoryConfiguration {
         private String datastreamStorePath;
         private String datastreamStorePattern;
         private HazelcastConfiguration hazelcastConfiguration;
+        private long objectCacheMaxBytes = 0;
+        private long objectCacheExpirationSecs = 0;
+        private int jaxbPoolMaxSize = 50;
+        private long jaxbPoolAcquireTimeoutSecs = 60;
+        private int jaxbPoolWarmupSize = 0;
+        private FoxmlBinding foxmlBinding = FoxmlBinding.JAXB;
+        private boolean processingIndexAsyncUpdates = false;
+        private int processingIndexUpdateThreads = 2;
+        private int processingIndexUpdateQueueSize = 10000;
+        private CommitStrategy processingIndexCommitStrategy = CommitStrategy.HARD;
+        private int processingIndexCommitWithinMs = 1000;
+        private boolean processingIndexTargetStreamsFromStorage = true;
+        private int processingIndexSolrThreads = 1;
+        private int processingIndexSolrQueueSize = 100;
+        private int processingIndexSolrBatchSize = 500;
+        private ProcessingIndexUpdateFailureListener processingIndexUpdateFailureListener;
+        private String processingIndexRetrySpoolPath;
+        private long processingIndexRetryInitialDelayMs = 1000;
+        private long processingIndexRetryMaxDelayMs = 300000;
+        private int processingIndexCursorPrefetchPages = 1;
+        private long processingIndexQueryCacheSize = 0;
+        private long processingIndexQueryCacheExpirationSecs = 600;
 
         /**
          * Sets the host for the processing index.
@@ -147,6 +302,266 @@ public class RepositoryConfiguration {
             return this;
         }
 
+        /**
+         * Sets the maximal size of the FOXML object cache. The cache is disabled when the size is 0 (default).
+         * When several repository instances share one object store, use it together with {@link #objectCacheExpirationSecs(long)}
+         * as changes made by other instances are not propagated.
+         *
+         * @param objectCacheMaxBytes The maximal total size of cached objects in bytes.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder objectCacheMaxBytes(long objectCacheMaxBytes) {
+            this.objectCacheMaxBytes = objectCacheMaxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the expiration of FOXML object cache entries. Entries never expire when the value is 0 (default).
+         *
+         * @param objectCacheExpirationSecs The time after write in seconds after which a cached object is dropped.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder objectCacheExpirationSecs(long objectCacheExpirationSecs) {
+            this.objectCacheExpirationSecs = objectCacheExpirationSecs;
+            return this;
+        }
+
+        /**
+         * Sets the maximal number of JAXB marshallers and unmarshallers, each kind has its own pool of this size (default 50).
+         * Instances are created on demand.
+         *
+         * @param jaxbPoolMaxSize The maximal number of instances per pool.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder jaxbPoolMaxSize(int jaxbPoolMaxSize) {
+            this.jaxbPoolMaxSize = jaxbPoolMaxSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a read or write waits for a free JAXB marshaller or unmarshaller when all of them are in use (default 60).
+         *
+         * @param jaxbPoolAcquireTimeoutSecs The timeout in seconds.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder jaxbPoolAcquireTimeoutSecs(long jaxbPoolAcquireTimeoutSecs) {
+            this.jaxbPoolAcquireTimeoutSecs = jaxbPoolAcquireTimeoutSecs;
+            return this;
+        }
+
+        /**
+         * Sets the number of JAXB unmarshallers and marshallers created in background right after startup.
+         * Nothing is created in advance when the value is 0 (default); the repository is usable while the warmup runs.
+         *
+         * @param jaxbPoolWarmupSize The number of instances per pool to create in advance.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder jaxbPoolWarmupSize(int jaxbPoolWarmupSize) {
+            this.jaxbPoolWarmupSize = jaxbPoolWarmupSize;
+            return this;
+        }
+
+        /**
+         * Sets the implementation used to read and write FOXML objects; {@link FoxmlBinding#JAXB} by default.
+         * {@link FoxmlBinding#STAX} skips the JAXB context and pools and is faster for large objects.
+         *
+         * @param foxmlBinding The FOXML binding.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder foxmlBinding(FoxmlBinding foxmlBinding) {
+            this.foxmlBinding = foxmlBinding;
+            return this;
+        }
+
+        /**
+         * Moves processing index updates caused by ingest, RELS-EXT changes and deletes to background threads.
+         * Repeated updates of one object are merged; the index is committed whenever the queue runs empty.
+         * Disabled by default, writes then update the index before they return.
+         *
+         * @param processingIndexAsyncUpdates true to update the processing index in background.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexAsyncUpdates(boolean processingIndexAsyncUpdates) {
+            this.processingIndexAsyncUpdates = processingIndexAsyncUpdates;
+            return this;
+        }
+
+        /**
+         * Sets the number of background threads updating the processing index; 2 by default.
+         *
+         * @param processingIndexUpdateThreads The number of threads.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexUpdateThreads(int processingIndexUpdateThreads) {
+            this.processingIndexUpdateThreads = processingIndexUpdateThreads;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of objects waiting for a background processing index update; 10000 by default.
+         * Writers block when the limit is reached.
+         *
+         * @param processingIndexUpdateQueueSize The maximum number of waiting objects.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexUpdateQueueSize(int processingIndexUpdateQueueSize) {
+            this.processingIndexUpdateQueueSize = processingIndexUpdateQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets how processing index commits are sent to Solr; {@link CommitStrategy#HARD} by default.
+         *
+         * @param processingIndexCommitStrategy The commit strategy.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexCommitStrategy(CommitStrategy processingIndexCommitStrategy) {
+            this.processingIndexCommitStrategy = processingIndexCommitStrategy;
+            return this;
+        }
+
+        /**
+         * Sets the commitWithin of processing index updates used by {@link CommitStrategy#COMMIT_WITHIN}; 1000 by default.
+         *
+         * @param processingIndexCommitWithinMs The time in milliseconds within which Solr makes updates visible.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexCommitWithinMs(int processingIndexCommitWithinMs) {
+            this.processingIndexCommitWithinMs = processingIndexCommitWithinMs;
+            return this;
+        }
+
+        /**
+         * Sets whether stream names of relation targets that are not in the processing index yet are read from the object store.
+         * Enabled by default. When disabled, such relations get their target streams once the target itself is indexed.
+         *
+         * @param processingIndexTargetStreamsFromStorage true to read missing target stream names from the object store.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexTargetStreamsFromStorage(boolean processingIndexTargetStreamsFromStorage) {
+            this.processingIndexTargetStreamsFromStorage = processingIndexTargetStreamsFromStorage;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads sending updates to the processing index Solr; 1 by default.
+         * Updates of one object are always sent by the same thread, in order.
+         *
+         * @param processingIndexSolrThreads The number of Solr update threads.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexSolrThreads(int processingIndexSolrThreads) {
+            this.processingIndexSolrThreads = processingIndexSolrThreads;
+            return this;
+        }
+
+        /**
+         * Sets the number of update requests waiting for each Solr update thread; 100 by default.
+         * Writers block when the queue is full.
+         *
+         * @param processingIndexSolrQueueSize The queue size per Solr update thread.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexSolrQueueSize(int processingIndexSolrQueueSize) {
+            this.processingIndexSolrQueueSize = processingIndexSolrQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of documents of queued update requests merged into one Solr request; 500 by default.
+         *
+         * @param processingIndexSolrBatchSize The maximum number of merged documents.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexSolrBatchSize(int processingIndexSolrBatchSize) {
+            this.processingIndexSolrBatchSize = processingIndexSolrBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the listener notified about processing index documents that could not be written to Solr.
+         * Failures are only logged by default.
+         *
+         * @param processingIndexUpdateFailureListener The failure listener.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexUpdateFailureListener(ProcessingIndexUpdateFailureListener processingIndexUpdateFailureListener) {
+            this.processingIndexUpdateFailureListener = processingIndexUpdateFailureListener;
+            return this;
+        }
+
+        /**
+         * Sets the file where failed processing index operations are stored and from which they are retried.
+         * Not set by default; failed operations are then only reported, deletes and commits throw.
+         *
+         * @param processingIndexRetrySpoolPath The path of the retry spool file.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexRetrySpoolPath(String processingIndexRetrySpoolPath) {
+            this.processingIndexRetrySpoolPath = processingIndexRetrySpoolPath;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry of a failed processing index operation; 1000 by default.
+         * The delay doubles with each failed retry.
+         *
+         * @param processingIndexRetryInitialDelayMs The initial retry delay in milliseconds.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexRetryInitialDelayMs(long processingIndexRetryInitialDelayMs) {
+            this.processingIndexRetryInitialDelayMs = processingIndexRetryInitialDelayMs;
+            return this;
+        }
+
+        /**
+         * Sets the maximum delay between retries of a failed processing index operation; 300000 by default.
+         *
+         * @param processingIndexRetryMaxDelayMs The maximum retry delay in milliseconds.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexRetryMaxDelayMs(long processingIndexRetryMaxDelayMs) {
+            this.processingIndexRetryMaxDelayMs = processingIndexRetryMaxDelayMs;
+            return this;
+        }
+
+        /**
+         * Sets how many cursor pages a processing index scan reads ahead of its consumer; 1 by default.
+         * 0 reads the next page only after the consumer has finished the current one.
+         *
+         * @param processingIndexCursorPrefetchPages The number of pages read ahead.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexCursorPrefetchPages(int processingIndexCursorPrefetchPages) {
+            this.processingIndexCursorPrefetchPages = processingIndexCursorPrefetchPages;
+            return this;
+        }
+
+        /**
+         * Sets the maximal number of cached processing index query results (models, stream names, parents and
+         * relation checks). The cache is disabled when the size is 0 (default).
+         * Entries are invalidated by index updates of this instance only, updates made by other instances
+         * are picked up after {@link #processingIndexQueryCacheExpirationSecs(long)}.
+         *
+         * @param processingIndexQueryCacheSize The maximal number of cached results.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexQueryCacheSize(long processingIndexQueryCacheSize) {
+            this.processingIndexQueryCacheSize = processingIndexQueryCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the expiration of processing index query cache entries; 600 by default. Entries never expire when the value is 0.
+         *
+         * @param processingIndexQueryCacheExpirationSecs The time after write in seconds after which a cached result is dropped.
+         * @return The Builder instance.
+         */
+        public RepositoryConfiguration.Builder processingIndexQueryCacheExpirationSecs(long processingIndexQueryCacheExpirationSecs) {
+            this.processingIndexQueryCacheExpirationSecs = processingIndexQueryCacheExpirationSecs;
+            return this;
+        }
+
         /**
          * Builds the {@link RepositoryConfiguration} instance.
          *
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexItem;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Iterator over a cursor scan whose pages are fetched ahead by a background task.
+ * <p>
+ * The task walks the cursor and puts items into a queue holding up to {@code capacity} items, so the next pages
+ * are read from Solr while the caller processes the current one. The task blocks when the queue is full.
+ * </p>
+ * Fetch failures are rethrown from {@link #hasNext()}. {@link #close()} stops the task, iterators not read to
+ * the end must be closed.
+ */
+class CursorPrefetch implements Iterator<ProcessingIndexItem>, AutoCloseable {
+
+    private static final Object END = new Object();
+
+    /**
+     * Fetches one cursor page
+     */
+    @FunctionalInterface
+    interface PageFetcher {
+        /**
+         * @return cursor mark of the next page, equal to the given one after the last page
+         */
+        String fetch(String cursorMark, Consumer<ProcessingIndexItem> sink) throws Exception;
+    }
+
+    private record Failure(Exception exception) {
+    }
+
+    private final BlockingQueue<Object> queue;
+    private volatile boolean closed;
+    private Object next;
+
+    CursorPrefetch(PageFetcher fetcher, String cursorMark, int capacity, Executor executor) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity) + 1);
+        executor.execute(() -> produce(fetcher, cursorMark));
+    }
+
+    private void produce(PageFetcher fetcher, String cursorMark) {
+        try {
+            String cursor = cursorMark;
+            while (!closed) {
+                String nextCursor = fetcher.fetch(cursor, this::put);
+                if (cursor.equals(nextCursor)) {
+                    break;
+                }
+                cursor = nextCursor;
+            }
+            put(END);
+        } catch (Exception e) {
+            if (!closed) {
+                queue.clear();
+                queue.offer(new Failure(e));
+            }
+        }
+    }
+
+    private void put(Object item) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    // aborts the response being streamed
+                    throw new CancellationException("Cursor scan closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Cursor scan interrupted");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepositoryException("Interrupted while waiting for processing index results", e);
+            }
+        }
+        if (next instanceof Failure failure) {
+            next = END;
+            throw new RepositoryException(failure.exception());
+        }
+        return next != END;
+    }
+
+    @Override
+    public ProcessingIndexItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ProcessingIndexItem item = (ProcessingIndexItem) next;
+        next = null;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+}
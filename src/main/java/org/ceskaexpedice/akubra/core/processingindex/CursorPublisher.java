@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexItem;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publisher of a cursor scan; every subscriber gets its own {@link CursorPrefetch}.
+ * <p>
+ * Items are delivered from an executor thread, never more than the subscriber requested. The prefetch stops
+ * reading Solr when its queue is full, so a subscriber that requests slowly holds back the scan.
+ * </p>
+ */
+class CursorPublisher implements Flow.Publisher<ProcessingIndexItem> {
+
+    private final Supplier<CursorPrefetch> scan;
+    private final Executor executor;
+
+    CursorPublisher(Supplier<CursorPrefetch> scan, Executor executor) {
+        this.scan = scan;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ProcessingIndexItem> subscriber) {
+        new CursorSubscription(subscriber).start();
+    }
+
+    private final class CursorSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ProcessingIndexItem> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private CursorPrefetch items;
+        private Throwable invalidRequest;
+
+        private CursorSubscription(Flow.Subscriber<? super ProcessingIndexItem> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void start() {
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        // runs on one thread at a time, the counter hands over requests that arrive while it runs
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                try {
+                    if (!deliver()) {
+                        return;
+                    }
+                } catch (Throwable th) {
+                    terminate();
+                    subscriber.onError(th);
+                    return;
+                }
+                missed = pendingDrains.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return false once the subscription has terminated
+         */
+        private boolean deliver() {
+            if (cancelled) {
+                terminate();
+                return false;
+            }
+            if (invalidRequest != null) {
+                terminate();
+                subscriber.onError(invalidRequest);
+                return false;
+            }
+            if (items == null) {
+                items = scan.get();
+            }
+            while (demand.get() > 0 && !cancelled) {
+                if (!items.hasNext()) {
+                    terminate();
+                    subscriber.onComplete();
+                    return false;
+                }
+                subscriber.onNext(items.next());
+                demand.decrementAndGet();
+            }
+            if (cancelled) {
+                terminate();
+                return false;
+            }
+            return true;
+        }
+
+        private void terminate() {
+            cancelled = true;
+            if (items != null) {
+                items.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+/**
+ * Merges concurrent commit requests.
+ * <p>
+ * Every request returns after a commit that started after the request was made, so it sees its own updates.
+ * Requests arriving while a commit runs wait for it to finish and are then served together by one next commit.
+ * </p>
+ * A failed commit is rethrown to its leader only, waiting requests retry with a commit of their own.
+ */
+class GroupCommit {
+
+    private final Runnable commit;
+    private long started;
+    private long completed;
+    private boolean committing;
+    private long requestCount;
+    private long commitCount;
+
+    GroupCommit(Runnable commit) {
+        this.commit = commit;
+    }
+
+    void commit() {
+        long sequence;
+        synchronized (this) {
+            requestCount++;
+            long target = started + 1;
+            while (committing && completed < target) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a processing index commit", e);
+                }
+            }
+            if (completed >= target) {
+                return;
+            }
+            committing = true;
+            sequence = ++started;
+            commitCount++;
+        }
+        boolean done = false;
+        try {
+            commit.run();
+            done = true;
+        } finally {
+            synchronized (this) {
+                if (done) {
+                    completed = sequence;
+                }
+                committing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    synchronized long getCommitCount() {
+        return commitCount;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
+import org.ceskaexpedice.akubra.utils.DomUtils;
+import org.ceskaexpedice.fedoramodel.DatastreamType;
+import org.ceskaexpedice.fedoramodel.DatastreamVersionType;
+import org.ceskaexpedice.fedoramodel.DigitalObject;
+import org.w3c.dom.Element;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Datastreams of one object as needed to build its processing index documents.
+ * <p>
+ * Built either from one read of the stored FOXML or from the in-memory object being ingested, so indexing
+ * does not read the object again for stream names, RELS-EXT, DC or MODS.
+ * Only datastreams that are not inline XML are read from the repository.
+ * </p>
+ */
+final class IndexedObject {
+
+    private final String pid;
+    private final List<String> streamNames;
+    private final Function<String, Element> xmlContent;
+
+    private IndexedObject(String pid, List<String> streamNames, Function<String, Element> xmlContent) {
+        this.pid = pid;
+        this.streamNames = streamNames;
+        this.xmlContent = xmlContent;
+    }
+
+    /**
+     * Reads the stored object once.
+     * @return null if the object does not exist
+     */
+    static IndexedObject read(String pid, CoreRepository coreRepository) {
+        DatastreamIndex index = coreRepository.getDatastreamIndex(pid);
+        if (index == null) {
+            return null;
+        }
+        return new IndexedObject(pid, index.getDatastreamNames(), dsId -> {
+            DatastreamIndex.Datastream datastream = index.get(dsId);
+            if (datastream == null) {
+                return null;
+            }
+            if (datastream.getContentLocationRef() == null && datastream.hasXmlContent()) {
+                return parse(index.openXmlContent(dsId));
+            }
+            return parse(coreRepository.getDatastreamContent(pid, dsId));
+        });
+    }
+
+    /**
+     * Uses the object that has just been written; inline XML content is taken from its DOM as it is.
+     */
+    static IndexedObject of(DigitalObject digitalObject, CoreRepository coreRepository) {
+        String pid = digitalObject.getPID();
+        List<String> streamNames = new ArrayList<>();
+        for (DatastreamType datastream : digitalObject.getDatastream()) {
+            streamNames.add(datastream.getID());
+        }
+        return new IndexedObject(pid, streamNames, dsId -> {
+            for (DatastreamType datastream : digitalObject.getDatastream()) {
+                if (dsId.equals(datastream.getID())) {
+                    Element element = inlineElement(datastream);
+                    return element != null ? element : parse(coreRepository.getDatastreamContent(pid, dsId));
+                }
+            }
+            return null;
+        });
+    }
+
+    private static Element inlineElement(DatastreamType datastream) {
+        List<DatastreamVersionType> versions = datastream.getDatastreamVersion();
+        if (versions.isEmpty()) {
+            return null;
+        }
+        DatastreamVersionType version = versions.get(versions.size() - 1);
+        if (version.getXmlContent() == null) {
+            return null;
+        }
+        List<Element> any = version.getXmlContent().getAny();
+        return any.isEmpty() ? null : any.get(0);
+    }
+
+    private static Element parse(InputStream content) {
+        return content != null ? DomUtils.streamToDocument(content, true).getDocumentElement() : null;
+    }
+
+    String getPid() {
+        return pid;
+    }
+
+    List<String> getStreamNames() {
+        return streamNames;
+    }
+
+    boolean hasStream(String dsId) {
+        return streamNames.contains(dsId);
+    }
+
+    /**
+     * @return root element of the latest version of the datastream or null
+     */
+    Element getXmlContent(String dsId) {
+        return xmlContent.apply(dsId);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexQueryCacheStats;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Entry-count bounded cache of processing index query results.
+ * <p>
+ * Every entry depends on the PIDs whose index documents it was computed from, e.g. parents of an object depend
+ * on the object and on the found parents. Invalidating a PID drops all entries depending on it.
+ * Index changes become visible only after a Solr commit, so an invalidated PID stays pending until the next
+ * {@link #committed(long)} (or the visibility delay for commitWithin updates) and results depending on a pending
+ * PID are not cached; otherwise a read between the update and the commit would cache the old state again.
+ * </p>
+ * Cached values are shared, callers must not modify them.
+ */
+class ProcessingIndexQueryCache {
+
+    private final Cache<Key, CachedResult> cache;
+    private final long maxEntries;
+    private final long visibilityDelayNanos;
+    private final Map<String, Set<Key>> dependents = new ConcurrentHashMap<>();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private volatile Pending pendingAll;
+
+    /**
+     * @param visibilityDelayMs time after which updates become visible without an explicit commit, 0 if they need one
+     */
+    ProcessingIndexQueryCache(long maxEntries, long expireAfterWriteSecs, long visibilityDelayMs) {
+        this.maxEntries = maxEntries;
+        this.visibilityDelayNanos = TimeUnit.MILLISECONDS.toNanos(visibilityDelayMs);
+        CacheBuilder<Key, CachedResult> builder = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .removalListener((RemovalNotification<Key, CachedResult> notification) ->
+                        unregister(notification.getKey(), notification.getValue()))
+                .recordStats();
+        if (expireAfterWriteSecs > 0) {
+            builder.expireAfterWrite(expireAfterWriteSecs, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * Returns the cached result or loads it with given loader.
+     * @param query Name of the cached query
+     * @param pid PID the query is asked for, the result always depends on it
+     * @param argument Further query argument or null
+     * @param loader Processing index query, may return null
+     * @param dependencies Other PIDs the loaded result depends on
+     * @return query result
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String query, String pid, String argument, Supplier<T> loader, Function<T, Collection<String>> dependencies) {
+        Key key = new Key(query, pid, argument);
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached.value;
+        }
+        T value = loader.get();
+        Set<String> pids = new LinkedHashSet<>();
+        pids.add(pid);
+        if (value != null) {
+            pids.addAll(dependencies.apply(value));
+        }
+        if (pids.stream().anyMatch(this::isPending)) {
+            return value;
+        }
+        cached = new CachedResult(value, pids);
+        for (String dependency : pids) {
+            dependents.computeIfAbsent(dependency, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        cache.put(key, cached);
+        if (pids.stream().anyMatch(this::isPending)) {
+            // an invalidation raced with this load; drop what may have been read before the update
+            cache.asMap().remove(key, cached);
+        }
+        return value;
+    }
+
+    /**
+     * Drops all results depending on given PIDs; must be called after their index update has been sent.
+     * The PIDs stay pending until the update is committed.
+     */
+    void invalidate(Collection<String> pids) {
+        long seq = sequence.incrementAndGet();
+        long deadline = deadline();
+        if (visibilityDelayNanos > 0) {
+            pending.values().removeIf(Pending::isVisible);
+        }
+        for (String pid : pids) {
+            pending.put(pid, new Pending(seq, deadline));
+            Set<Key> keys = dependents.remove(pid);
+            if (keys != null) {
+                cache.invalidateAll(keys);
+            }
+        }
+        invalidationCount.addAndGet(pids.size());
+    }
+
+    void invalidateAll() {
+        pendingAll = new Pending(sequence.incrementAndGet(), deadline());
+        invalidationCount.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return mark to be passed to {@link #committed(long)} once the following commit succeeds
+     */
+    long markCommit() {
+        return sequence.get();
+    }
+
+    /**
+     * Ends the pending state of PIDs invalidated before the commit mark.
+     */
+    void committed(long mark) {
+        pending.values().removeIf(p -> p.sequence <= mark);
+        Pending all = pendingAll;
+        if (all != null && all.sequence <= mark) {
+            pendingAll = null;
+        }
+    }
+
+    ProcessingIndexQueryCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        return new ProcessingIndexQueryCacheStats(true, stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                invalidationCount.get(), cache.size(), maxEntries);
+    }
+
+    private boolean isPending(String pid) {
+        Pending all = pendingAll;
+        if (all != null && !all.isVisible()) {
+            return true;
+        }
+        Pending p = pending.get(pid);
+        return p != null && !p.isVisible();
+    }
+
+    private long deadline() {
+        return visibilityDelayNanos > 0 ? System.nanoTime() + visibilityDelayNanos : 0;
+    }
+
+    private void unregister(Key key, CachedResult cached) {
+        for (String dependency : cached.dependencies) {
+            dependents.computeIfPresent(dependency, (pid, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private record Key(String query, String pid, String argument) {
+    }
+
+    private static final class CachedResult {
+        private final Object value;
+        private final Set<String> dependencies;
+
+        private CachedResult(Object value, Set<String> dependencies) {
+            this.value = value;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private record Pending(long sequence, long deadlineNanos) {
+        private boolean isVisible() {
+            return deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+        }
+    }
+}
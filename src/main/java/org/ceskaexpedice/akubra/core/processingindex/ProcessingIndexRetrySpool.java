@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only file of processing index operations that failed, replayed by a background thread.
+ * <p>
+ * Operations are stored one JSON object per line and name the object only, replay reads its current state,
+ * so replaying an operation twice or after a newer update is harmless. An operation spooled again while it waits
+ * is stored once; one spooled again while it is being replayed stays in the spool.
+ * Failed replays are retried with exponential backoff and moved behind the other waiting operations.
+ * </p>
+ * The file is rewritten without the replayed operations whenever the spool runs empty and every
+ * {@value #COMPACT_INTERVAL} replays. Operations left in the file are loaded again on the next start.
+ */
+class ProcessingIndexRetrySpool {
+    private static final Logger LOGGER = Logger.getLogger(ProcessingIndexRetrySpool.class.getName());
+
+    static final String OP_REINDEX = "reindex";
+    static final String OP_DELETE_TARGETS = "deleteTargets";
+    static final String OP_COMMIT = "commit";
+
+    private static final int COMPACT_INTERVAL = 100;
+
+    /**
+     * Replays one spooled operation against the processing index
+     */
+    @FunctionalInterface
+    interface Handler {
+        void replay(String operation, String pid) throws Exception;
+    }
+
+    private record Operation(String operation, String pid) {
+    }
+
+    private final Path file;
+    private final Handler handler;
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final Thread worker;
+
+    // operation -> generation of its last spooling
+    private final LinkedHashMap<Operation, Long> pending = new LinkedHashMap<>();
+    private long generation;
+    private long replayedSinceCompaction;
+    private long replayedCount;
+    private boolean stopped;
+
+    ProcessingIndexRetrySpool(Path file, long initialDelayMs, long maxDelayMs, Handler handler) {
+        this.file = file;
+        this.handler = handler;
+        this.initialDelayMs = Math.max(1, initialDelayMs);
+        this.maxDelayMs = Math.max(this.initialDelayMs, maxDelayMs);
+        load();
+        this.worker = new Thread(this::work, "akubra-processing-index-retry");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Stores the operation for a later replay.
+     * @param pid object the operation applies to, null for {@link #OP_COMMIT}
+     */
+    synchronized void add(String operation, String pid) {
+        Operation key = new Operation(operation, pid);
+        if (pending.put(key, ++generation) == null) {
+            try {
+                Files.writeString(file, toLine(key) + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Cannot write processing index retry spool " + file
+                        + ", operation kept in memory only: " + key, e);
+            }
+        }
+        notifyAll();
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    synchronized long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * Stops replaying, waiting operations stay in the file.
+     */
+    void shutdown() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        long delay = initialDelayMs;
+        while (true) {
+            Operation next;
+            long nextGeneration;
+            synchronized (this) {
+                while (pending.isEmpty() && !stopped) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (stopped) {
+                    return;
+                }
+                Map.Entry<Operation, Long> first = pending.entrySet().iterator().next();
+                next = first.getKey();
+                nextGeneration = first.getValue();
+            }
+            try {
+                handler.replay(next.operation(), next.pid());
+                delay = initialDelayMs;
+                synchronized (this) {
+                    replayedCount++;
+                    if (pending.remove(next, nextGeneration) && (pending.isEmpty() || ++replayedSinceCompaction >= COMPACT_INTERVAL)) {
+                        compact();
+                    }
+                }
+            } catch (Throwable th) {
+                LOGGER.log(Level.WARNING, "Processing index retry of " + next + " failed, next attempt in " + delay + " ms", th);
+                synchronized (this) {
+                    Long current = pending.remove(next);
+                    if (current != null) {
+                        pending.put(next, current);
+                    }
+                    try {
+                        long deadline = System.currentTimeMillis() + delay;
+                        for (long wait = delay; wait > 0 && !stopped; wait = deadline - System.currentTimeMillis()) {
+                            wait(wait);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                delay = Math.min(delay * 2, maxDelayMs);
+            }
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JSONObject json = new JSONObject(line);
+                    pending.put(new Operation(json.getString("op"), json.optString("pid", null)), ++generation);
+                } catch (JSONException e) {
+                    LOGGER.warning("Skipping malformed processing index retry spool line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot read processing index retry spool " + file, e);
+        }
+        if (!pending.isEmpty()) {
+            LOGGER.info(String.format("Loaded %d processing index operations to retry from %s", pending.size(), file));
+        }
+    }
+
+    // caller holds the monitor
+    private void compact() {
+        replayedSinceCompaction = 0;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Operation operation : pending.keySet()) {
+                    writer.write(toLine(operation));
+                    writer.write("\n");
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot compact processing index retry spool " + file, e);
+        }
+    }
+
+    private static String toLine(Operation operation) {
+        JSONObject json = new JSONObject();
+        json.put("op", operation.operation());
+        if (operation.pid() != null) {
+            json.put("pid", operation.pid());
+        }
+        return json.toString();
+    }
+}
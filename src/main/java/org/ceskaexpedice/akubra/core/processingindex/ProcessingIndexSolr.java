@@ -16,45 +16,54 @@
  */
 package org.ceskaexpedice.akubra.core.processingindex;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrClient;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrDocument;
-import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CursorMarkParams;
 import org.ceskaexpedice.akubra.KnownDatastreams;
 import org.ceskaexpedice.akubra.RepositoryException;
 import org.ceskaexpedice.akubra.RepositoryNamespaces;
+import org.ceskaexpedice.akubra.config.CommitStrategy;
 import org.ceskaexpedice.akubra.config.RepositoryConfiguration;
 import org.ceskaexpedice.akubra.core.repository.CoreRepository;
-import org.ceskaexpedice.akubra.core.repository.RepositoryDatastream;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
 import org.ceskaexpedice.akubra.core.repository.impl.RepositoryUtils;
 import org.ceskaexpedice.akubra.impl.utils.StructureInfoDom4jUtils;
 import org.ceskaexpedice.akubra.processingindex.*;
 import org.ceskaexpedice.akubra.impl.utils.ProcessingIndexUtils;
 import org.ceskaexpedice.akubra.utils.DomUtils;
+import org.ceskaexpedice.fedoramodel.DigitalObject;
 import org.json.JSONObject;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * ProcessingIndexFeeder
@@ -65,6 +74,10 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 
     private static final int MAX_TOTAL_TITLE_CHARS = 5000;
     private static final int MAX_SINGLE_TITLE_CHARS = 1000;
+    private static final int TERMS_QUERY_CHUNK_SIZE = 500;
+    private static final int BACKFILL_ROWS = 1000;
+    // objects waiting for back-fill before the index commits on its own
+    static final int MAX_PENDING_BACKFILL = 10 * TERMS_QUERY_CHUNK_SIZE;
 
     private static final Logger LOGGER = Logger.getLogger(ProcessingIndexSolr.class.getName());
 
@@ -72,13 +85,66 @@ public class ProcessingIndexSolr implements ProcessingIndex {
     private SolrClient solrQueryClient;
     private CoreRepository coreRepository;
     RepositoryConfiguration repositoryConfiguration;
+    private CommitStrategy commitStrategy = CommitStrategy.HARD;
+    private int commitWithinMs = -1;
+    private final GroupCommit groupCommit = new GroupCommit(this::commitAndBackfill);
+    private final TargetStreamsBackfill targetStreamsBackfill = new TargetStreamsBackfill(TERMS_QUERY_CHUNK_SIZE, this::backfillTargetStreams);
+    private final AtomicLong commitRequests = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicBoolean forcingBackfill = new AtomicBoolean();
+    private SolrUpdatePipeline updatePipeline;
+    private ProcessingIndexRetrySpool retrySpool;
+    private int cursorPrefetchPages = 1;
+    private ProcessingIndexQueryCache queryCache;
+    private final ExecutorService cursorExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "akubra-processing-index-cursor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService backfillScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "akubra-processing-index-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public ProcessingIndexSolr(RepositoryConfiguration configuration, CoreRepository coreRepository) {
+        this(configuration, coreRepository, createProcessingUpdateClient(configuration), createProcessingQueryClient(configuration));
+    }
+
+    ProcessingIndexSolr(RepositoryConfiguration configuration, CoreRepository coreRepository,
+                        SolrClient solrUpdateClient, SolrClient solrQueryClient) {
         super();
-        this.solrUpdateClient = createProcessingUpdateClient(configuration);
-        this.solrQueryClient = createProcessingQueryClient(configuration);
+        this.solrUpdateClient = solrUpdateClient;
+        this.solrQueryClient = solrQueryClient;
         this.coreRepository = coreRepository;
         this.repositoryConfiguration = configuration;
+        this.commitStrategy = configuration.getProcessingIndexCommitStrategy();
+        this.commitWithinMs = configuration.getProcessingIndexCommitWithinMs();
+        this.cursorPrefetchPages = configuration.getProcessingIndexCursorPrefetchPages();
+        SolrClient updateClient = this.solrUpdateClient;
+        ProcessingIndexUpdateFailureListener failureListener = configuration.getProcessingIndexUpdateFailureListener();
+        if (configuration.getProcessingIndexRetrySpoolPath() != null) {
+            ProcessingIndexUpdateFailureListener configuredListener = failureListener;
+            failureListener = (documentIds, error) -> {
+                spoolFailedDocuments(documentIds, error);
+                if (configuredListener != null) {
+                    configuredListener.onFailure(documentIds, error);
+                }
+            };
+        }
+        this.updatePipeline = new SolrUpdatePipeline(request -> request.process(updateClient),
+                configuration.getProcessingIndexSolrThreads(), configuration.getProcessingIndexSolrQueueSize(),
+                configuration.getProcessingIndexSolrBatchSize(), failureListener);
+        if (configuration.getProcessingIndexRetrySpoolPath() != null) {
+            this.retrySpool = new ProcessingIndexRetrySpool(Paths.get(configuration.getProcessingIndexRetrySpoolPath()),
+                    configuration.getProcessingIndexRetryInitialDelayMs(), configuration.getProcessingIndexRetryMaxDelayMs(), this::replay);
+        }
+        if (configuration.getProcessingIndexQueryCacheSize() > 0) {
+            // commitWithin updates become visible without a commit
+            long visibilityDelayMs = commitStrategy == CommitStrategy.COMMIT_WITHIN ? Math.max(commitWithinMs, 0) : 0;
+            this.queryCache = new ProcessingIndexQueryCache(configuration.getProcessingIndexQueryCacheSize(),
+                    configuration.getProcessingIndexQueryCacheExpirationSecs(), visibilityDelayMs);
+        }
     }
 
     ProcessingIndexSolr(){}
@@ -88,13 +154,11 @@ public class ProcessingIndexSolr implements ProcessingIndex {
         try {
             SolrQuery solrQuery = new SolrQuery(params.getQueryString());
             solrQuery.setRows(params.getRows());
+            setFields(solrQuery, params);
             if (params.getCursorMark() == null) {
                 int offset = params.getOffset() != -1 ? params.getOffset() : params.getPageIndex() * params.getRows();
                 solrQuery.setStart(offset);
-                QueryResponse response = this.solrQueryClient.query(solrQuery);
-                response.getResults().forEach((doc) -> {
-                    action.accept(ProcessingIndexUtils.fromSolrDocument(doc));
-                });
+                streamQuery(solrQuery, action);
             } else {
                 throw new IllegalArgumentException("cursorMark is not supported in lookAt method");
             }
@@ -109,27 +173,28 @@ public class ProcessingIndexSolr implements ProcessingIndex {
         try {
             SolrQuery solrQuery = new SolrQuery(params.getQueryString());
             solrQuery.setRows(params.getRows());
+            setFields(solrQuery, params);
             if (params.getCursorMark() == null) {
                 if (params.getSortField() != null) {
                     solrQuery.setSort(params.getSortField(), params.isAscending() ? SolrQuery.ORDER.asc : SolrQuery.ORDER.desc);
                 }
                 int offset = params.getOffset() != -1 ? params.getOffset() : params.getPageIndex() * params.getRows();
                 solrQuery.setStart(offset);
-                QueryResponse response = this.solrQueryClient.query(solrQuery);
-                response.getResults().forEach((doc) -> {
-                    action.accept(ProcessingIndexUtils.fromSolrDocument(doc));
-                });
+                streamQuery(solrQuery, action);
             } else {
                 solrQuery.addSort(params.getSortField(), params.isAscending() ? SolrQuery.ORDER.asc : SolrQuery.ORDER.desc);
                 solrQuery.addSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
                 String cursorMark = params.getCursorMark();
+                if (!params.isStopAfterCursorMark() && cursorPrefetchPages > 0) {
+                    try (CursorPrefetch items = prefetch(solrQuery, cursorMark, params.getRows())) {
+                        items.forEachRemaining(action);
+                    }
+                    return null;
+                }
                 boolean done = false;
                 while (!done) {
                     solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
-                    QueryResponse response = this.solrQueryClient.query(solrQuery);
-                    response.getResults().forEach((doc) -> {
-                        action.accept(ProcessingIndexUtils.fromSolrDocument(doc));
-                    });
+                    QueryResponse response = streamQuery(solrQuery, action);
                     String nextCursorMark = response.getNextCursorMark();
                     if (cursorMark.equals(nextCursorMark)) {
                         done = true;
@@ -147,11 +212,115 @@ public class ProcessingIndexSolr implements ProcessingIndex {
         }
     }
 
+    @Override
+    public Flow.Publisher<ProcessingIndexItem> publish(ProcessingIndexQueryParameters params) {
+        SolrQuery solrQuery = cursorQuery(params);
+        String cursorMark = params.getCursorMark() != null ? params.getCursorMark() : CURSOR_MARK_START;
+        return new CursorPublisher(() -> prefetch(solrQuery.getCopy(), cursorMark, params.getRows()), cursorExecutor);
+    }
+
+    @Override
+    public Stream<ProcessingIndexItem> stream(ProcessingIndexQueryParameters params) {
+        SolrQuery solrQuery = cursorQuery(params);
+        String cursorMark = params.getCursorMark() != null ? params.getCursorMark() : CURSOR_MARK_START;
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+        // the supplier runs when a terminal operation starts, nothing is fetched before
+        return StreamSupport.stream(() -> Spliterators.spliteratorUnknownSize(
+                new CursorPages(solrQuery.getCopy(), cursorMark), characteristics), characteristics, false);
+    }
+
+    private static SolrQuery cursorQuery(ProcessingIndexQueryParameters params) {
+        SolrQuery solrQuery = new SolrQuery(params.getQueryString());
+        solrQuery.setRows(params.getRows());
+        setFields(solrQuery, params);
+        if (params.getSortField() != null) {
+            solrQuery.addSort(params.getSortField(), params.isAscending() ? SolrQuery.ORDER.asc : SolrQuery.ORDER.desc);
+        }
+        solrQuery.addSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+        return solrQuery;
+    }
+
+    /**
+     * Cursor scan read on the consumer's thread, one page at a time as the previous one is used up.
+     */
+    private final class CursorPages implements Iterator<ProcessingIndexItem> {
+        private final SolrQuery solrQuery;
+        private final Deque<ProcessingIndexItem> page = new ArrayDeque<>();
+        private String cursorMark;
+        private boolean last;
+
+        private CursorPages(SolrQuery solrQuery, String cursorMark) {
+            this.solrQuery = solrQuery;
+            this.cursorMark = cursorMark;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (page.isEmpty() && !last) {
+                solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+                try {
+                    String nextCursorMark = streamQuery(solrQuery, page::add).getNextCursorMark();
+                    last = cursorMark.equals(nextCursorMark);
+                    cursorMark = nextCursorMark;
+                } catch (SolrServerException | IOException e) {
+                    throw new RepositoryException(e);
+                }
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public ProcessingIndexItem next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.poll();
+        }
+    }
+
+    /**
+     * Starts a cursor scan that keeps {@code cursorPrefetchPages} pages (at least one) fetched ahead of the consumer.
+     */
+    private CursorPrefetch prefetch(SolrQuery solrQuery, String cursorMark, int rows) {
+        return new CursorPrefetch((cursor, sink) -> {
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursor);
+            return streamQuery(solrQuery, sink).getNextCursorMark();
+        }, cursorMark, Math.max(1, cursorPrefetchPages) * rows, cursorExecutor);
+    }
+
+    private static void setFields(SolrQuery solrQuery, ProcessingIndexQueryParameters params) {
+        if (params.getFieldsToFetch() != null && !params.getFieldsToFetch().isEmpty()) {
+            solrQuery.setFields(params.getFieldsToFetch().toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Runs the query and hands documents to the action as they are decoded from the response,
+     * the page is never held in memory. Nested processing index calls from the action use their own connections.
+     */
+    private QueryResponse streamQuery(SolrQuery solrQuery, Consumer<ProcessingIndexItem> action) throws SolrServerException, IOException {
+        return this.solrQueryClient.queryAndStreamResponse(solrQuery, new StreamingResponseCallback() {
+            @Override
+            public void streamSolrDocument(SolrDocument doc) {
+                action.accept(ProcessingIndexUtils.fromSolrDocument(doc));
+            }
+
+            @Override
+            public void streamDocListInfo(long numFound, long start, Float maxScore) {
+            }
+        });
+    }
+
     @Override
     public List<ProcessingIndexItem> getParents(String targetPid) {
         return ProcessingIndexUtils.getParents(targetPid, coreRepository);
     }
 
+    @Override
+    public Map<String, List<ProcessingIndexItem>> getParents(Collection<String> targetPids) {
+        return ProcessingIndexUtils.getParents(targetPids, coreRepository);
+    }
+
     @Override
     public List<ProcessingIndexItem> getParents(String relation, String targetPid) {
         return ProcessingIndexUtils.getParents(relation, targetPid, coreRepository);
@@ -159,7 +328,20 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 
     @Override
     public OwnedAndFosteredParents getOwnedAndFosteredParents(String targetPid) {
-        return ProcessingIndexUtils.getParentsRelation(targetPid, coreRepository);
+        if (queryCache == null) {
+            return ProcessingIndexUtils.getParentsRelation(targetPid, coreRepository);
+        }
+        // parents depend on the relations of the found parents too, their removal must drop the entry
+        OwnedAndFosteredParents parents = queryCache.get("parents", targetPid, null,
+                () -> ProcessingIndexUtils.getParentsRelation(targetPid, coreRepository),
+                found -> Stream.concat(Stream.ofNullable(found.own()), found.foster().stream())
+                        .map(ProcessingIndexItem::source).collect(Collectors.toList()));
+        return new OwnedAndFosteredParents(parents.own(), new ArrayList<>(parents.foster()));
+    }
+
+    @Override
+    public Stream<ProcessingIndexItem> streamOwnedAndFosteredParents(String targetPid) {
+        return ProcessingIndexUtils.streamParentsRelation(targetPid, coreRepository);
     }
 
 
@@ -178,9 +360,27 @@ public class ProcessingIndexSolr implements ProcessingIndex {
         return ProcessingIndexUtils.getChildrenRelation(pid, coreRepository);
     }
 
+    @Override
+    public Map<String, OwnedAndFosteredChildren> getOwnedAndFosteredChildren(Collection<String> pids) {
+        return ProcessingIndexUtils.getChildrenRelation(pids, coreRepository);
+    }
+
+    @Override
+    public Stream<ProcessingIndexItem> streamOwnedAndFosteredChildren(String pid) {
+        return ProcessingIndexUtils.streamChildrenRelation(pid, coreRepository);
+    }
+
     @Override
     public String getModel(String pid) {
-        return ProcessingIndexUtils.getModel(pid, coreRepository);
+        if (queryCache == null) {
+            return ProcessingIndexUtils.getModel(pid, coreRepository);
+        }
+        return queryCache.get("model", pid, null, () -> ProcessingIndexUtils.getModel(pid, coreRepository), model -> List.of());
+    }
+
+    @Override
+    public Map<String, String> getModels(Collection<String> pids) {
+        return ProcessingIndexUtils.getModels(pids, coreRepository);
     }
 
     @Override
@@ -230,51 +430,73 @@ public class ProcessingIndexSolr implements ProcessingIndex {
     @Override
     public void deleteProcessingIndex() {
         try {
-            this.solrUpdateClient.deleteByQuery("*:*");
+            updatePipeline.flush();
+            this.solrUpdateClient.deleteByQuery("*:*", commitWithin());
         } catch (Exception e) {
             throw new RepositoryException(e);
+        } finally {
+            if (queryCache != null) {
+                queryCache.invalidateAll();
+            }
         }
     }
 
     @Override
     public void deleteByPid(String pid) {
         try {
-            this.solrUpdateClient.deleteByQuery("source:\"" + pid + "\"");
+            updatePipeline.flush();
+            this.solrUpdateClient.deleteByQuery("source:\"" + pid + "\"", commitWithin());
         } catch (Exception e) {
-            throw new RepositoryException(e);
+            spoolOrThrow(ProcessingIndexRetrySpool.OP_REINDEX, pid, e);
+        } finally {
+            invalidateQueryCache(List.of(pid));
         }
     }
 
     @Override
     public void deleteByTargetPid(String pid) {
+        List<String> affected = queryCache != null ? pidWithSources(pid) : List.of();
         try {
-            this.solrUpdateClient.deleteByQuery("targetPid:\"" + pid + "\"");
+            updatePipeline.flush();
+            this.solrUpdateClient.deleteByQuery("targetPid:\"" + pid + "\"", commitWithin());
         } catch (Exception e) {
-            throw new RepositoryException(e);
+            spoolOrThrow(ProcessingIndexRetrySpool.OP_DELETE_TARGETS, pid, e);
+        } finally {
+            invalidateQueryCache(affected);
         }
     }
 
     @Override
     public void deleteDescriptionByPid(String pid) {
-        try {
-            this.solrUpdateClient.deleteByQuery("source:\"" + pid + "\" AND type:\"description\"");
-        } catch (Exception e) {
-            throw new RepositoryException(e);
-        }
+        UpdateRequest req = new UpdateRequest();
+        req.deleteById(TYPE_DESC + "|" + pid);
+        req.setCommitWithin(commitWithin());
+        updatePipeline.submit(pid, req);
+        invalidateQueryCache(List.of(pid));
     }
 
     @Override
     public void deleteByRelationsForPid(String pid) {
         try {
             String query = "source:\"" + pid + "\" AND type:\"relation\"";
-            this.solrUpdateClient.deleteByQuery(query);
+            updatePipeline.flush();
+            this.solrUpdateClient.deleteByQuery(query, commitWithin());
         } catch (Exception e) {
-            throw new RepositoryException(e);
+            spoolOrThrow(ProcessingIndexRetrySpool.OP_REINDEX, pid, e);
+        } finally {
+            invalidateQueryCache(List.of(pid));
         }
     }
 
     @Override
     public List<String> getStreamNames(String targetPid) {
+        if (queryCache == null) {
+            return queryStreamNames(targetPid);
+        }
+        return new ArrayList<>(queryCache.get("streams", targetPid, null, () -> queryStreamNames(targetPid), streams -> List.of()));
+    }
+
+    private List<String> queryStreamNames(String targetPid) {
         List<String> streamNames = new ArrayList<>();
         try {
             SolrQuery solrQuery = new SolrQuery(String.format("source:\"%s\" AND type:description",targetPid));
@@ -295,6 +517,15 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 
     @Override
     public List<String> getChildrenStreamNames(String targetPid) {
+        if (queryCache == null) {
+            return queryChildrenStreamNames(targetPid);
+        }
+        // targetPidStreams back-fill invalidates the sources of the updated relations
+        return new ArrayList<>(queryCache.get("childrenStreams", targetPid, null, () -> queryChildrenStreamNames(targetPid),
+                streams -> List.of()));
+    }
+
+    private List<String> queryChildrenStreamNames(String targetPid) {
         List<String> streamNames = new ArrayList<>();
         try {
             SolrQuery solrQuery = new SolrQuery(String.format("source:\"%s\" AND type:relation  AND relation:hasPage",targetPid));
@@ -317,6 +548,14 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 
     @Override
     public boolean containsRelation(String sourcePid, String relation) {
+        if (queryCache == null) {
+            return queryContainsRelation(sourcePid, relation);
+        }
+        return queryCache.get("containsRelation", sourcePid, relation, () -> queryContainsRelation(sourcePid, relation),
+                contains -> List.of());
+    }
+
+    private boolean queryContainsRelation(String sourcePid, String relation) {
         try {
             SolrQuery solrQuery = new SolrQuery(String.format("source:\"%s\" AND type:relation  AND relation:%s",sourcePid,relation));
             solrQuery.setRows(0);
@@ -330,38 +569,93 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 
     @Override
     public void rebuildProcessingIndex(String pid, Consumer<UpdateRequest> updateRequestCustomizer) {
+        IndexedObject indexedObject = IndexedObject.read(pid, coreRepository);
+        if (indexedObject == null) {
+            throw new RepositoryException("Object not found: " + pid);
+        }
+        rebuildProcessingIndex(indexedObject, updateRequestCustomizer, null, req -> updatePipeline.submit(pid, req));
+        backfillIfTooManyPending();
+    }
+
+    @Override
+    public void rebuildProcessingIndexFromObject(DigitalObject digitalObject, Consumer<UpdateRequest> updateRequestCustomizer) {
+        IndexedObject indexedObject = IndexedObject.of(digitalObject, coreRepository);
+        rebuildProcessingIndex(indexedObject, updateRequestCustomizer, null, req -> updatePipeline.submit(indexedObject.getPid(), req));
+        backfillIfTooManyPending();
+    }
+
+    @Override
+    public void updateRelations(String pid, Element previousRelsExt) {
+        Set<String> previousRelations = previousRelsExt != null ? relationDocumentIds(pid, previousRelsExt) : new HashSet<>();
+        IndexedObject indexedObject = IndexedObject.read(pid, coreRepository);
+        if (indexedObject != null && indexedObject.hasStream(KnownDatastreams.RELS_EXT.toString())) {
+            rebuildProcessingIndex(indexedObject, null, previousRelations, req -> updatePipeline.submit(pid, req));
+            backfillIfTooManyPending();
+        } else if (!previousRelations.isEmpty()) {
+            UpdateRequest req = new UpdateRequest();
+            req.deleteById(new ArrayList<>(previousRelations));
+            req.setCommitWithin(commitWithin());
+            updatePipeline.submit(pid, req);
+            invalidateQueryCache(List.of(pid));
+        }
+    }
 
+    /**
+     * @param previousRelations ids of relation documents built from the RELS-EXT the index is in sync with;
+     *                          when given, only new relations are sent and the missing ones are deleted by id
+     * @param sender sends the update request
+     */
+    private void rebuildProcessingIndex(IndexedObject indexedObject, Consumer<UpdateRequest> updateRequestCustomizer, Set<String> previousRelations,
+                                        Consumer<UpdateRequest> sender) {
+        String pid = indexedObject.getPid();
         List<SolrInputDocument> batch = new ArrayList<>();
+        List<String> staleRelations = new ArrayList<>();
         try {
-            //List<String> streamNames = coreRepository.getAsRepositoryObject(pid).getStreams().stream().map(RepositoryDatastream::getName).collect(Collectors.toList());
-
-            InputStream isRelsExt = coreRepository.getDatastreamContent(pid, KnownDatastreams.RELS_EXT.toString());
-            String stringRelsExt = IOUtils.toString(isRelsExt, StandardCharsets.UTF_8);
+            Element relsExt = indexedObject.getXmlContent(KnownDatastreams.RELS_EXT.toString());
+            if (relsExt == null) {
+                throw new RepositoryException("RELS-EXT not found: " + pid);
+            }
             RelsExtSPARQLBuilder sparqlBuilder = new RelsExtSPARQLBuilderImpl();
 
-            sparqlBuilder.sparqlProps(stringRelsExt.trim(), (object, localName) -> {
-                processRelsExtRelationAndFeedProcessingIndex(solrQueryClient, coreRepository, pid, object, localName, batch);
+            sparqlBuilder.sparqlProps(relsExt, (object, localName) -> {
+                processRelsExtRelationAndFeedProcessingIndex(coreRepository, indexedObject, object, localName, batch);
                 return object;
             });
+            if (previousRelations != null) {
+                Set<String> stale = new LinkedHashSet<>(previousRelations);
+                // relation documents are identified by source, relation and target, unchanged ones are already indexed
+                batch.removeIf(doc -> TYPE_RELATION.equals(doc.getFieldValue("type")) && stale.remove(doc.getFieldValue(UNIQUE_KEY).toString()));
+                staleRelations.addAll(stale);
+            }
+            fillTargetStreams(batch);
+            if (batch.stream().anyMatch(doc -> TYPE_DESC.equals(doc.getFieldValue("type")))) {
+                // relations pointing to this object may have been indexed before it had streams
+                targetStreamsBackfill.add(pid, indexedObject.getStreamNames());
+            }
 
         } catch (Exception e) {
             throw new RepositoryException(e);
         } finally {
-            if (batch.size() > 0) {
+            if (batch.size() > 0 || !staleRelations.isEmpty()) {
                 UpdateRequest req = new UpdateRequest();
                 batch.forEach(doc-> {req.add(doc);});
+                if (!staleRelations.isEmpty()) {
+                    req.deleteById(staleRelations);
+                }
+                req.setCommitWithin(commitWithin());
 
                 if (updateRequestCustomizer != null) {
                     updateRequestCustomizer.accept(req);
                 }
 
-                LOGGER.fine(String.format("Update batch with size %s",  req.getDocuments().size()));
-                try {
-                    UpdateResponse response = req.process(solrUpdateClient);
-                    LOGGER.fine("qtime:"+response.getQTime());
-                } catch (SolrServerException | IOException e) {
-                    LOGGER.log(Level.SEVERE,e.getMessage());
-                }
+                LOGGER.fine(String.format("Update batch with size %s, deleted relations %s", batch.size(), staleRelations.size()));
+                sender.accept(req);
+                // parents of new targets change; removed targets depend on this object already
+                Set<String> affected = new LinkedHashSet<>();
+                affected.add(pid);
+                batch.stream().filter(doc -> TYPE_RELATION.equals(doc.getFieldValue("type")))
+                        .forEach(doc -> affected.add(doc.getFieldValue("targetPid").toString()));
+                invalidateQueryCache(affected);
             }
         }
     }
@@ -376,50 +670,51 @@ public class ProcessingIndexSolr implements ProcessingIndex {
     /**
      * Process one relation and feed processing index
      */
-    private void processRelsExtRelationAndFeedProcessingIndex(SolrClient solrQueryClient, CoreRepository coreRepository, String pid, String object, String localName, List<SolrInputDocument> batch) {
+    private void processRelsExtRelationAndFeedProcessingIndex(CoreRepository coreRepository, IndexedObject indexedObject, String object, String localName, List<SolrInputDocument> batch) {
+        String pid = indexedObject.getPid();
         if (localName.equals("hasModel")) {
             try {
-                List<String> streamNames = coreRepository.getAsRepositoryObject(pid).getStreams().stream().map(RepositoryDatastream::getName).collect(Collectors.toList());
-                boolean dcStreamExists = this.coreRepository.datastreamExists(pid, KnownDatastreams.BIBLIO_DC.name());
+                List<String> streamNames = indexedObject.getStreamNames();
+                boolean dcStreamExists = indexedObject.hasStream(KnownDatastreams.BIBLIO_DC.name());
                 // TODO: Biblio mods ukladat jinam ??
-                boolean modsStreamExists = this.coreRepository.datastreamExists(pid, KnownDatastreams.BIBLIO_MODS.name());
+                boolean modsStreamExists = indexedObject.hasStream(KnownDatastreams.BIBLIO_MODS.name());
                 if (dcStreamExists || modsStreamExists) {
                     try {
                         if (dcStreamExists) {
-                            List<String> dcTList = dcTitle(pid);
+                            List<String> dcTList = dcTitle(indexedObject);
                             if (dcTList != null && !dcTList.isEmpty()) {
-                                List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient,pid, object, dcTList.stream().collect(Collectors.joining(" ")).trim(), RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date() ,streamNames);
+                                List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object, dcTList.stream().collect(Collectors.joining(" ")).trim(), RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date() ,streamNames);
                                 batch.addAll(docs);
                             } else {
-                                List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient, pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(),streamNames);
+                                List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(),streamNames);
                                 batch.addAll(docs);
                             }
                         } else if (modsStreamExists) {
                             // czech title or default
-                            List<String> modsTList = modsTitle(pid, "cze");
+                            List<String> modsTList = modsTitle(indexedObject, "cze");
                             if (modsTList != null && !modsTList.isEmpty()) {
-                                List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient,pid, object,  modsTList.stream().collect(Collectors.joining(" ")), RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), ProcessingIndexSolr.TitleType.mods, streamNames);
+                                List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object,  modsTList.stream().collect(Collectors.joining(" ")), RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), ProcessingIndexSolr.TitleType.mods, streamNames);
                                 batch.addAll(docs);
                             } else {
-                                List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient, pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
+                                List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
                                 batch.addAll(docs);
                             }
                         }
                     } catch (ParserConfigurationException e) {
                         LOGGER.log(Level.SEVERE, e.getMessage(), e);
 
-                        List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient,pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
+                        List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
                         batch.addAll(docs);
                    } catch (SAXException e) {
                         LOGGER.log(Level.SEVERE, e.getMessage(), e);
 
-                        List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient, pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
+                        List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
                         batch.addAll(docs);
                     }
                 } else {
                     LOGGER.info("Index description without dc or mods");
 
-                    List<SolrInputDocument> docs = prepareDescriptionDocument(solrQueryClient,pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
+                    List<SolrInputDocument> docs = prepareDescriptionDocument(pid, object, "", RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date(), streamNames);
                     batch.addAll(docs);
                 }
             } catch (Throwable th) {
@@ -427,7 +722,7 @@ public class ProcessingIndexSolr implements ProcessingIndex {
             }
         } else {
             try {
-                SolrInputDocument sdoc = prepareRelationDocument(pid, localName, object,coreRepository);
+                SolrInputDocument sdoc = prepareRelationDocument(pid, localName, object);
                  batch.add(sdoc);
             } catch (Throwable th) {
                 LOGGER.log(Level.SEVERE, "Cannot update processing index for " + pid + " - reindex manually.", th);
@@ -443,15 +738,14 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 //        this.feedDescriptionDocument(pid, model, title.trim(), RepositoryUtils.getAkubraInternalId(pid, repositoryConfiguration.getObjectStorePattern()), new Date());
 //    }
 
-    private List<String> dcTitle(String pid) {
-        InputStream streamContent = coreRepository.getDatastreamContent(pid, KnownDatastreams.BIBLIO_DC.toString());
-        Element title = DomUtils.findElement(DomUtils.streamToDocument(streamContent, true).getDocumentElement(), "title", RepositoryNamespaces.DC_NAMESPACE_URI);
+    private List<String> dcTitle(IndexedObject indexedObject) {
+        Element dc = indexedObject.getXmlContent(KnownDatastreams.BIBLIO_DC.toString());
+        Element title = DomUtils.findElement(dc, "title", RepositoryNamespaces.DC_NAMESPACE_URI);
         return title != null ? Arrays.asList(title.getTextContent()) : new ArrayList<>();
     }
 
-    private List<String> modsTitle(String pid, String lang) throws RepositoryException, ParserConfigurationException, SAXException, IOException {
-        InputStream streamContent = coreRepository.getDatastreamContent(pid, KnownDatastreams.BIBLIO_MODS.toString());
-        Element docElement = DomUtils.streamToDocument(streamContent, true).getDocumentElement();
+    private List<String> modsTitle(IndexedObject indexedObject, String lang) throws RepositoryException, ParserConfigurationException, SAXException, IOException {
+        Element docElement = indexedObject.getXmlContent(KnownDatastreams.BIBLIO_MODS.toString());
 
         List<Element> elements = DomUtils.getElementsRecursive(docElement, new DomUtils.ElementsFilter() {
             @Override
@@ -507,13 +801,139 @@ public class ProcessingIndexSolr implements ProcessingIndex {
     @Override
     public void commit() {
         try {
-            this.solrUpdateClient.commit();
+            switch (commitStrategy) {
+                case GROUP:
+                    groupCommit.commit();
+                    break;
+                case COMMIT_WITHIN:
+                    // updates already carry commitWithin, the ones sent so far are searchable once it elapses
+                    commitRequests.incrementAndGet();
+                    long backfillMark = targetStreamsBackfill.mark();
+                    updatePipeline.flush();
+                    long searchableAt = System.currentTimeMillis() + Math.max(commitWithinMs, 0);
+                    targetStreamsBackfill.searchable(backfillMark, searchableAt);
+                    targetStreamsBackfill.flush(System.currentTimeMillis());
+                    // the objects marked now are resolved once commitWithin elapses
+                    backfillScheduler.schedule(() -> flushBackfill(searchableAt), Math.max(commitWithinMs, 0), TimeUnit.MILLISECONDS);
+                    break;
+                default:
+                    commitRequests.incrementAndGet();
+                    commits.incrementAndGet();
+                    commitAndBackfill();
+            }
+        } catch (RepositoryException e) {
+            spoolOrThrow(ProcessingIndexRetrySpool.OP_COMMIT, null, e);
+        }
+    }
+
+    @Override
+    public ProcessingIndexUpdateStats getUpdateStats() {
+        ProcessingIndexUpdateStats stats = updatePipeline.getStats();
+        if (retrySpool == null) {
+            return stats;
+        }
+        return new ProcessingIndexUpdateStats(stats.requestCount(), stats.documentCount(), stats.failedRequestCount(),
+                stats.failedDocumentCount(), stats.queuedRequestCount(), retrySpool.getPendingCount());
+    }
+
+    @Override
+    public ProcessingIndexQueryCacheStats getQueryCacheStats() {
+        if (queryCache == null) {
+            return new ProcessingIndexQueryCacheStats(false, 0, 0, 0, 0, 0, 0);
+        }
+        return queryCache.getStats();
+    }
+
+    @Override
+    public void shutdown() {
+        backfillScheduler.shutdownNow();
+        if (updatePipeline != null && targetStreamsBackfill.getPendingCount() > 0) {
+            // relations of the waiting objects are made searchable and back-filled before the pipeline stops
+            try {
+                commitAndBackfill();
+            } catch (RepositoryException e) {
+                LOGGER.log(Level.WARNING, "Error while trying to back-fill target streams on shutdown", e);
+            }
+        }
+        if (updatePipeline != null) {
+            updatePipeline.shutdown();
+        }
+        if (retrySpool != null) {
+            retrySpool.shutdown();
+        }
+        cursorExecutor.shutdownNow();
+    }
+
+    @Override
+    public ProcessingIndexCommitStats getCommitStats() {
+        long requestCount = commitRequests.get() + groupCommit.getRequestCount();
+        long commitCount = commits.get() + groupCommit.getCommitCount();
+        return new ProcessingIndexCommitStats(commitStrategy, requestCount, commitCount, requestCount - commitCount);
+    }
+
+    /**
+     * Commits, then back-fills target streams of the relations the commit made searchable and commits the back-fill.
+     */
+    private void commitAndBackfill() {
+        sendCommit();
+        if (targetStreamsBackfill.flush(System.currentTimeMillis()) > 0) {
+            sendCommit();
+        }
+    }
+
+    /**
+     * Resolves the objects searchable at the given time, runs on the back-fill scheduler.
+     */
+    private void flushBackfill(long searchableAt) {
+        try {
+            targetStreamsBackfill.flush(Math.max(searchableAt, System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error while trying to back-fill target streams", e);
+        }
+    }
+
+    /**
+     * Objects wait for a commit before their relations are back-filled, callers that do not commit would let them
+     * pile up, so past {@link #MAX_PENDING_BACKFILL} objects the index commits and back-fills on its own.
+     */
+    private void backfillIfTooManyPending() {
+        if (targetStreamsBackfill.getPendingCount() < MAX_PENDING_BACKFILL || !forcingBackfill.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            commitRequests.incrementAndGet();
+            commits.incrementAndGet();
+            commitAndBackfill();
+        } catch (RepositoryException e) {
+            spoolOrThrow(ProcessingIndexRetrySpool.OP_COMMIT, null, e);
+        } finally {
+            forcingBackfill.set(false);
+        }
+    }
+
+    private void sendCommit() {
+        try {
+            long commitMark = queryCache != null ? queryCache.markCommit() : 0;
+            long backfillMark = targetStreamsBackfill.mark();
+            updatePipeline.flush();
+            this.solrUpdateClient.commit(true, true, commitStrategy == CommitStrategy.SOFT);
+            if (queryCache != null) {
+                queryCache.committed(commitMark);
+            }
+            targetStreamsBackfill.searchable(backfillMark, System.currentTimeMillis());
             LOGGER.info("Processing index commit ");
         } catch (Exception e) {
             throw new RepositoryException(e);
         }
     }
 
+    /**
+     * @return commitWithin for update requests, -1 unless {@link CommitStrategy#COMMIT_WITHIN} is configured
+     */
+    private int commitWithin() {
+        return commitStrategy == CommitStrategy.COMMIT_WITHIN ? commitWithinMs : -1;
+    }
+
 //    private UpdateResponse feedDescriptionDocument( String sourcePid, String model, String title, String ref, Date date, TitleType ttype,List<String> streamNames) {
 //        SolrInputDocument sdoc = prepareDescriptionDocument(sourcePid, model, title, ref, date, ttype, streamNames);
 //        return feedDescriptionDocument(sdoc);
@@ -524,30 +944,7 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 //        return feedDescriptionDocument(sdoc);
 //    }
 
-    private static List<String> findIdentifiers(SolrClient solrQueryClient, String targetPid) {
-        List<String> identifiers = new ArrayList<>();
-        try {
-            QueryResponse response = solrQueryClient.query(
-                new SolrQuery("*")
-                    .addFilterQuery("type:relation")
-                    .addFilterQuery(String.format( "targetPid:\"%s\"",targetPid))
-                    .addFilterQuery("NOT targetPidStreams:*")
-                    .setRows(1000)
-            );
-            SolrDocumentList result = response.getResults();
-            if (result.getNumFound() >0) {
-                result.stream().forEach(item -> {
-                    identifiers.add(item.get("pid").toString());
-                });
-            }
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error while trying to find identifiers", e);
-        }
-        return identifiers;
-    }
-
-
-    private static List<SolrInputDocument> prepareDescriptionDocument(SolrClient solrQueryClient,String sourcePid, String model, String title, String ref, Date date, TitleType ttype, List<String> streamNames) {
+    private static List<SolrInputDocument> prepareDescriptionDocument(String sourcePid, String model, String title, String ref, Date date, TitleType ttype, List<String> streamNames) {
 
         List<SolrInputDocument> retDocuments = new ArrayList<>();
 
@@ -565,21 +962,10 @@ public class ProcessingIndexSolr implements ProcessingIndex {
         descriptionDocument.addField("streams", streamNames);
         descriptionDocument.addField("pid", TYPE_DESC + "|" + sourcePid);
         retDocuments.add(descriptionDocument);
-
-        // in case of related relation is already indexed without streams
-        List<String> identifiers = findIdentifiers(solrQueryClient, sourcePid);
-        identifiers.forEach(pid-> {
-            SolrInputDocument atomicUpdateDocument = new SolrInputDocument();
-            atomicUpdateDocument.addField("pid", pid);
-            Map<String, List<String>> setField = new HashMap<>();
-            setField.put("set", streamNames);
-            atomicUpdateDocument.addField("targetPidStreams", setField);
-            retDocuments.add(atomicUpdateDocument);
-        });
         return retDocuments;
     }
 
-    private static List<SolrInputDocument> prepareDescriptionDocument(SolrClient solrQueryClient,String sourcePid, String model, String title, String ref, Date date, List<String> streamNames) {
+    private static List<SolrInputDocument> prepareDescriptionDocument(String sourcePid, String model, String title, String ref, Date date, List<String> streamNames) {
         List<SolrInputDocument> retDocuments = new ArrayList<>();
 
         SolrInputDocument sdoc = new SolrInputDocument();
@@ -592,36 +978,238 @@ public class ProcessingIndexSolr implements ProcessingIndex {
         sdoc.addField("streams", streamNames);
         sdoc.addField("pid", TYPE_DESC + "|" + sourcePid);
         retDocuments.add(sdoc);
-
-        // in case of related relation is already indexed without streams
-        List<String> identifiers = findIdentifiers(solrQueryClient, sourcePid);
-
-        identifiers.forEach(pid-> {
-            SolrInputDocument atomicUpdateDocument = new SolrInputDocument();
-            atomicUpdateDocument.addField("pid", pid);
-            Map<String, List<String>> setField = new HashMap<>();
-            setField.put("set", streamNames);
-            atomicUpdateDocument.addField("targetPidStreams", setField);
-            retDocuments.add(atomicUpdateDocument);
-        });
-
         return retDocuments;
     }
 
-    private static SolrInputDocument prepareRelationDocument(String sourcePid, String relation, String targetPid, CoreRepository coreRepository) {
+    private static SolrInputDocument prepareRelationDocument(String sourcePid, String relation, String targetPid) {
         SolrInputDocument sdoc = new SolrInputDocument();
         sdoc.addField("source", sourcePid);
         sdoc.addField("type", TYPE_RELATION);
         sdoc.addField("relation", relation);
         sdoc.addField("targetPid", targetPid);
-        sdoc.addField("pid", TYPE_RELATION + "|" + sourcePid + "|" + relation + "|" + targetPid);
+        sdoc.addField("pid", relationDocumentId(sourcePid, relation, targetPid));
+        return sdoc;
+    }
+
+    private static String relationDocumentId(String sourcePid, String relation, String targetPid) {
+        return TYPE_RELATION + "|" + sourcePid + "|" + relation + "|" + targetPid;
+    }
+
+    /**
+     * @return source PID of a relation or description document id
+     */
+    private static String sourcePid(String documentId) {
+        String[] parts = documentId.split("\\|");
+        return parts.length > 1 ? parts[1] : documentId;
+    }
 
-        if (coreRepository.exists(targetPid)) {
-            List<RepositoryDatastream> streams = coreRepository.getAsRepositoryObject(targetPid).getStreams();
-            List<String> streamNames =  streams.stream().map(RepositoryDatastream::getName).collect(Collectors.toList());
-            sdoc.addField("targetPidStreams", streamNames);
+    private void invalidateQueryCache(Collection<String> pids) {
+        if (queryCache != null && !pids.isEmpty()) {
+            queryCache.invalidate(pids);
         }
-        return sdoc;
+    }
+
+    /**
+     * @return the PID and the sources of all relations pointing to it, whose cached results a target delete changes
+     */
+    private List<String> pidWithSources(String pid) {
+        List<String> pids = new ArrayList<>();
+        pids.add(pid);
+        try {
+            ProcessingIndexUtils.getParents(pid, coreRepository).forEach(parent -> pids.add(parent.source()));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Cannot find relations pointing to " + pid + ", cached results of their sources expire", e);
+        }
+        return pids;
+    }
+
+    private void spoolOrThrow(String operation, String pid, Exception e) {
+        if (retrySpool == null) {
+            throw e instanceof RepositoryException ? (RepositoryException) e : new RepositoryException(e);
+        }
+        LOGGER.log(Level.WARNING, String.format("Processing index operation %s %s failed, spooled for retry", operation, pid), e);
+        retrySpool.add(operation, pid);
+    }
+
+    private void spoolFailedDocuments(List<String> documentIds, Throwable error) {
+        Set<String> pids = documentIds.stream().map(ProcessingIndexSolr::sourcePid).collect(Collectors.toCollection(LinkedHashSet::new));
+        LOGGER.log(Level.WARNING, "Processing index update of " + pids + " failed, spooled for retry", error);
+        for (String pid : pids) {
+            retrySpool.add(ProcessingIndexRetrySpool.OP_REINDEX, pid);
+        }
+    }
+
+    /**
+     * Replays a spooled operation from the current state of the object, bypassing the update pipeline.
+     */
+    private void replay(String operation, String pid) throws Exception {
+        switch (operation) {
+            case ProcessingIndexRetrySpool.OP_REINDEX:
+                this.solrUpdateClient.deleteByQuery("source:\"" + pid + "\" AND type:\"relation\"", commitWithin());
+                invalidateQueryCache(List.of(pid));
+                IndexedObject indexedObject = coreRepository.exists(pid) ? IndexedObject.read(pid, coreRepository) : null;
+                if (indexedObject == null) {
+                    this.solrUpdateClient.deleteByQuery("source:\"" + pid + "\"", commitWithin());
+                } else if (indexedObject.hasStream(KnownDatastreams.RELS_EXT.toString())) {
+                    rebuildProcessingIndex(indexedObject, null, null, req -> {
+                        try {
+                            req.process(solrUpdateClient);
+                        } catch (Exception e) {
+                            throw new RepositoryException(e);
+                        }
+                    });
+                }
+                break;
+            case ProcessingIndexRetrySpool.OP_DELETE_TARGETS:
+                List<String> affected = queryCache != null ? pidWithSources(pid) : List.of();
+                this.solrUpdateClient.deleteByQuery("targetPid:\"" + pid + "\"", commitWithin());
+                invalidateQueryCache(affected);
+                break;
+            case ProcessingIndexRetrySpool.OP_COMMIT:
+                if (commitStrategy != CommitStrategy.COMMIT_WITHIN) {
+                    commitAndBackfill();
+                }
+                return;
+            default:
+                LOGGER.warning("Unknown processing index retry operation " + operation);
+                return;
+        }
+        if (commitStrategy != CommitStrategy.COMMIT_WITHIN) {
+            retrySpool.add(ProcessingIndexRetrySpool.OP_COMMIT, null);
+        }
+    }
+
+    /**
+     * @return ids of relation documents that the given RELS-EXT produces
+     */
+    private static Set<String> relationDocumentIds(String pid, Element relsExt) {
+        Set<String> ids = new HashSet<>();
+        new RelsExtSPARQLBuilderImpl().sparqlProps(relsExt, (object, localName) -> {
+            if (!localName.equals("hasModel")) {
+                ids.add(relationDocumentId(pid, localName, object));
+            }
+            return object;
+        });
+        return ids;
+    }
+
+    /**
+     * Fills targetPidStreams of relation documents from the streams field of the targets' description documents.
+     * Targets that are not indexed yet are read from the object store if configured, otherwise their description
+     * document fills the field in once it is indexed.
+     */
+    private void fillTargetStreams(List<SolrInputDocument> batch) {
+        Set<String> targets = new LinkedHashSet<>();
+        for (SolrInputDocument doc : batch) {
+            if (TYPE_RELATION.equals(doc.getFieldValue("type"))) {
+                targets.add(doc.getFieldValue("targetPid").toString());
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        Map<String, List<String>> streams = findIndexedStreams(targets);
+        for (SolrInputDocument doc : batch) {
+            if (TYPE_RELATION.equals(doc.getFieldValue("type"))) {
+                String targetPid = doc.getFieldValue("targetPid").toString();
+                List<String> targetStreams = streams.computeIfAbsent(targetPid, this::readStreamNames);
+                if (targetStreams != null) {
+                    doc.addField("targetPidStreams", targetStreams);
+                }
+            }
+        }
+    }
+
+    private Map<String, List<String>> findIndexedStreams(Collection<String> pids) {
+        Map<String, List<String>> streams = new HashMap<>();
+        List<String> chunk = new ArrayList<>(TERMS_QUERY_CHUNK_SIZE);
+        for (Iterator<String> it = pids.iterator(); it.hasNext(); ) {
+            chunk.add(it.next());
+            if (chunk.size() == TERMS_QUERY_CHUNK_SIZE || !it.hasNext()) {
+                try {
+                    SolrQuery solrQuery = new SolrQuery("{!terms f=source}" + String.join(",", chunk))
+                            .addFilterQuery("type:" + TYPE_DESC)
+                            .setFields("source", "streams")
+                            .setRows(chunk.size());
+                    QueryResponse response = this.solrQueryClient.query(solrQuery, SolrRequest.METHOD.POST);
+                    for (SolrDocument doc : response.getResults()) {
+                        Collection<Object> values = doc.getFieldValues("streams");
+                        streams.put(doc.getFieldValue("source").toString(),
+                                values != null ? values.stream().map(Object::toString).collect(Collectors.toList()) : new ArrayList<>());
+                    }
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Error while trying to find target streams", e);
+                }
+                chunk.clear();
+            }
+        }
+        return streams;
+    }
+
+    /**
+     * Sets targetPidStreams of all relations that point to given objects and have been indexed without it.
+     * @param streams stream names by target PID, at most {@link #TERMS_QUERY_CHUNK_SIZE} entries
+     * @return number of back-filled relations
+     */
+    private int backfillTargetStreams(Map<String, List<String>> streams) {
+        int backfilled = 0;
+        try {
+            SolrQuery solrQuery = new SolrQuery("{!terms f=targetPid}" + String.join(",", streams.keySet()))
+                    .addFilterQuery("type:" + TYPE_RELATION)
+                    .addFilterQuery("NOT targetPidStreams:*")
+                    .setFields(UNIQUE_KEY, "targetPid")
+                    .setRows(BACKFILL_ROWS)
+                    .addSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+            String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+            UpdateRequest req = new UpdateRequest();
+            Set<String> backfilledSources = new LinkedHashSet<>();
+            while (true) {
+                solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+                QueryResponse response = this.solrQueryClient.query(solrQuery, SolrRequest.METHOD.POST);
+                for (SolrDocument doc : response.getResults()) {
+                    SolrInputDocument atomicUpdateDocument = new SolrInputDocument();
+                    atomicUpdateDocument.addField(UNIQUE_KEY, doc.getFieldValue(UNIQUE_KEY));
+                    Map<String, List<String>> setField = new HashMap<>();
+                    setField.put("set", streams.get(doc.getFieldValue("targetPid").toString()));
+                    atomicUpdateDocument.addField("targetPidStreams", setField);
+                    req.add(atomicUpdateDocument);
+                    backfilled++;
+                    backfilledSources.add(sourcePid(doc.getFieldValue(UNIQUE_KEY).toString()));
+                }
+                if (req.getDocuments() != null && req.getDocuments().size() >= BACKFILL_ROWS) {
+                    sendBackfill(req);
+                    req = new UpdateRequest();
+                }
+                String nextCursorMark = response.getNextCursorMark();
+                if (cursorMark.equals(nextCursorMark)) {
+                    break;
+                }
+                cursorMark = nextCursorMark;
+            }
+            if (req.getDocuments() != null && !req.getDocuments().isEmpty()) {
+                sendBackfill(req);
+            }
+            // children stream names of the sources change
+            invalidateQueryCache(backfilledSources);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error while trying to back-fill target streams", e);
+        }
+        return backfilled;
+    }
+
+    private void sendBackfill(UpdateRequest req) {
+        req.setCommitWithin(commitWithin());
+        LOGGER.fine(String.format("Target streams back-fill with size %s", req.getDocuments().size()));
+        // sets the same values the rebuilt relation documents carry, so it need not be ordered with them
+        updatePipeline.submit(req.getDocuments().get(0).getFieldValue(UNIQUE_KEY).toString(), req);
+    }
+
+    private List<String> readStreamNames(String pid) {
+        if (!repositoryConfiguration.isProcessingIndexTargetStreamsFromStorage() || !coreRepository.exists(pid)) {
+            return null;
+        }
+        DatastreamIndex target = coreRepository.getDatastreamIndex(pid);
+        return target != null ? target.getDatastreamNames() : null;
     }
 
     private UpdateResponse feedDescriptionDocument(SolrInputDocument doc) {
@@ -634,7 +1222,7 @@ public class ProcessingIndexSolr implements ProcessingIndex {
     }
 
     private UpdateResponse feedRelationDocument(String sourcePid, String relation, String targetPid) {
-        SolrInputDocument sdoc = prepareRelationDocument(sourcePid, relation, targetPid, coreRepository);
+        SolrInputDocument sdoc = prepareRelationDocument(sourcePid, relation, targetPid);
         return feedRelationDocument(sdoc);
     }
 
@@ -655,7 +1243,7 @@ public class ProcessingIndexSolr implements ProcessingIndex {
 
     private static SolrClient createProcessingUpdateClient(RepositoryConfiguration configuration) {
         String processingSolrHost = configuration.getProcessingIndexHost();
-        return new ConcurrentUpdateSolrClient.Builder(processingSolrHost).withQueueSize(100).build();
+        return new HttpSolrClient.Builder(processingSolrHost).build();
     }
 
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.w3c.dom.Element;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fingerprint of the part of RELS-EXT the processing index is built from.
+ * <p>
+ * Only the relations reported to the index (including the model) are hashed, sorted, so formatting, namespace
+ * prefixes, literal properties and relation order do not change the fingerprint. Two RELS-EXT documents with equal
+ * fingerprints produce the same relation documents and the same model.
+ * </p>
+ */
+public final class RelsExtFingerprint {
+    private static final Logger LOGGER = Logger.getLogger(RelsExtFingerprint.class.getName());
+
+    private RelsExtFingerprint() {
+    }
+
+    /**
+     * @param relsExt root element of RELS-EXT
+     * @return SHA-256 of the normalized relations, null if the relations cannot be read
+     */
+    public static String of(Element relsExt) {
+        List<String> relations = new ArrayList<>();
+        try {
+            new RelsExtSPARQLBuilderImpl().sparqlProps(relsExt, (object, localName) -> {
+                relations.add(localName + " " + object);
+                return object;
+            });
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Cannot read relations for fingerprint", e);
+            return null;
+        }
+        Collections.sort(relations);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(String.join("\n", relations).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if both RELS-EXT documents are readable and produce the same processing index relations
+     */
+    public static boolean sameRelations(Element previousRelsExt, Element currentRelsExt) {
+        String previous = of(previousRelsExt);
+        return previous != null && previous.equals(of(currentRelsExt));
+    }
+}
@@ -17,6 +17,7 @@
 package org.ceskaexpedice.akubra.core.processingindex;
 
 import org.ceskaexpedice.akubra.RepositoryException;
+import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -39,4 +40,13 @@ interface RelsExtSPARQLBuilder {
      * @throws RepositoryException
      */
     void sparqlProps(String relsExt, RelsExtSPARQLBuilderListener listener) throws IOException, SAXException, ParserConfigurationException, RepositoryException;
+
+    /**
+     * Generate update sparql from already parsed RELS-EXT
+     *
+     * @param relsExt  root element of the RELS-EXT
+     * @param listener Listener Listener
+     * @throws RepositoryException
+     */
+    void sparqlProps(Element relsExt, RelsExtSPARQLBuilderListener listener) throws RepositoryException;
 }
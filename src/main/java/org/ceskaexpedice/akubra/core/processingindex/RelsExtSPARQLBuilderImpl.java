@@ -54,7 +54,12 @@ class RelsExtSPARQLBuilderImpl implements RelsExtSPARQLBuilder {
     public void sparqlProps(String relsExt, RelsExtSPARQLBuilderListener listener) throws IOException, SAXException, ParserConfigurationException, RepositoryException {
 
         Document document = DomUtils.streamToDocument(new StringReader(relsExt), true);
-        Element description = DomUtils.findElement(document.getDocumentElement(), "Description", RepositoryNamespaces.RDF_NAMESPACE_URI);
+        sparqlProps(document.getDocumentElement(), listener);
+    }
+
+    @Override
+    public void sparqlProps(Element relsExt, RelsExtSPARQLBuilderListener listener) throws RepositoryException {
+        Element description = DomUtils.findElement(relsExt, "Description", RepositoryNamespaces.RDF_NAMESPACE_URI);
         NodeList childNodes = description.getChildNodes();
 
         List<Triple<String,String,String>> triples = new ArrayList<>();
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexUpdateFailureListener;
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexUpdateStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.ceskaexpedice.akubra.processingindex.ProcessingIndex.UNIQUE_KEY;
+
+/**
+ * Sends processing index update requests to Solr from a fixed number of threads.
+ * <p>
+ * Requests are striped by a key (the source PID), every stripe has its own bounded queue and thread, so the
+ * updates of one object are written in the order they were submitted. Callers block when the queue of their
+ * stripe is full. Consecutive add-only requests of a stripe are merged into one request of up to
+ * {@code batchSize} documents; requests with deletes are sent as they are.
+ * </p>
+ * <p>
+ * Every stripe counts its submitted and sent requests, {@link #flush()} waits only for the requests submitted
+ * before it was called, so it returns even while other threads keep submitting.
+ * </p>
+ * A failed request is reported to the failure listener with the ids of all its documents, it is not retried.
+ */
+class SolrUpdatePipeline {
+    private static final Logger LOGGER = Logger.getLogger(SolrUpdatePipeline.class.getName());
+
+    private static final UpdateRequest STOP = new UpdateRequest();
+
+    /**
+     * Writes one update request to Solr
+     */
+    @FunctionalInterface
+    interface Sender {
+        void send(UpdateRequest request) throws Exception;
+    }
+
+    private final Sender sender;
+    private final int batchSize;
+    private final ProcessingIndexUpdateFailureListener failureListener;
+    private final List<Stripe> stripes = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final Object idle = new Object();
+    private long inFlight;
+    private volatile boolean shutdown;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong documentCount = new AtomicLong();
+    private final AtomicLong failedRequestCount = new AtomicLong();
+    private final AtomicLong failedDocumentCount = new AtomicLong();
+
+    SolrUpdatePipeline(Sender sender, int threads, int queueSize, int batchSize,
+                       ProcessingIndexUpdateFailureListener failureListener) {
+        this.sender = sender;
+        this.batchSize = Math.max(1, batchSize);
+        this.failureListener = failureListener != null ? failureListener : SolrUpdatePipeline::logFailure;
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Stripe stripe = new Stripe(queueSize);
+            Thread worker = new Thread(() -> work(stripe), "akubra-solr-update-" + (i + 1));
+            worker.setDaemon(true);
+            stripes.add(stripe);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues the request, blocks while the queue of the key's stripe is full.
+     * @param key requests with equal keys are sent in submission order
+     */
+    void submit(String key, UpdateRequest request) {
+        if (shutdown) {
+            throw new RepositoryException("Processing index update pipeline is shut down");
+        }
+        Stripe stripe = stripes.get(Math.floorMod(key.hashCode(), stripes.size()));
+        // the stripe lock keeps the submitted count in queue order, a request that is not queued is not counted
+        synchronized (stripe) {
+            synchronized (idle) {
+                inFlight++;
+            }
+            try {
+                stripe.queue.put(request);
+                stripe.submitted++;
+            } catch (InterruptedException e) {
+                synchronized (idle) {
+                    inFlight--;
+                }
+                Thread.currentThread().interrupt();
+                throw new RepositoryException("Interrupted while queueing a processing index update", e);
+            }
+        }
+    }
+
+    /**
+     * Waits until all requests submitted before this call have been sent.
+     */
+    void flush() {
+        long[] submitted = new long[stripes.size()];
+        for (int i = 0; i < submitted.length; i++) {
+            Stripe stripe = stripes.get(i);
+            synchronized (stripe) {
+                submitted[i] = stripe.submitted;
+            }
+        }
+        synchronized (idle) {
+            for (int i = 0; i < submitted.length; i++) {
+                while (stripes.get(i).sent < submitted[i]) {
+                    try {
+                        idle.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RepositoryException("Interrupted while waiting for processing index updates", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting requests, sends all queued ones and stops the threads.
+     */
+    void shutdown() {
+        shutdown = true;
+        flush();
+        for (Stripe stripe : stripes) {
+            stripe.queue.offer(STOP);
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    ProcessingIndexUpdateStats getStats() {
+        long queued;
+        synchronized (idle) {
+            queued = inFlight;
+        }
+        return new ProcessingIndexUpdateStats(requestCount.get(), documentCount.get(),
+                failedRequestCount.get(), failedDocumentCount.get(), queued, 0);
+    }
+
+    private void work(Stripe stripe) {
+        BlockingQueue<UpdateRequest> queue = stripe.queue;
+        while (true) {
+            UpdateRequest first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == STOP) {
+                return;
+            }
+            int taken = 1;
+            UpdateRequest request = first;
+            if (isAddOnly(first)) {
+                UpdateRequest next = queue.peek();
+                if (next != null && canMerge(first, next, first.getDocuments().size())) {
+                    request = new UpdateRequest();
+                    request.setCommitWithin(first.getCommitWithin());
+                    request.add(first.getDocuments());
+                    // the worker is the only consumer of its queue, the peeked request is still the head
+                    while (next != null && canMerge(first, next, request.getDocuments().size())) {
+                        queue.poll();
+                        request.add(next.getDocuments());
+                        taken++;
+                        next = queue.peek();
+                    }
+                }
+            }
+            send(request);
+            finished(stripe, taken);
+        }
+    }
+
+    private boolean canMerge(UpdateRequest first, UpdateRequest next, int size) {
+        return next != STOP && isAddOnly(next) && next.getCommitWithin() == first.getCommitWithin()
+                && size + next.getDocuments().size() <= batchSize;
+    }
+
+    private static boolean isAddOnly(UpdateRequest request) {
+        return request.getDocuments() != null && !request.getDocuments().isEmpty()
+                && (request.getDeleteByIdMap() == null || request.getDeleteByIdMap().isEmpty())
+                && (request.getDeleteQuery() == null || request.getDeleteQuery().isEmpty())
+                && (request.getParams() == null || request.getParams().size() == 0);
+    }
+
+    private void send(UpdateRequest request) {
+        List<String> documentIds = documentIds(request);
+        try {
+            sender.send(request);
+            requestCount.incrementAndGet();
+            documentCount.addAndGet(documentIds.size());
+        } catch (Throwable th) {
+            failedRequestCount.incrementAndGet();
+            failedDocumentCount.addAndGet(documentIds.size());
+            try {
+                failureListener.onFailure(documentIds, th);
+            } catch (Throwable listenerError) {
+                LOGGER.log(Level.SEVERE, "Processing index update failure listener failed", listenerError);
+            }
+        }
+    }
+
+    private void finished(Stripe stripe, int count) {
+        synchronized (idle) {
+            inFlight -= count;
+            stripe.sent += count;
+            idle.notifyAll();
+        }
+    }
+
+    static List<String> documentIds(UpdateRequest request) {
+        List<String> ids = new ArrayList<>();
+        if (request.getDocuments() != null) {
+            for (SolrInputDocument document : request.getDocuments()) {
+                Object id = document.getFieldValue(UNIQUE_KEY);
+                if (id != null) {
+                    ids.add(id.toString());
+                }
+            }
+        }
+        if (request.getDeleteByIdMap() != null) {
+            ids.addAll(request.getDeleteByIdMap().keySet());
+        }
+        return ids;
+    }
+
+    private static final class Stripe {
+        private final BlockingQueue<UpdateRequest> queue;
+        /** guarded by the stripe */
+        private long submitted;
+        /** guarded by {@code idle} */
+        private long sent;
+
+        private Stripe(int queueSize) {
+            queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        }
+    }
+
+    private static void logFailure(List<String> documentIds, Throwable error) {
+        LOGGER.log(Level.SEVERE, "Cannot update processing index documents " + documentIds + " - reindex manually.", error);
+    }
+}
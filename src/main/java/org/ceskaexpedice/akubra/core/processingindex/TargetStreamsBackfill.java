@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Collects stream names of newly indexed objects whose incoming relations may have been indexed without targetPidStreams.
+ * <p>
+ * The relations are found by a search, so an object is resolved only after the relations sent before it was added
+ * have become searchable: {@link #mark()} is taken before the update requests are flushed and
+ * {@link #searchable(long, long)} is called once a commit has opened a new searcher, or with the time the
+ * commitWithin delay elapses. {@link #flush(long)} then hands the searchable objects over to the resolver in
+ * chunks of {@code chunkSize}, so back-filling costs a few large queries instead of one per object.
+ * </p>
+ * Later stream names of an object replace earlier ones that have not been flushed yet, the object waits for
+ * the next commit again.
+ */
+class TargetStreamsBackfill {
+
+    private static final long NOT_SEARCHABLE = Long.MAX_VALUE;
+
+    private final int chunkSize;
+    private final ToIntFunction<Map<String, List<String>>> resolver;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private long sequence;
+
+    /**
+     * @param resolver back-fills the relations pointing to the given objects, returns the number of updated relations
+     */
+    TargetStreamsBackfill(int chunkSize, ToIntFunction<Map<String, List<String>>> resolver) {
+        this.chunkSize = chunkSize;
+        this.resolver = resolver;
+    }
+
+    synchronized void add(String pid, List<String> streamNames) {
+        // keeps the map in sequence order
+        pending.remove(pid);
+        pending.put(pid, new Entry(streamNames, ++sequence));
+    }
+
+    /**
+     * @return mark of the objects added so far
+     */
+    synchronized long mark() {
+        return sequence;
+    }
+
+    /**
+     * Records that relations sent before the objects up to the mark were added are searchable from the given time.
+     */
+    synchronized void searchable(long mark, long at) {
+        for (Entry entry : pending.values()) {
+            if (entry.sequence > mark) {
+                break;
+            }
+            entry.searchableAt = Math.min(entry.searchableAt, at);
+        }
+    }
+
+    /**
+     * Resolves the objects that are searchable at the given time.
+     * @return number of back-filled relations
+     */
+    int flush(long now) {
+        List<Map<String, List<String>>> chunks = new ArrayList<>();
+        synchronized (this) {
+            Map<String, List<String>> chunk = new LinkedHashMap<>();
+            for (Iterator<Map.Entry<String, Entry>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Entry> entry = it.next();
+                if (entry.getValue().searchableAt > now) {
+                    continue;
+                }
+                chunk.put(entry.getKey(), entry.getValue().streamNames);
+                it.remove();
+                if (chunk.size() == chunkSize) {
+                    chunks.add(chunk);
+                    chunk = new LinkedHashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+        }
+        int backfilled = 0;
+        for (Map<String, List<String>> chunk : chunks) {
+            backfilled += resolver.applyAsInt(chunk);
+        }
+        return backfilled;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private static final class Entry {
+        private final List<String> streamNames;
+        private final long sequence;
+        private long searchableAt = NOT_SEARCHABLE;
+
+        private Entry(List<String> streamNames, long sequence) {
+            this.streamNames = streamNames;
+            this.sequence = sequence;
+        }
+    }
+}
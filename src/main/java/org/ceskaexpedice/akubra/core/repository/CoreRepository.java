@@ -16,12 +16,15 @@
  */
 package org.ceskaexpedice.akubra.core.repository;
 
+import org.ceskaexpedice.akubra.DatastreamBatch;
 import org.ceskaexpedice.akubra.LockOperation;
 import org.ceskaexpedice.akubra.processingindex.ProcessingIndex;
 import org.ceskaexpedice.fedoramodel.DigitalObject;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Core access to Akubra repository.
@@ -72,6 +75,23 @@ public interface CoreRepository {
      */
     byte[] getAsBytes(String pid);
 
+    /**
+     * Opens an object for streaming. Cached objects are served from memory, others are streamed
+     * from the object store without being buffered. The caller is responsible for closing the stream.
+     *
+     * @param pid The unique identifier of the object.
+     * @return The object stream or null if the object does not exist.
+     */
+    InputStream getAsStream(String pid);
+
+    /**
+     * Retrieves the datastream index of an object; the index answers datastream lookups without parsing the object again.
+     *
+     * @param pid The unique identifier of the object.
+     * @return The datastream index or null if the object does not exist.
+     */
+    DatastreamIndex getDatastreamIndex(String pid);
+
     /**
      * Resolves archived datastreams for the provided digital object.
      *
@@ -178,6 +198,15 @@ public interface CoreRepository {
      */
     void deleteDatastream(String pid, String dsId);
 
+    /**
+     * Applies several datastream changes to the digital object under one lock and writes the object once.
+     * Does nothing if the object does not exist.
+     *
+     * @param pid        The unique identifier of the object.
+     * @param operations Fills the batch with the changes.
+     */
+    void updateDatastreams(String pid, Consumer<DatastreamBatch> operations);
+
     /**
      * Executes an operation with a lock on the specified object.
      *
@@ -195,6 +224,29 @@ public interface CoreRepository {
      */
     ProcessingIndex getProcessingIndex();
 
+    /**
+     * Returns statistics of the FOXML object cache used by {@link #getAsBytes(String)}.
+     *
+     * @return Cache statistics snapshot; {@code enabled} is false when the cache is not configured.
+     */
+    ObjectCacheStats getObjectCacheStats();
+
+    /**
+     * Waits until background processing index updates requested so far are applied and committed.
+     * Returns immediately when the processing index is updated synchronously.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The time unit of the timeout.
+     * @return {@code true} if all updates are done, {@code false} if the timeout elapsed.
+     */
+    boolean awaitProcessingIndexUpdates(long timeout, TimeUnit unit);
+
+    /**
+     * Commits the processing index after a write. Does nothing when the processing index is updated in background,
+     * the background queue commits whenever it runs empty and a commit now would precede the queued updates.
+     */
+    void commitProcessingIndex();
+
     /**
      * Shuts down the repository access system.
      * This method is typically called when the repository access system is no longer needed.
@@ -0,0 +1,653 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Immutable index of the datastreams of one FOXML object.
+ * <p>
+ * The index is built in a single pass over the serialized object without creating a parser or a DOM.
+ * For each datastream it keeps the attributes of the datastream element, the metadata of the latest
+ * datastream version, its content location and the byte range of its inline xml content. Inline content
+ * is served directly from the underlying buffer without copying; namespace declarations inherited from the FOXML
+ * envelope are prepared while indexing and spliced into the root element of the content.
+ * </p>
+ * Entities declared in a DTD are not expanded.
+ * @author pavels, petrp
+ */
+public final class DatastreamIndex {
+
+    private static final String XMLNS = "xmlns";
+
+    private final byte[] foxml;
+    private final List<String> datastreamNames;
+    private final Map<String, Datastream> datastreams;
+
+    private DatastreamIndex(byte[] foxml, List<String> datastreamNames, Map<String, Datastream> datastreams) {
+        this.foxml = foxml;
+        this.datastreamNames = Collections.unmodifiableList(datastreamNames);
+        this.datastreams = Collections.unmodifiableMap(datastreams);
+    }
+
+    /**
+     * Builds the index over the given serialized object. Objects in other encodings than UTF-8 are transcoded first.
+     *
+     * @param foxml The FOXML bytes; the array is referenced by the index and must not be modified.
+     * @return The datastream index.
+     */
+    public static DatastreamIndex build(byte[] foxml) {
+        try {
+            return new Scanner(toUtf8(foxml)).scan();
+        } catch (RepositoryException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new RepositoryException("Cannot index FOXML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns IDs of all datastreams in the document order.
+     *
+     * @return The datastream IDs.
+     */
+    public List<String> getDatastreamNames() {
+        return datastreamNames;
+    }
+
+    /**
+     * Checks whether the object contains the datastream.
+     *
+     * @param dsId The ID of the datastream.
+     * @return {@code true} if the datastream exists, {@code false} otherwise.
+     */
+    public boolean contains(String dsId) {
+        return datastreams.containsKey(dsId);
+    }
+
+    /**
+     * Returns the indexed datastream.
+     *
+     * @param dsId The ID of the datastream.
+     * @return The datastream or null if it does not exist.
+     */
+    public Datastream get(String dsId) {
+        return datastreams.get(dsId);
+    }
+
+    /**
+     * Opens the inline xml content of the latest version of the datastream.
+     *
+     * @param dsId The ID of the datastream.
+     * @return The xml content or null if the datastream does not exist or has no inline content.
+     */
+    public InputStream openXmlContent(String dsId) {
+        Datastream datastream = datastreams.get(dsId);
+        if (datastream == null || !datastream.hasXmlContent()) {
+            return null;
+        }
+        if (datastream.namespaceDeclarations == null) {
+            return new ByteArrayInputStream(foxml, datastream.contentStart, datastream.contentEnd - datastream.contentStart);
+        }
+        // views over the shared buffer, only the declarations are extra bytes
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(foxml, datastream.contentStart, datastream.rootNameEnd - datastream.contentStart),
+                new ByteArrayInputStream(datastream.namespaceDeclarations),
+                new ByteArrayInputStream(foxml, datastream.rootNameEnd, datastream.contentEnd - datastream.rootNameEnd))));
+    }
+
+    private static byte[] namespaceDeclarations(Map<String, String> namespaces) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+            sb.append(" xmlns:").append(ns.getKey()).append("=\"").append(escapeAttribute(ns.getValue())).append('"');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escapeAttribute(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * One datastream of the object; version dependent values belong to the latest version.
+     */
+    public static final class Datastream {
+        private final String id;
+        private final String controlGroup;
+        private final String state;
+        private final String versionable;
+        private String versionId;
+        private String label;
+        private String mimeType;
+        private String created;
+        private String size;
+        private String formatUri;
+        private String contentLocationType;
+        private String contentLocationRef;
+        private int contentStart = -1;
+        private int rootNameEnd = -1;
+        private int contentEnd = -1;
+        private byte[] namespaceDeclarations;
+
+        private Datastream(String id, String controlGroup, String state, String versionable) {
+            this.id = id;
+            this.controlGroup = controlGroup;
+            this.state = state;
+            this.versionable = versionable;
+        }
+
+        private void newVersion(Map<String, String> attributes) {
+            versionId = attributes.get("ID");
+            label = attributes.get("LABEL");
+            mimeType = attributes.get("MIMETYPE");
+            created = attributes.get("CREATED");
+            size = attributes.get("SIZE");
+            formatUri = attributes.get("FORMAT_URI");
+            contentLocationType = null;
+            contentLocationRef = null;
+            contentStart = -1;
+            rootNameEnd = -1;
+            contentEnd = -1;
+            namespaceDeclarations = null;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getControlGroup() {
+            return controlGroup;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public String getVersionable() {
+            return versionable;
+        }
+
+        public String getVersionId() {
+            return versionId;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getCreated() {
+            return created;
+        }
+
+        public String getSize() {
+            return size;
+        }
+
+        public String getFormatUri() {
+            return formatUri;
+        }
+
+        public String getContentLocationType() {
+            return contentLocationType;
+        }
+
+        public String getContentLocationRef() {
+            return contentLocationRef;
+        }
+
+        public boolean hasXmlContent() {
+            return contentStart >= 0;
+        }
+
+        /**
+         * Returns the length of the inline xml content in bytes as stored in the object.
+         *
+         * @return content length or -1 when the datastream has no inline content
+         */
+        public int getXmlContentLength() {
+            return hasXmlContent() ? contentEnd - contentStart : -1;
+        }
+    }
+
+    private static byte[] toUtf8(byte[] bytes) {
+        if (bytes.length >= 2 && ((bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF) || (bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE))) {
+            return reencode(new String(bytes, StandardCharsets.UTF_16));
+        }
+        int offset = bytes.length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF ? 3 : 0;
+        if (!startsWith(bytes, offset, "<?xml")) {
+            return bytes;
+        }
+        int end = indexOf(bytes, offset, "?>");
+        if (end < 0) {
+            return bytes;
+        }
+        String declaration = new String(bytes, offset, end - offset, StandardCharsets.US_ASCII);
+        int encodingIndex = declaration.indexOf("encoding");
+        if (encodingIndex < 0) {
+            return bytes;
+        }
+        int quote = encodingIndex + "encoding".length();
+        while (quote < declaration.length() && declaration.charAt(quote) != '"' && declaration.charAt(quote) != '\'') {
+            quote++;
+        }
+        int quoteEnd = quote < declaration.length() ? declaration.indexOf(declaration.charAt(quote), quote + 1) : -1;
+        if (quoteEnd < 0) {
+            return bytes;
+        }
+        String encoding = declaration.substring(quote + 1, quoteEnd);
+        if ("UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding) || "US-ASCII".equalsIgnoreCase(encoding)) {
+            return bytes;
+        }
+        String decoded = new String(bytes, Charset.forName(encoding));
+        return reencode(decoded);
+    }
+
+    private static byte[] reencode(String document) {
+        String content = document.startsWith("\uFEFF") ? document.substring(1) : document;
+        if (content.startsWith("<?xml")) {
+            content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + content.substring(content.indexOf("?>") + 2);
+        }
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, String prefix) {
+        if (bytes.length - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, int from, String token) {
+        byte first = (byte) token.charAt(0);
+        for (int i = from; i <= bytes.length - token.length(); i++) {
+            if (bytes[i] == first && startsWith(bytes, i, token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Single pass tokenizer over the FOXML bytes. Elements of the FOXML envelope are recognized by their
+     * depth: digitalObject / datastream / datastreamVersion / contentLocation, xmlContent.
+     */
+    private static final class Scanner {
+        private static final int DATASTREAM_DEPTH = 2;
+        private static final int VERSION_DEPTH = 3;
+        private static final int CONTENT_DEPTH = 4;
+
+        private final byte[] b;
+        private int pos;
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Datastream> datastreams = new HashMap<>();
+        private final Deque<Map<String, String>> namespaceScopes = new ArrayDeque<>();
+
+        private int depth;
+        private Datastream current;
+        private boolean inVersion;
+
+        // state of the xmlContent element being scanned
+        private String xmlContentName;
+        private int xmlContentStart;
+        private int xmlContentNameEnd;
+        private int contentDepth;
+        private int roots;
+        private int rootStart;
+        private int rootNameEnd;
+        private int rootEnd;
+        private Set<String> rootDeclaredPrefixes;
+        private final Set<String> usedPrefixes = new HashSet<>();
+
+        private Scanner(byte[] b) {
+            this.b = b;
+        }
+
+        private DatastreamIndex scan() {
+            int n = b.length;
+            while (pos < n) {
+                if (b[pos] != '<') {
+                    pos++;
+                    continue;
+                }
+                if (startsWith(b, pos, "<?")) {
+                    pos = skipPast(pos + 2, "?>");
+                } else if (startsWith(b, pos, "<!--")) {
+                    pos = skipPast(pos + 4, "-->");
+                } else if (startsWith(b, pos, "<![CDATA[")) {
+                    pos = skipPast(pos + 9, "]]>");
+                } else if (startsWith(b, pos, "<!")) {
+                    pos = skipDoctype(pos + 2);
+                } else if (b[pos + 1] == '/') {
+                    endTag();
+                } else {
+                    startTag();
+                }
+            }
+            return new DatastreamIndex(b, names, datastreams);
+        }
+
+        private void startTag() {
+            int tagStart = pos;
+            pos++;
+            int nameStart = pos;
+            String name = readName();
+            int nameEnd = pos;
+            if (xmlContentName != null) {
+                // inside inline content: only names are of interest
+                usedPrefixes.add(prefix(name));
+                Map<String, String> attributes = readAttributes(false);
+                boolean empty = b[pos - 2] == '/';
+                if (contentDepth == 0) {
+                    roots++;
+                    rootStart = tagStart;
+                    rootNameEnd = nameEnd;
+                    rootDeclaredPrefixes = attributes.keySet();
+                    if (empty) {
+                        rootEnd = pos;
+                    }
+                }
+                if (!empty) {
+                    contentDepth++;
+                }
+                return;
+            }
+            Map<String, String> attributes = readAttributes(true);
+            boolean empty = b[pos - 2] == '/';
+            depth++;
+            namespaceScopes.push(declaredNamespaces(attributes));
+            String localName = localName(name);
+            if (depth == DATASTREAM_DEPTH && "datastream".equals(localName)) {
+                String id = attributes.get("ID");
+                current = new Datastream(id, attributes.get("CONTROL_GROUP"), attributes.get("STATE"), attributes.get("VERSIONABLE"));
+                if (id != null) {
+                    names.add(id);
+                    datastreams.put(id, current);
+                }
+            } else if (depth == VERSION_DEPTH && current != null && "datastreamVersion".equals(localName)) {
+                current.newVersion(attributes);
+                inVersion = true;
+            } else if (depth == CONTENT_DEPTH && inVersion) {
+                if ("contentLocation".equals(localName)) {
+                    current.contentLocationType = attributes.get("TYPE");
+                    current.contentLocationRef = attributes.get("REF");
+                } else if ("xmlContent".equals(localName) && !empty) {
+                    xmlContentName = name;
+                    xmlContentStart = tagStart;
+                    xmlContentNameEnd = nameStart + name.length();
+                    contentDepth = 0;
+                    roots = 0;
+                    rootStart = -1;
+                    usedPrefixes.clear();
+                    return;
+                }
+            }
+            if (empty) {
+                closeElement();
+            }
+        }
+
+        private void endTag() {
+            pos += 2;
+            String name = readName();
+            pos = skipPast(pos, ">");
+            if (xmlContentName != null) {
+                if (contentDepth > 0) {
+                    contentDepth--;
+                    if (contentDepth == 0) {
+                        rootEnd = pos;
+                    }
+                    return;
+                }
+                if (name.equals(xmlContentName)) {
+                    finishXmlContent(pos);
+                    xmlContentName = null;
+                    closeElement();
+                }
+                return;
+            }
+            closeElement();
+        }
+
+        private void closeElement() {
+            if (depth == VERSION_DEPTH) {
+                inVersion = false;
+            } else if (depth == DATASTREAM_DEPTH) {
+                current = null;
+            }
+            namespaceScopes.pop();
+            depth--;
+        }
+
+        private void finishXmlContent(int xmlContentEnd) {
+            Map<String, String> inherited = new LinkedHashMap<>();
+            if (roots == 1) {
+                current.contentStart = rootStart;
+                current.rootNameEnd = rootNameEnd;
+                current.contentEnd = rootEnd;
+                for (String prefix : usedPrefixes) {
+                    if (prefix.isEmpty() || rootDeclaredPrefixes.contains(prefix)) {
+                        continue;
+                    }
+                    inheritNamespace(prefix, inherited);
+                }
+            } else {
+                // no or several root elements, the xmlContent element itself is the content
+                current.contentStart = xmlContentStart;
+                current.rootNameEnd = xmlContentNameEnd;
+                current.contentEnd = xmlContentEnd;
+                Set<String> prefixes = new LinkedHashSet<>(usedPrefixes);
+                prefixes.add(prefix(xmlContentName));
+                Map<String, String> declaredOnXmlContent = namespaceScopes.peek();
+                for (String prefix : prefixes) {
+                    if (prefix.isEmpty() || declaredOnXmlContent.containsKey(prefix)) {
+                        continue;
+                    }
+                    inheritNamespace(prefix, inherited);
+                }
+            }
+            current.namespaceDeclarations = inherited.isEmpty() ? null : namespaceDeclarations(inherited);
+        }
+
+        private void inheritNamespace(String prefix, Map<String, String> inherited) {
+            if ("xml".equals(prefix) || XMLNS.equals(prefix)) {
+                return;
+            }
+            for (Map<String, String> scope : namespaceScopes) {
+                String uri = scope.get(prefix);
+                if (uri != null) {
+                    inherited.put(prefix, uri);
+                    return;
+                }
+            }
+        }
+
+        private Map<String, String> declaredNamespaces(Map<String, String> attributes) {
+            Map<String, String> declared = null;
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                if (attribute.getKey().startsWith(XMLNS + ":")) {
+                    if (declared == null) {
+                        declared = new HashMap<>();
+                    }
+                    declared.put(attribute.getKey().substring(XMLNS.length() + 1), attribute.getValue());
+                }
+            }
+            return declared == null ? Collections.emptyMap() : declared;
+        }
+
+        /**
+         * Reads attributes up to the end of the start tag. With {@code values} false only the prefixes of the
+         * attribute names are recorded and the returned map contains declared namespace prefixes.
+         */
+        private Map<String, String> readAttributes(boolean values) {
+            Map<String, String> attributes = values ? new HashMap<>() : new HashMap<>(2);
+            while (true) {
+                skipWhitespace();
+                byte c = b[pos];
+                if (c == '>') {
+                    pos++;
+                    return attributes;
+                }
+                if (c == '/' && b[pos + 1] == '>') {
+                    pos += 2;
+                    return attributes;
+                }
+                String name = readName();
+                skipWhitespace();
+                if (b[pos] != '=') {
+                    throw new RepositoryException("Malformed attribute " + name + " at " + pos);
+                }
+                pos++;
+                skipWhitespace();
+                byte quote = b[pos];
+                if (quote != '"' && quote != '\'') {
+                    throw new RepositoryException("Malformed attribute value of " + name + " at " + pos);
+                }
+                int valueStart = pos + 1;
+                int valueEnd = valueStart;
+                while (b[valueEnd] != quote) {
+                    valueEnd++;
+                }
+                pos = valueEnd + 1;
+                if (values) {
+                    attributes.put(name, decode(valueStart, valueEnd));
+                } else if (name.startsWith(XMLNS + ":")) {
+                    attributes.put(name.substring(XMLNS.length() + 1), "");
+                } else if (!XMLNS.equals(name)) {
+                    usedPrefixes.add(prefix(name));
+                }
+            }
+        }
+
+        private String readName() {
+            int start = pos;
+            while (pos < b.length) {
+                byte c = b[pos];
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '>' || c == '/' || c == '=') {
+                    break;
+                }
+                pos++;
+            }
+            if (pos == start) {
+                throw new RepositoryException("Malformed xml: name expected at " + start);
+            }
+            return new String(b, start, pos - start, StandardCharsets.UTF_8);
+        }
+
+        private void skipWhitespace() {
+            while (pos < b.length && (b[pos] == ' ' || b[pos] == '\t' || b[pos] == '\n' || b[pos] == '\r')) {
+                pos++;
+            }
+        }
+
+        private int skipPast(int from, String token) {
+            int index = indexOf(b, from, token);
+            if (index < 0) {
+                throw new RepositoryException("Malformed xml: missing " + token);
+            }
+            return index + token.length();
+        }
+
+        private int skipDoctype(int from) {
+            int brackets = 0;
+            byte quote = 0;
+            for (int i = from; i < b.length; i++) {
+                byte c = b[i];
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '[') {
+                    brackets++;
+                } else if (c == ']') {
+                    brackets--;
+                } else if (c == '>' && brackets == 0) {
+                    return i + 1;
+                }
+            }
+            throw new RepositoryException("Malformed xml: unterminated declaration");
+        }
+
+        private String decode(int start, int end) {
+            String raw = new String(b, start, end - start, StandardCharsets.UTF_8);
+            if (raw.indexOf('&') < 0 && raw.indexOf('\n') < 0 && raw.indexOf('\t') < 0 && raw.indexOf('\r') < 0) {
+                return raw;
+            }
+            StringBuilder sb = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c == '\n' || c == '\t' || c == '\r') {
+                    sb.append(' ');
+                } else if (c == '&') {
+                    int semicolon = raw.indexOf(';', i);
+                    if (semicolon < 0) {
+                        sb.append(c);
+                        continue;
+                    }
+                    String entity = raw.substring(i + 1, semicolon);
+                    switch (entity) {
+                        case "lt": sb.append('<'); break;
+                        case "gt": sb.append('>'); break;
+                        case "amp": sb.append('&'); break;
+                        case "quot": sb.append('"'); break;
+                        case "apos": sb.append('\''); break;
+                        default:
+                            if (entity.startsWith("#x")) {
+                                sb.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                            } else if (entity.startsWith("#")) {
+                                sb.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                            } else {
+                                sb.append('&').append(entity).append(';');
+                            }
+                    }
+                    i = semicolon;
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String prefix(String qName) {
+            int colon = qName.indexOf(':');
+            return colon < 0 ? "" : qName.substring(0, colon);
+        }
+
+        private static String localName(String qName) {
+            int colon = qName.indexOf(':');
+            return colon < 0 ? qName : qName.substring(colon + 1);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository;
+
+/**
+ * Snapshot of the FOXML object cache statistics
+ * @param enabled true if the cache is configured
+ * @param hitCount number of lookups served from the cache
+ * @param missCount number of lookups that had to read the object store
+ * @param evictionCount number of entries evicted because of size or expiration
+ * @param entryCount current number of cached objects
+ * @param weightBytes current size of cached objects in bytes
+ * @param maxWeightBytes configured upper bound in bytes
+ */
+public record ObjectCacheStats(
+        boolean enabled,
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long entryCount,
+        long weightBytes,
+        long maxWeightBytes
+) {
+}
@@ -22,10 +22,16 @@ import org.akubraproject.fs.FSBlobStore;
 import org.akubraproject.map.IdMapper;
 import org.akubraproject.map.IdMappingBlobStore;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.ceskaexpedice.akubra.DistributedLocksException;
+import org.ceskaexpedice.akubra.KnownDatastreams;
 import org.ceskaexpedice.akubra.LockOperation;
 import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.config.FoxmlBinding;
 import org.ceskaexpedice.akubra.config.RepositoryConfiguration;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
+import org.ceskaexpedice.akubra.core.repository.ObjectCacheStats;
 import org.ceskaexpedice.fedoramodel.*;
 import org.ceskaexpedice.hazelcast.HazelcastClientNode;
 import org.ceskaexpedice.hazelcast.HazelcastConfiguration;
@@ -38,18 +44,23 @@ import org.fcrepo.server.storage.lowlevel.akubra.AkubraLowlevelStorage;
 import org.fcrepo.server.storage.lowlevel.akubra.HashPathIdMapper;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.OutputStream;
 import java.net.URI;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,38 +69,65 @@ import java.util.logging.Logger;
  * AkubraDOManager
  */
 class AkubraDOManager {
-    private static final int UNMARSHALLER_POOL_CAPACITY = 50; // TODO make it configurable
     private static final Logger LOGGER = Logger.getLogger(AkubraDOManager.class.getName());
+    private static final String CONTENT_DIGEST_TYPE = "MD5";
 
     private RepositoryConfiguration configuration;
     private ILowlevelStorage storage;
 
     private HazelcastClientNode hazelcastClientNode;
 
-    private final BlockingQueue<Unmarshaller> unmarshallerPool = new LinkedBlockingQueue<>(UNMARSHALLER_POOL_CAPACITY);
-    private Marshaller marshaller;
+    private JaxbPool<Unmarshaller> unmarshallerPool;
+    private JaxbPool<Marshaller> marshallerPool;
+    private FoxmlCache objectCache;
 
     AkubraDOManager(RepositoryConfiguration configuration) {
         try {
+            long start = System.currentTimeMillis();
             this.initialize(configuration);
+            long jaxbReady = System.currentTimeMillis();
             this.configuration = configuration;
             this.storage = initLowLevelStorage();
+            long storageReady = System.currentTimeMillis();
+            if (configuration.getObjectCacheMaxBytes() > 0) {
+                this.objectCache = new FoxmlCache(configuration.getObjectCacheMaxBytes(), configuration.getObjectCacheExpirationSecs());
+            }
+            LOGGER.info(String.format("Repository manager initialized in %d ms (JAXB %d ms, storage %d ms)",
+                    System.currentTimeMillis() - start, jaxbReady - start, storageReady - jaxbReady));
         } catch (Exception ex) {
             throw new RepositoryException(ex);
         }
     }
 
     private void initialize(RepositoryConfiguration configuration) {
+        if (configuration.getFoxmlBinding() == FoxmlBinding.STAX) {
+            // the StAX binder needs neither the JAXB context nor the pools
+            return;
+        }
         try {
             JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-            for (int i = 0; i < UNMARSHALLER_POOL_CAPACITY; i++) {
-                unmarshallerPool.offer(jaxbContext.createUnmarshaller());
-            }
-            marshaller = jaxbContext.createMarshaller();
+            long acquireTimeoutMillis = TimeUnit.SECONDS.toMillis(configuration.getJaxbPoolAcquireTimeoutSecs());
+            unmarshallerPool = new JaxbPool<>("unmarshaller", configuration.getJaxbPoolMaxSize(), acquireTimeoutMillis, jaxbContext::createUnmarshaller);
+            marshallerPool = new JaxbPool<>("marshaller", configuration.getJaxbPoolMaxSize(), acquireTimeoutMillis, jaxbContext::createMarshaller);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Cannot init JAXB", e);
             throw new RepositoryException(e);
         }
+        if (configuration.getJaxbPoolWarmupSize() > 0) {
+            startJaxbWarmup(configuration.getJaxbPoolWarmupSize());
+        }
+    }
+
+    private void startJaxbWarmup(int size) {
+        Thread warmup = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            int unmarshallers = unmarshallerPool.warmup(size);
+            int marshallers = marshallerPool.warmup(size);
+            LOGGER.info(String.format("JAXB warmup created %d unmarshallers and %d marshallers in %d ms",
+                    unmarshallers, marshallers, System.currentTimeMillis() - start));
+        }, "akubra-jaxb-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
     }
 
     private HazelcastClientNode getLockService() {
@@ -128,19 +166,15 @@ class AkubraDOManager {
     }
 
     DigitalObject readObjectFromStorage(String pid) {
-        DigitalObject retval;
-        Object obj;
         try (InputStream inputStream = this.storage.retrieveObject(pid);) {
-            Unmarshaller unmarshaller = unmarshallerPool.take();
-            obj = unmarshaller.unmarshal(inputStream);
-            unmarshallerPool.offer(unmarshaller);
+            return unmarshall(inputStream);
         } catch (ObjectNotInLowlevelStorageException ex) {
             return null;
+        } catch (RepositoryException e) {
+            throw e;
         } catch (Exception e) {
             throw new RepositoryException(e);
         }
-        retval = (DigitalObject) obj;
-        return retval;
     }
 
     InputStream retrieveDatastream(String dsKey) {
@@ -160,6 +194,37 @@ class AkubraDOManager {
     }
 
     byte[] retrieveObjectBytes(String pid) {
+        if (objectCache != null) {
+            return objectCache.get(pid, () -> readObjectBytes(pid));
+        }
+        return readObjectBytes(pid);
+    }
+
+    InputStream retrieveObjectStream(String pid) {
+        if (objectCache != null) {
+            byte[] bytes = objectCache.getIfPresent(pid);
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+        }
+        try {
+            return storage.retrieveObject(pid);
+        } catch (ObjectNotInLowlevelStorageException e) {
+            return null;
+        } catch (LowlevelStorageException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    DatastreamIndex retrieveDatastreamIndex(String pid) {
+        if (objectCache != null) {
+            return objectCache.getDatastreamIndex(pid, () -> readObjectBytes(pid));
+        }
+        byte[] bytes = readObjectBytes(pid);
+        return bytes != null ? DatastreamIndex.build(bytes) : null;
+    }
+
+    private byte[] readObjectBytes(String pid) {
         try (InputStream io = storage.retrieveObject(pid)) {
             return IOUtils.toByteArray(io);
         } catch (ObjectNotInLowlevelStorageException e) {
@@ -169,26 +234,41 @@ class AkubraDOManager {
         }
     }
 
-    void deleteObject(String pid, boolean includingManagedDatastreams) {
-        doWithLock(pid, () -> {
-            if (includingManagedDatastreams) {
-                DigitalObject object = readObjectFromStorage(pid);
+    /**
+     * @return RELS-EXT datastream of the removed object or null if the object did not have it
+     */
+    DatastreamType deleteObject(String pid, boolean includingManagedDatastreams) {
+        return doWithLock(pid, () -> {
+            DigitalObject object = readObjectFromStorage(pid);
+            DatastreamType relsExt = null;
+            if (object != null) {
                 for (DatastreamType datastreamType : object.getDatastream()) {
-                    removeManagedStream(datastreamType);
+                    if (includingManagedDatastreams) {
+                        removeManagedStream(datastreamType);
+                    }
+                    if (KnownDatastreams.RELS_EXT.toString().equals(datastreamType.getID())) {
+                        relsExt = datastreamType;
+                    }
                 }
             }
             try {
                 storage.removeObject(pid);
             } catch (LowlevelStorageException e) {
                 LOGGER.severe("Could not remove object from Akubra: " + e);
+            } finally {
+                invalidateCachedObject(pid);
             }
-            return null;
+            return relsExt;
         });
     }
 
-    void deleteStream(String pid, String streamId) {
-        doWithLock(pid, () -> {
+    /**
+     * @return the removed datastream or null if the object did not have it
+     */
+    DatastreamType deleteStream(String pid, String streamId) {
+        return doWithLock(pid, () -> {
             DigitalObject object = readObjectFromStorage(pid);
+            DatastreamType removed = null;
             List<DatastreamType> datastreamList = object.getDatastream();
             Iterator<DatastreamType> iterator = datastreamList.iterator();
             while (iterator.hasNext()) {
@@ -196,21 +276,19 @@ class AkubraDOManager {
                 if (streamId.equals(datastreamType.getID())) {
                     removeManagedStream(datastreamType);
                     iterator.remove();
+                    removed = datastreamType;
                     break;
                 }
             }
             try {
                 setLastModified(object);
-                StringWriter stringWriter = new StringWriter();
-                synchronized (marshaller) {
-                    marshaller.marshal(object, stringWriter);
-                }
-                addOrReplaceObject(pid, new ByteArrayInputStream(stringWriter.toString().getBytes("UTF-8")));
-
+                storeObject(pid, object);
             } catch (Exception e) {
                 LOGGER.severe("Could not replace object in Akubra: " + e + ", pid:'" + pid + "'");
+            } finally {
+                invalidateCachedObject(pid);
             }
-            return null;
+            return removed;
         });
     }
 
@@ -218,39 +296,24 @@ class AkubraDOManager {
         if ("M".equals(datastreamType.getCONTROLGROUP())) {
             for (DatastreamVersionType datastreamVersionType : datastreamType.getDatastreamVersion()) {
                 if ("INTERNAL_ID".equals(datastreamVersionType.getContentLocation().getTYPE())) {
-                    try {
-                        storage.removeDatastream(datastreamVersionType.getContentLocation().getREF());
-                    } catch (LowlevelStorageException e) {
-                        LOGGER.severe("Could not remove managed datastream from Akubra: " + e);
-                    }
+                    removeManagedContent(datastreamVersionType.getContentLocation().getREF());
                 }
             }
         }
     }
 
+    void removeManagedContent(String ref) {
+        try {
+            storage.removeDatastream(ref);
+        } catch (LowlevelStorageException e) {
+            LOGGER.severe("Could not remove managed datastream from Akubra: " + e);
+        }
+    }
+
     void write(DigitalObject object, String streamId) {
         doWithLock(object.getPID(), () -> {
-            List<DatastreamType> datastreamList = object.getDatastream();
-            Iterator<DatastreamType> iterator = datastreamList.iterator();
-            while (iterator.hasNext()) {
-                DatastreamType datastream = iterator.next();
-                ensureDsVersionCreatedDate(datastream);
-                if (streamId != null && streamId.equals(datastream.getID())) {
-                    convertManagedStream(object.getPID(), datastream);
-                    break;
-                } else {
-                    convertManagedStream(object.getPID(), datastream);
-                }
-            }
             try {
-                setLastModified(object);
-                ensureCreatedDate(object);
-                ensureActive(object);
-                StringWriter stringWriter = new StringWriter();
-                synchronized (marshaller) {
-                    marshaller.marshal(object, stringWriter);
-                }
-                addOrReplaceObject(object.getPID(), new ByteArrayInputStream(stringWriter.toString().getBytes("UTF-8")));
+                store(object, streamId);
             } catch (Exception e) {
                 LOGGER.severe("Could not replace object in Akubra: " + e);
             }
@@ -258,26 +321,142 @@ class AkubraDOManager {
         });
     }
 
-    InputStream marshallObject(DigitalObject object) {
+    /**
+     * Writes the object like {@link #write(DigitalObject, String)}, failures are thrown instead of logged.
+     */
+    void writeOrThrow(DigitalObject object) {
+        doWithLock(object.getPID(), () -> {
+            try {
+                store(object, null);
+            } catch (RepositoryException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RepositoryException(e);
+            }
+            return null;
+        });
+    }
+
+    private void store(DigitalObject object, String streamId) throws LowlevelStorageException {
+        List<DatastreamType> datastreamList = object.getDatastream();
+        Iterator<DatastreamType> iterator = datastreamList.iterator();
+        while (iterator.hasNext()) {
+            DatastreamType datastream = iterator.next();
+            ensureDsVersionCreatedDate(datastream);
+            if (streamId != null && streamId.equals(datastream.getID())) {
+                convertManagedStream(object.getPID(), datastream);
+                break;
+            } else {
+                convertManagedStream(object.getPID(), datastream);
+            }
+        }
         try {
-            StringWriter stringWriter = new StringWriter();
-            synchronized (marshaller) {
-                marshaller.marshal(object, stringWriter);
+            setLastModified(object);
+            ensureCreatedDate(object);
+            ensureActive(object);
+            storeObject(object.getPID(), object);
+        } finally {
+            invalidateCachedObject(object.getPID());
+        }
+    }
+
+    /**
+     * Streams the content of a managed datastream to the datastream store and writes the object;
+     * the FOXML gets only the content location, size and digest of the latest version.
+     */
+    void writeManagedStream(DigitalObject object, String streamId, InputStream content) {
+        doWithLock(object.getPID(), () -> {
+            for (DatastreamType datastream : object.getDatastream()) {
+                if (streamId.equals(datastream.getID())) {
+                    List<DatastreamVersionType> versions = datastream.getDatastreamVersion();
+                    storeManagedContent(object.getPID(), datastream, versions.get(versions.size() - 1), content);
+                    break;
+                }
             }
-            return new ByteArrayInputStream(stringWriter.toString().getBytes("UTF-8"));
+            write(object, streamId);
+            return null;
+        });
+    }
+
+    InputStream marshallObject(DigitalObject object) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            marshall(object, out);
+            return out.toInputStream();
         } catch (Exception e) {
             LOGGER.severe("Could not marshall object: " + e);
             throw new RepositoryException(e);
         }
     }
 
+    private DigitalObject unmarshall(InputStream inputStream) throws JAXBException, XMLStreamException {
+        if (unmarshallerPool == null) {
+            return FoxmlStaxBinder.read(inputStream);
+        }
+        Unmarshaller unmarshaller = unmarshallerPool.acquire();
+        boolean success = false;
+        try {
+            DigitalObject object = (DigitalObject) unmarshaller.unmarshal(inputStream);
+            success = true;
+            return object;
+        } finally {
+            // an unmarshaller that failed is not reused
+            if (success) {
+                unmarshallerPool.release(unmarshaller);
+            } else {
+                unmarshallerPool.discard(unmarshaller);
+            }
+        }
+    }
+
+    private void marshall(DigitalObject object, OutputStream out) throws IOException {
+        if (marshallerPool == null) {
+            try {
+                FoxmlStaxBinder.write(object, out);
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+            return;
+        }
+        try {
+            Marshaller marshaller = marshallerPool.acquire();
+            boolean success = false;
+            try {
+                marshaller.marshal(object, out);
+                success = true;
+            } finally {
+                // a marshaller that failed is not reused
+                if (success) {
+                    marshallerPool.release(marshaller);
+                } else {
+                    marshallerPool.discard(marshaller);
+                }
+            }
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Serializes the object straight into its blob, there is no intermediate copy in memory.
+     */
+    private void storeObject(String pid, DigitalObject object) throws LowlevelStorageException {
+        if (storage instanceof AkubraLowlevelStorage) {
+            AkubraLowlevelStorage akubraStorage = (AkubraLowlevelStorage) storage;
+            AkubraLowlevelStorage.ContentWriter writer = out -> marshall(object, out);
+            if (akubraStorage.objectExists(pid)) {
+                akubraStorage.replaceObject(pid, writer, null);
+            } else {
+                akubraStorage.addObject(pid, writer, null);
+            }
+        } else {
+            addOrReplaceObject(pid, marshallObject(object));
+        }
+    }
+
     DigitalObject unmarshallObject(InputStream inputStream) {
         try {
-            Object obj;
-            Unmarshaller unmarshaller = unmarshallerPool.take();
-            obj = unmarshaller.unmarshal(inputStream);
-            unmarshallerPool.offer(unmarshaller);
-            return (DigitalObject) obj;
+            return unmarshall(inputStream);
         } catch (Exception e) {
             LOGGER.severe("Could not unmarshall object: " + e);
             throw new RepositoryException(e);
@@ -344,13 +523,7 @@ class AkubraDOManager {
             for (DatastreamVersionType datastreamVersion : datastream.getDatastreamVersion()) {
                 if (datastreamVersion.getBinaryContent() != null) {
                     try {
-                        String ref = pid + "+" + datastream.getID() + "+" + datastreamVersion.getID();
-                        addOrReplaceDatastream(ref, new ByteArrayInputStream(datastreamVersion.getBinaryContent()));
-                        datastreamVersion.setBinaryContent(null);
-                        ContentLocationType contentLocationType = new ContentLocationType();
-                        contentLocationType.setTYPE("INTERNAL_ID");
-                        contentLocationType.setREF(ref);
-                        datastreamVersion.setContentLocation(contentLocationType);
+                        storeManagedContent(pid, datastream, datastreamVersion, new ByteArrayInputStream(datastreamVersion.getBinaryContent()));
                     } catch (LowlevelStorageException e) {
                         LOGGER.severe("Could not remove managed datastream from Akubra: " + e);
                     }
@@ -359,6 +532,31 @@ class AkubraDOManager {
         }
     }
 
+    void storeManagedContent(String pid, DatastreamType datastream, DatastreamVersionType datastreamVersion, InputStream content) throws LowlevelStorageException {
+        String ref = pid + "+" + datastream.getID() + "+" + datastreamVersion.getID();
+        MessageDigest digest = newContentDigest();
+        CountingInputStream counting = new CountingInputStream(new DigestInputStream(content, digest));
+        addOrReplaceDatastream(ref, counting);
+        datastreamVersion.setBinaryContent(null);
+        ContentLocationType contentLocationType = new ContentLocationType();
+        contentLocationType.setTYPE("INTERNAL_ID");
+        contentLocationType.setREF(ref);
+        datastreamVersion.setContentLocation(contentLocationType);
+        datastreamVersion.setSIZE(counting.getByteCount());
+        ContentDigestType contentDigestType = new ContentDigestType();
+        contentDigestType.setTYPE(CONTENT_DIGEST_TYPE);
+        contentDigestType.setDIGEST(HexFormat.of().formatHex(digest.digest()));
+        datastreamVersion.setContentDigest(contentDigestType);
+    }
+
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_DIGEST_TYPE);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     void resolveArchivedDatastreams(DigitalObject object) {
         for (DatastreamType datastreamType : object.getDatastream()) {
             resolveArchiveManagedStream(datastreamType);
@@ -438,7 +636,23 @@ class AkubraDOManager {
         }
     }
 
+    private void invalidateCachedObject(String pid) {
+        if (objectCache != null) {
+            objectCache.invalidate(pid);
+        }
+    }
+
+    ObjectCacheStats getObjectCacheStats() {
+        if (objectCache == null) {
+            return new ObjectCacheStats(false, 0, 0, 0, 0, 0, 0);
+        }
+        return objectCache.getStats();
+    }
+
     void shutdown() {
+        if (objectCache != null) {
+            objectCache.invalidateAll();
+        }
         if (hazelcastClientNode != null) {
             hazelcastClientNode.shutdown();
         }
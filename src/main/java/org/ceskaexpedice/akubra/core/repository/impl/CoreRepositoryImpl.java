@@ -17,28 +17,29 @@
 package org.ceskaexpedice.akubra.core.repository.impl;
 
 import org.akubraproject.map.IdMapper;
-import org.apache.commons.io.IOUtils;
 import org.apache.solr.common.SolrInputField;
+import org.ceskaexpedice.akubra.DatastreamBatch;
 import org.ceskaexpedice.akubra.KnownDatastreams;
 import org.ceskaexpedice.akubra.LockOperation;
 import org.ceskaexpedice.akubra.RepositoryException;
 import org.ceskaexpedice.akubra.config.RepositoryConfiguration;
+import org.ceskaexpedice.akubra.core.processingindex.RelsExtFingerprint;
 import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
+import org.ceskaexpedice.akubra.core.repository.ObjectCacheStats;
 import org.ceskaexpedice.akubra.core.repository.RepositoryDatastream;
 import org.ceskaexpedice.akubra.core.repository.RepositoryObject;
 import org.ceskaexpedice.akubra.impl.utils.ProcessingIndexUtils;
 import org.ceskaexpedice.akubra.processingindex.ProcessingIndex;
 import org.ceskaexpedice.akubra.processingindex.ProcessingIndexItem;
 import org.ceskaexpedice.akubra.processingindex.ProcessingIndexQueryParameters;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.ceskaexpedice.fedoramodel.*;
 import org.fcrepo.server.storage.lowlevel.akubra.HashPathIdMapper;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
@@ -46,6 +47,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -64,11 +67,25 @@ public class CoreRepositoryImpl implements CoreRepository {
 
     private AkubraDOManager manager;
     private ProcessingIndex processingIndex;
+    private ProcessingIndexUpdateQueue processingIndexUpdateQueue;
 
     public CoreRepositoryImpl(RepositoryConfiguration configuration) {
         super();
         this.manager = new AkubraDOManager(configuration);
         idMapper = new HashPathIdMapper(manager.getConfiguration().getDatastreamStorePattern());
+        if (configuration.isProcessingIndexAsyncUpdates()) {
+            this.processingIndexUpdateQueue = new ProcessingIndexUpdateQueue(new ProcessingIndexUpdateQueue.Handler() {
+                @Override
+                public void apply(String pid, ProcessingIndexUpdateQueue.Update update) {
+                    applyProcessingIndexUpdate(pid, update);
+                }
+
+                @Override
+                public void commit() {
+                    processingIndex.commit();
+                }
+            }, configuration.getProcessingIndexUpdateThreads(), configuration.getProcessingIndexUpdateQueueSize());
+        }
     }
 
     public void setProcessingIndex(ProcessingIndex processingIndex) {
@@ -107,7 +124,11 @@ public class CoreRepositoryImpl implements CoreRepository {
         } else {
             RepositoryObjectImpl obj = new RepositoryObjectImpl(digitalObject);
             manager.write(obj.getDigitalObject(), null);
-            processingIndex.rebuildProcessingIndex(obj.getPid(), null);
+            if (processingIndexUpdateQueue != null) {
+                processingIndexUpdateQueue.updateRelations(obj.getPid(), null);
+            } else {
+                processingIndex.rebuildProcessingIndexFromObject(obj.getDigitalObject(), null);
+            }
             return obj;
         }
     }
@@ -134,11 +155,27 @@ public class CoreRepositoryImpl implements CoreRepository {
 
     @Override
     public void delete(String pid, boolean deleteDataOfManagedDatastreams, boolean deleteRelationsWithThisAsTarget) {
+        if (processingIndexUpdateQueue != null) {
+            DatastreamType relsExt;
+            try {
+                relsExt = this.manager.deleteObject(pid, deleteDataOfManagedDatastreams);
+            } catch (Exception e) {
+                throw new RepositoryException(e);
+            }
+            processingIndexUpdateQueue.delete(pid, deleteRelationsWithThisAsTarget, relsExt != null ? inlineXmlContent(relsExt) : null);
+            return;
+        }
         try {
-            this.manager.deleteObject(pid, deleteDataOfManagedDatastreams);
+            DatastreamType relsExt = this.manager.deleteObject(pid, deleteDataOfManagedDatastreams);
+            Element previousRelsExt = relsExt != null ? inlineXmlContent(relsExt) : null;
             try {
                 // delete relations with this object as a source
-                this.processingIndex.deleteByRelationsForPid(pid);
+                if (previousRelsExt != null) {
+                    // the object is gone, relations built from its RELS-EXT are deleted by id
+                    this.processingIndex.updateRelations(pid, previousRelsExt);
+                } else {
+                    this.processingIndex.deleteByRelationsForPid(pid);
+                }
                 // possibly delete relations with this object as a target
                 if (deleteRelationsWithThisAsTarget) {
                     this.processingIndex.deleteByTargetPid(pid);
@@ -175,15 +212,33 @@ public class CoreRepositoryImpl implements CoreRepository {
         return manager.unmarshallObject(inputStream);
     }
 
+    @Override
+    public InputStream getAsStream(String pid) {
+        return this.manager.retrieveObjectStream(pid);
+    }
+
+    @Override
+    public DatastreamIndex getDatastreamIndex(String pid) {
+        return this.manager.retrieveDatastreamIndex(pid);
+    }
+
     @Override
     public InputStream getDatastreamContent(String pid, String dsId) {
-        byte[] asBytes = getAsBytes(pid);
-        if(asBytes == null) {
+        DatastreamIndex datastreamIndex = getDatastreamIndex(pid);
+        if (datastreamIndex == null) {
             return null;
         }
-        InputStream streamContent = RepositoryUtils.getDatastreamContent(pid, new ByteArrayInputStream(asBytes), dsId, this);
-        if(streamContent == null) {
-            return null;
+        DatastreamIndex.Datastream datastream = datastreamIndex.get(dsId);
+        if (datastream != null && datastream.getContentLocationRef() != null) {
+            try {
+                return RepositoryUtils.getContentLocationStream(datastream.getContentLocationType(), datastream.getContentLocationRef(), this);
+            } catch (Exception e) {
+                throw new RepositoryException("Error processing XML file: " + e.getMessage(), e);
+            }
+        }
+        InputStream streamContent = datastreamIndex.openXmlContent(dsId);
+        if (streamContent == null) {
+            LOGGER.warning(String.format("Datastream with ID '%s' not found or has no relevant content for pid '%s'", dsId, pid));
         }
         return streamContent;
     }
@@ -195,55 +250,26 @@ public class CoreRepositoryImpl implements CoreRepository {
 
     @Override
     public boolean datastreamExists(String pid, String dsId) {
-        byte[] asBytes = getAsBytes(pid);
-        if(asBytes == null) {
+        DatastreamIndex datastreamIndex = getDatastreamIndex(pid);
+        if (datastreamIndex == null) {
             return false;
         }
-        boolean exists = RepositoryUtils.datastreamExists(new ByteArrayInputStream(asBytes), dsId);
-        return exists;
+        return datastreamIndex.contains(dsId);
     }
 
     @Override
     public RepositoryDatastream createXMLDatastream(RepositoryObject repositoryObject, String dsId, String mimeType, InputStream input) {
+        DatastreamType previous = findDatastream(repositoryObject.getDigitalObject(), dsId);
         DatastreamType datastreamType = createDatastreamHeader(repositoryObject.getDigitalObject(), dsId, mimeType, "X");
         XmlContentType xmlContentType = new XmlContentType();
-        xmlContentType.getAny().add(elementFromInputStream(input));
+        Element content = elementFromInputStream(input);
+        xmlContentType.getAny().add(content);
         datastreamType.getDatastreamVersion().get(0).setXmlContent(xmlContentType);
         RepositoryDatastream ds = new RepositoryDatastreamImpl(datastreamType, dsId, RepositoryDatastream.Type.DIRECT);
         try {
             manager.write(repositoryObject.getDigitalObject(), dsId);
             if (dsId.equals(KnownDatastreams.RELS_EXT.toString())) {
-                try {
-                    String query = "source:\"" + repositoryObject.getPid() + "\" AND type:\"relation\"";
-                    List<ProcessingIndexItem> pids = new ArrayList<>();
-                    ProcessingIndexQueryParameters params = new ProcessingIndexQueryParameters.Builder()
-                            .rows(ProcessingIndexUtils.DEFAULT_MAX_LOOKAT_VALUE)
-                            .queryString(query)
-                            .fieldsToFetch(Arrays.asList("pid"))
-                            .build();
-                    this.processingIndex.lookAt(params, pids::add);
-
-                    //input.reset();
-
-                    processingIndex.rebuildProcessingIndex(repositoryObject.getPid(),updateRequest -> {
-
-                        List<Object> updateRequestPids = updateRequest.getDocuments().stream().map(doc -> {
-                            SolrInputField pid = doc.getField("pid");
-                            return pid.getValue();
-                        }).collect(Collectors.toList());
-
-                        List<String> realPids = pids.stream().map(ProcessingIndexItem::pid).collect(Collectors.toList());
-                        updateRequestPids.stream().forEach(p-> {
-                            realPids.remove(p);
-                        });
-
-                        realPids.stream().forEach(p-> {
-                            updateRequest.deleteById(p);
-                        });
-                    });
-                } catch (Throwable th) {
-                    LOGGER.log(Level.SEVERE, "Cannot update processing index for " + repositoryObject.getPid() + " - reindex manually.", th);
-                }
+                updateRelations(repositoryObject.getPid(), previous, content);
             }
             return ds;
         } catch (Exception ex) {
@@ -251,20 +277,92 @@ public class CoreRepositoryImpl implements CoreRepository {
         }
     }
 
-    @Override
-    public RepositoryDatastream createManagedDatastream(RepositoryObject repositoryObject, String dsId, String mimeType, InputStream input) {
-        DatastreamType datastreamType = createDatastreamHeader(repositoryObject.getDigitalObject(), dsId, mimeType, "M");
+    /**
+     * Reindexes relations of the object after its RELS-EXT changed or has been deleted.
+     * @param previousRelsExt RELS-EXT datastream before the change, null if there was none
+     * @param currentRelsExt RELS-EXT content after the change if it is the only change of the object, null otherwise
+     */
+    private void updateRelations(String pid, DatastreamType previousRelsExt, Element currentRelsExt) {
+        Element previous = previousRelsExt != null ? inlineXmlContent(previousRelsExt) : null;
+        if (previous != null && currentRelsExt != null && RelsExtFingerprint.sameRelations(previous, currentRelsExt)) {
+            LOGGER.fine("Relations of " + pid + " unchanged, processing index not updated");
+            return;
+        }
+        if (previousRelsExt != null && previous == null) {
+            // previous relations are not known, ask the index
+            if (exists(pid) && datastreamExists(pid, KnownDatastreams.RELS_EXT.toString())) {
+                rebuildRelations(pid);
+            } else {
+                deleteRelations(pid);
+            }
+            return;
+        }
+        if (processingIndexUpdateQueue != null) {
+            processingIndexUpdateQueue.updateRelations(pid, previous);
+            return;
+        }
+        applyUpdateRelations(pid, previous);
+    }
 
+    private void applyUpdateRelations(String pid, Element previousRelsExt) {
         try {
-            datastreamType.getDatastreamVersion().get(0).setBinaryContent(IOUtils.toByteArray(input));
-            RepositoryDatastream ds = new RepositoryDatastreamImpl(datastreamType, dsId, RepositoryDatastream.Type.DIRECT);
-            manager.write(repositoryObject.getDigitalObject(), dsId);
-            return ds;
-        } catch (Exception ex) {
-            throw new RepositoryException(ex);
+            processingIndex.updateRelations(pid, previousRelsExt);
+        } catch (Throwable th) {
+            LOGGER.log(Level.SEVERE, "Cannot update processing index for " + pid + " - reindex manually.", th);
         }
     }
 
+    /**
+     * Reindexes relations of the object from its current RELS-EXT and drops relations that are no longer there.
+     */
+    private void rebuildRelations(String pid) {
+        if (processingIndexUpdateQueue != null) {
+            processingIndexUpdateQueue.rebuild(pid);
+            return;
+        }
+        applyRebuildRelations(pid);
+    }
+
+    private void applyRebuildRelations(String pid) {
+        try {
+            String query = "source:\"" + pid + "\" AND type:\"relation\"";
+            List<ProcessingIndexItem> pids = new ArrayList<>();
+            ProcessingIndexQueryParameters params = new ProcessingIndexQueryParameters.Builder()
+                    .rows(ProcessingIndexUtils.DEFAULT_MAX_LOOKAT_VALUE)
+                    .queryString(query)
+                    .fieldsToFetch(Arrays.asList("pid"))
+                    .build();
+            this.processingIndex.lookAt(params, pids::add);
+
+            processingIndex.rebuildProcessingIndex(pid,updateRequest -> {
+
+                List<Object> updateRequestPids = updateRequest.getDocuments().stream().map(doc -> {
+                    SolrInputField pidField = doc.getField("pid");
+                    return pidField.getValue();
+                }).collect(Collectors.toList());
+
+                List<String> realPids = pids.stream().map(ProcessingIndexItem::pid).collect(Collectors.toList());
+                updateRequestPids.stream().forEach(p-> {
+                    realPids.remove(p);
+                });
+
+                realPids.stream().forEach(p-> {
+                    updateRequest.deleteById(p);
+                });
+            });
+        } catch (Throwable th) {
+            LOGGER.log(Level.SEVERE, "Cannot update processing index for " + pid + " - reindex manually.", th);
+        }
+    }
+
+    @Override
+    public RepositoryDatastream createManagedDatastream(RepositoryObject repositoryObject, String dsId, String mimeType, InputStream input) {
+        DatastreamType datastreamType = createDatastreamHeader(repositoryObject.getDigitalObject(), dsId, mimeType, "M");
+        RepositoryDatastream ds = new RepositoryDatastreamImpl(datastreamType, dsId, RepositoryDatastream.Type.DIRECT);
+        manager.writeManagedStream(repositoryObject.getDigitalObject(), dsId, input);
+        return ds;
+    }
+
     @Override
     public RepositoryDatastream createExternalDatastream(RepositoryObject repositoryObject, String dsId, String url, String mimeType) {
         DatastreamType datastreamType = createDatastreamHeader(repositoryObject.getDigitalObject(), dsId, mimeType, "E");
@@ -281,14 +379,106 @@ public class CoreRepositoryImpl implements CoreRepository {
 
     @Override
     public void deleteDatastream(String pid, String dsId) {
-        manager.deleteStream(pid, dsId);
+        DatastreamType removed = manager.deleteStream(pid, dsId);
         if (dsId.equals(KnownDatastreams.RELS_EXT.toString())) {
+            if (removed != null && inlineXmlContent(removed) != null) {
+                updateRelations(pid, removed, null);
+            } else {
+                deleteRelations(pid);
+            }
+        }
+    }
+
+    private void deleteRelations(String pid) {
+        if (processingIndexUpdateQueue != null) {
+            processingIndexUpdateQueue.deleteRelations(pid);
+            return;
+        }
+        try {
+            this.processingIndex.deleteByRelationsForPid(pid);
+        } catch (Throwable th) {
+            LOGGER.log(Level.SEVERE, "Cannot update processing index for " + pid + " - reindex manually.", th);
+        }
+    }
+
+    private void applyProcessingIndexUpdate(String pid, ProcessingIndexUpdateQueue.Update update) {
+        if (update.isDeleteRelations()) {
+            processingIndex.deleteByRelationsForPid(pid);
+        }
+        if (update.isDeleteTargetRelations()) {
+            processingIndex.deleteByTargetPid(pid);
+        }
+        if (update.isDeleteDescription()) {
+            processingIndex.deleteDescriptionByPid(pid);
+        }
+        if (update.isRebuild()) {
+            if (update.isDeleteRelations()) {
+                // nothing left to diff against
+                processingIndex.rebuildProcessingIndex(pid, null);
+            } else if (update.isPreviousRelsExtKnown()) {
+                processingIndex.updateRelations(pid, update.getPreviousRelsExt());
+            } else {
+                applyRebuildRelations(pid);
+            }
+        } else if (update.isDeleteDescription() && !update.isDeleteRelations()) {
+            // the deleted object's relations are known, they are deleted by id
+            processingIndex.updateRelations(pid, update.getPreviousRelsExt());
+        }
+    }
+
+    @Override
+    public void commitProcessingIndex() {
+        if (processingIndexUpdateQueue == null) {
+            processingIndex.commit();
+        }
+    }
+
+    @Override
+    public boolean awaitProcessingIndexUpdates(long timeout, TimeUnit unit) {
+        if (processingIndexUpdateQueue == null) {
+            return true;
+        }
+        try {
+            return processingIndexUpdateQueue.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        }
+    }
+
+    @Override
+    public void updateDatastreams(String pid, Consumer<DatastreamBatch> operations) {
+        DatastreamType[] previousRelsExt = new DatastreamType[1];
+        Element[] currentRelsExt = new Element[1];
+        DatastreamBatchImpl batch = manager.doWithLock(pid, () -> {
+            DigitalObject digitalObject = manager.readObjectFromStorage(pid);
+            if (digitalObject == null) {
+                return null;
+            }
+            previousRelsExt[0] = findDatastream(digitalObject, KnownDatastreams.RELS_EXT.toString());
+            DatastreamBatchImpl operationsBatch = new DatastreamBatchImpl(digitalObject, manager);
             try {
-                this.processingIndex.deleteByRelationsForPid(pid);
-            } catch (Throwable th) {
-                LOGGER.log(Level.SEVERE, "Cannot update processing index for " + pid + " - reindex manually.", th);
+                operations.accept(operationsBatch);
+                if (!operationsBatch.isEmpty()) {
+                    manager.writeOrThrow(digitalObject);
+                }
+            } catch (RuntimeException e) {
+                // the stored object still points to the content it had before the batch
+                operationsBatch.removeStoredContent();
+                throw e;
+            }
+            operationsBatch.removeReplacedContent();
+            if (operationsBatch.isOnlyChanged(KnownDatastreams.RELS_EXT.toString())) {
+                // other changes (titles, stream names) may affect the description document
+                DatastreamType current = findDatastream(digitalObject, KnownDatastreams.RELS_EXT.toString());
+                currentRelsExt[0] = current != null ? inlineXmlContent(current) : null;
             }
+            return operationsBatch;
+        });
+        if (batch == null || !batch.isChanged(KnownDatastreams.RELS_EXT.toString())) {
+            return;
         }
+        updateRelations(pid, previousRelsExt[0], currentRelsExt[0]);
     }
 
     @Override
@@ -301,12 +491,44 @@ public class CoreRepositoryImpl implements CoreRepository {
         return manager.doWithLock(pid, operation);
     }
 
+    @Override
+    public ObjectCacheStats getObjectCacheStats() {
+        return manager.getObjectCacheStats();
+    }
+
     @Override
     public void shutdown() {
+        if (processingIndexUpdateQueue != null) {
+            processingIndexUpdateQueue.shutdown();
+        }
+        if (processingIndex != null) {
+            processingIndex.shutdown();
+        }
         manager.shutdown();
     }
 
-    private DatastreamType createDatastreamHeader(DigitalObject digitalObject, String streamId, String mimeType, String controlGroup) {
+    private static DatastreamType findDatastream(DigitalObject digitalObject, String dsId) {
+        for (DatastreamType datastreamType : digitalObject.getDatastream()) {
+            if (dsId.equals(datastreamType.getID())) {
+                return datastreamType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return root element of the latest inline version of the datastream, null if its content is stored elsewhere
+     */
+    private static Element inlineXmlContent(DatastreamType datastreamType) {
+        List<DatastreamVersionType> versions = datastreamType.getDatastreamVersion();
+        if (versions.isEmpty() || versions.get(versions.size() - 1).getXmlContent() == null) {
+            return null;
+        }
+        List<Element> any = versions.get(versions.size() - 1).getXmlContent().getAny();
+        return any.isEmpty() ? null : any.get(0);
+    }
+
+    static DatastreamType createDatastreamHeader(DigitalObject digitalObject, String streamId, String mimeType, String controlGroup) {
         List<DatastreamType> datastreamList = digitalObject.getDatastream();
         Iterator<DatastreamType> iterator = datastreamList.iterator();
         while (iterator.hasNext()) {
@@ -334,16 +556,11 @@ public class CoreRepositoryImpl implements CoreRepository {
         return datastreamType;
     }
 
-    private static Element elementFromInputStream(InputStream in) {
-        DocumentBuilderFactory factory;
-        DocumentBuilder builder = null;
+    static Element elementFromInputStream(InputStream in) {
         Document ret = null;
 
         try {
-            factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            builder = factory.newDocumentBuilder();
-            ret = builder.parse(new InputSource(in));
+            ret = XmlPools.parseDocument(new InputSource(in), true);
             if (ret != null) {
                 return ret.getDocumentElement();
             } else {
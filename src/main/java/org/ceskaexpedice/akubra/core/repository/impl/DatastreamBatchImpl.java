@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import org.ceskaexpedice.akubra.DatastreamBatch;
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.fedoramodel.*;
+import org.fcrepo.server.errors.LowlevelStorageException;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies batch operations to the loaded digital object; the caller holds the object lock and writes the object.
+ * New managed content is stored under a version ID not used by the stored object, so the stored object keeps
+ * pointing to its old content until it is written. Managed content of removed datastreams is deleted only after
+ * the object has been written, content stored by a failed batch is deleted instead.
+ */
+class DatastreamBatchImpl implements DatastreamBatch {
+
+    private final DigitalObject digitalObject;
+    private final AkubraDOManager manager;
+    private final Set<String> changed = new LinkedHashSet<>();
+    private final Set<String> replacedContent = new LinkedHashSet<>();
+    private final Set<String> storedContent = new LinkedHashSet<>();
+
+    DatastreamBatchImpl(DigitalObject digitalObject, AkubraDOManager manager) {
+        this.digitalObject = digitalObject;
+        this.manager = manager;
+    }
+
+    @Override
+    public DatastreamBatch createXMLDatastream(String dsId, String mimeType, InputStream xmlContent) {
+        remove(dsId);
+        DatastreamType datastreamType = CoreRepositoryImpl.createDatastreamHeader(digitalObject, dsId, mimeType, "X");
+        XmlContentType xmlContentType = new XmlContentType();
+        xmlContentType.getAny().add(CoreRepositoryImpl.elementFromInputStream(xmlContent));
+        datastreamType.getDatastreamVersion().get(0).setXmlContent(xmlContentType);
+        return this;
+    }
+
+    @Override
+    public DatastreamBatch createManagedDatastream(String dsId, String mimeType, InputStream binaryContent) {
+        remove(dsId);
+        DatastreamType datastreamType = CoreRepositoryImpl.createDatastreamHeader(digitalObject, dsId, mimeType, "M");
+        DatastreamVersionType datastreamVersion = datastreamType.getDatastreamVersion().get(0);
+        datastreamVersion.setID(freeVersionId(dsId));
+        // tracked before storing, a failed store may leave partial content
+        storedContent.add(contentRef(dsId, datastreamVersion.getID()));
+        try {
+            manager.storeManagedContent(digitalObject.getPID(), datastreamType, datastreamVersion, binaryContent);
+        } catch (LowlevelStorageException e) {
+            throw new RepositoryException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public DatastreamBatch createExternalDatastream(String dsId, String url, String mimeType) {
+        remove(dsId);
+        DatastreamType datastreamType = CoreRepositoryImpl.createDatastreamHeader(digitalObject, dsId, mimeType, "E");
+        ContentLocationType contentLocationType = new ContentLocationType();
+        contentLocationType.setTYPE("URL");
+        contentLocationType.setREF(url);
+        datastreamType.getDatastreamVersion().get(0).setContentLocation(contentLocationType);
+        return this;
+    }
+
+    @Override
+    public DatastreamBatch deleteDatastream(String dsId) {
+        remove(dsId);
+        return this;
+    }
+
+    boolean isEmpty() {
+        return changed.isEmpty();
+    }
+
+    boolean isChanged(String dsId) {
+        return changed.contains(dsId);
+    }
+
+    boolean isOnlyChanged(String dsId) {
+        return changed.size() == 1 && changed.contains(dsId);
+    }
+
+    /**
+     * Deletes managed content of removed or replaced datastreams; call after the object has been written.
+     */
+    void removeReplacedContent() {
+        for (String ref : replacedContent) {
+            manager.removeManagedContent(ref);
+        }
+        replacedContent.clear();
+        storedContent.clear();
+    }
+
+    /**
+     * Deletes managed content stored by this batch; call when the batch failed and the object has not been written.
+     */
+    void removeStoredContent() {
+        for (String ref : storedContent) {
+            manager.removeManagedContent(ref);
+        }
+        storedContent.clear();
+        replacedContent.clear();
+    }
+
+    /**
+     * @return first version ID whose content location is not used by the stored object or by this batch
+     */
+    private String freeVersionId(String dsId) {
+        int version = 0;
+        while (replacedContent.contains(contentRef(dsId, dsId + "." + version)) || storedContent.contains(contentRef(dsId, dsId + "." + version))) {
+            version++;
+        }
+        return dsId + "." + version;
+    }
+
+    /**
+     * @return content location of a managed datastream version, see {@link AkubraDOManager#storeManagedContent}
+     */
+    private String contentRef(String dsId, String versionId) {
+        return digitalObject.getPID() + "+" + dsId + "+" + versionId;
+    }
+
+    private void remove(String dsId) {
+        changed.add(dsId);
+        List<DatastreamType> datastreamList = digitalObject.getDatastream();
+        Iterator<DatastreamType> iterator = datastreamList.iterator();
+        while (iterator.hasNext()) {
+            DatastreamType datastreamType = iterator.next();
+            if (dsId.equals(datastreamType.getID())) {
+                if ("M".equals(datastreamType.getCONTROLGROUP())) {
+                    for (DatastreamVersionType datastreamVersion : datastreamType.getDatastreamVersion()) {
+                        ContentLocationType contentLocation = datastreamVersion.getContentLocation();
+                        if (contentLocation != null && "INTERNAL_ID".equals(contentLocation.getTYPE())) {
+                            replacedContent.add(contentLocation.getREF());
+                        }
+                    }
+                }
+                iterator.remove();
+            }
+        }
+    }
+}
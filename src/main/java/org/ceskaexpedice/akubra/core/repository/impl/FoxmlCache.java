@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
+import org.ceskaexpedice.akubra.core.repository.ObjectCacheStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Byte-size bounded cache of serialized FOXML objects.
+ * <p>
+ * Readers load outside of any lock; writers invalidate while they still hold the PID lock.
+ * A global generation counter guards against a reader publishing bytes it loaded before
+ * a concurrent invalidation: the reader re-checks the generation after the put and removes
+ * its own entry if anything was invalidated meanwhile.
+ * </p>
+ * Cached arrays are shared, callers must not modify them. The {@link DatastreamIndex} of a cached object
+ * is built on first use and lives as long as the cached bytes.
+ */
+class FoxmlCache {
+
+    private final Cache<String, CachedObject> cache;
+    private final long maxWeightBytes;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong weightBytes = new AtomicLong();
+
+    FoxmlCache(long maxWeightBytes, long expireAfterWriteSecs) {
+        this.maxWeightBytes = maxWeightBytes;
+        CacheBuilder<String, CachedObject> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String pid, CachedObject cached) -> cached.bytes.length)
+                .removalListener((RemovalNotification<String, CachedObject> notification) ->
+                        weightBytes.addAndGet(-notification.getValue().bytes.length))
+                .recordStats();
+        if (expireAfterWriteSecs > 0) {
+            builder.expireAfterWrite(expireAfterWriteSecs, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * Returns cached bytes or loads them with given loader.
+     * @param pid The unique identifier of the object.
+     * @param loader Object store reader, may return null for a missing object
+     * @return object bytes or null
+     */
+    byte[] get(String pid, Supplier<byte[]> loader) {
+        CachedObject cached = load(pid, loader);
+        return cached != null ? cached.bytes : null;
+    }
+
+    /**
+     * Returns cached bytes without loading them.
+     * @param pid The unique identifier of the object.
+     * @return object bytes or null if the object is not cached
+     */
+    byte[] getIfPresent(String pid) {
+        CachedObject cached = cache.getIfPresent(pid);
+        return cached != null ? cached.bytes : null;
+    }
+
+    /**
+     * Returns the datastream index of the cached object, loads the object with given loader if it is not cached.
+     * @param pid The unique identifier of the object.
+     * @param loader Object store reader, may return null for a missing object
+     * @return datastream index or null
+     */
+    DatastreamIndex getDatastreamIndex(String pid, Supplier<byte[]> loader) {
+        CachedObject cached = load(pid, loader);
+        return cached != null ? cached.getDatastreamIndex() : null;
+    }
+
+    private CachedObject load(String pid, Supplier<byte[]> loader) {
+        CachedObject cached = cache.getIfPresent(pid);
+        if (cached != null) {
+            return cached;
+        }
+        long startGeneration = generation.get();
+        byte[] bytes = loader.get();
+        if (bytes == null) {
+            return null;
+        }
+        cached = new CachedObject(bytes);
+        if (bytes.length <= maxWeightBytes) {
+            weightBytes.addAndGet(bytes.length);
+            cache.put(pid, cached);
+            if (generation.get() != startGeneration) {
+                // an invalidation raced with this load; drop what we may have read before the write
+                cache.asMap().remove(pid, cached);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Drops the cached object; must be called after the object store has been changed
+     * and before the PID lock is released.
+     * @param pid The unique identifier of the object.
+     */
+    void invalidate(String pid) {
+        generation.incrementAndGet();
+        cache.invalidate(pid);
+    }
+
+    void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    ObjectCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        return new ObjectCacheStats(true, stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                cache.size(), weightBytes.get(), maxWeightBytes);
+    }
+
+    private static final class CachedObject {
+        private final byte[] bytes;
+        private volatile DatastreamIndex datastreamIndex;
+
+        private CachedObject(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private DatastreamIndex getDatastreamIndex() {
+            DatastreamIndex index = datastreamIndex;
+            if (index == null) {
+                // racing builders produce equal indexes, no need to synchronize
+                index = DatastreamIndex.build(bytes);
+                datastreamIndex = index;
+            }
+            return index;
+        }
+    }
+}
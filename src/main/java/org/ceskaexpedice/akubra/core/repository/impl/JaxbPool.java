@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+
+import javax.xml.bind.JAXBException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of JAXB marshallers or unmarshallers; they are not thread safe, but cheap to reuse.
+ * <p>
+ * Instances are created on demand up to the maximal size, a caller that finds all of them in use waits
+ * at most the acquisition timeout. Every {@link #acquire()} must be followed by exactly one {@link #release(Object)}
+ * or, when the instance failed and should not be reused, {@link #discard(Object)}.
+ * </p>
+ */
+class JaxbPool<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(JaxbPool.class.getName());
+
+    interface Factory<T> {
+        T create() throws JAXBException;
+    }
+
+    private final String name;
+    private final Factory<T> factory;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+
+    JaxbPool(String name, int maxSize, long acquireTimeoutMillis, Factory<T> factory) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("JAXB pool size must be positive: " + maxSize);
+        }
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    T acquire() throws JAXBException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new RepositoryException("Timeout waiting for JAXB " + name + " after " + acquireTimeoutMillis + " ms, pool size " + maxSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException(e);
+        }
+        T instance = idle.poll();
+        if (instance != null) {
+            return instance;
+        }
+        boolean created = false;
+        try {
+            instance = factory.create();
+            created = true;
+            return instance;
+        } finally {
+            if (!created) {
+                permits.release();
+            }
+        }
+    }
+
+    void release(T instance) {
+        idle.offer(instance);
+        permits.release();
+    }
+
+    void discard(T instance) {
+        permits.release();
+    }
+
+    /**
+     * Creates idle instances until the pool holds the given number of instances, idle or in use.
+     * @param count The number of instances to have ready.
+     * @return The number of instances created.
+     */
+    int warmup(int count) {
+        int created = 0;
+        while (idle.size() + getInUseCount() < Math.min(count, maxSize) && permits.tryAcquire()) {
+            try {
+                idle.offer(factory.create());
+                created++;
+            } catch (JAXBException e) {
+                LOGGER.log(Level.WARNING, "Cannot create JAXB " + name, e);
+                return created;
+            } finally {
+                permits.release();
+            }
+        }
+        return created;
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getInUseCount() {
+        return maxSize - permits.availablePermits();
+    }
+}
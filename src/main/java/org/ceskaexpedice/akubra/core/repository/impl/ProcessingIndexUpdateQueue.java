@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import org.w3c.dom.Element;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background queue of processing index updates keyed by PID.
+ * <p>
+ * Updates requested for a PID that is already waiting are merged into the waiting update, so any number of
+ * writes to one object between two worker runs cost one rebuild. At most one update per PID runs at a time and
+ * at most {@code threads} run in parallel. Callers block when {@code capacity} distinct PIDs are waiting.
+ * Updates read the repository when they run, not when they are requested.
+ * </p>
+ * The handler commits the index whenever the queue runs empty.
+ */
+class ProcessingIndexUpdateQueue {
+    private static final Logger LOGGER = Logger.getLogger(ProcessingIndexUpdateQueue.class.getName());
+
+    /**
+     * Applies updates to the processing index
+     */
+    interface Handler {
+        void apply(String pid, Update update);
+
+        void commit();
+    }
+
+    /**
+     * Merged processing index work for one PID; deletions run before the rebuild.
+     * The previous RELS-EXT is the one from the first merged request, the index is in sync with it.
+     */
+    static final class Update {
+        private boolean deleteRelations;
+        private boolean deleteTargetRelations;
+        private boolean deleteDescription;
+        private boolean rebuild;
+        private boolean previousRelsExtKnown;
+        private Element previousRelsExt;
+
+        boolean isDeleteRelations() {
+            return deleteRelations;
+        }
+
+        boolean isDeleteTargetRelations() {
+            return deleteTargetRelations;
+        }
+
+        boolean isDeleteDescription() {
+            return deleteDescription;
+        }
+
+        boolean isRebuild() {
+            return rebuild;
+        }
+
+        boolean isPreviousRelsExtKnown() {
+            return previousRelsExtKnown;
+        }
+
+        Element getPreviousRelsExt() {
+            return previousRelsExt;
+        }
+    }
+
+    private final Handler handler;
+    private final int capacity;
+    private final ExecutorService executor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final Map<String, Update> pending = new HashMap<>();
+    private final Deque<String> ready = new ArrayDeque<>();
+    private final Set<String> running = new HashSet<>();
+    private boolean shutdown;
+
+    ProcessingIndexUpdateQueue(Handler handler, int threads, int capacity) {
+        this.handler = handler;
+        this.capacity = capacity;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "akubra-processing-index-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests reindexing of the object from its current RELS-EXT.
+     */
+    void rebuild(String pid) {
+        submit(pid, update -> update.rebuild = true);
+    }
+
+    /**
+     * Requests reindexing of the object from its current RELS-EXT, relations are diffed against the previous one.
+     * @param previousRelsExt RELS-EXT before the change, null if the object had none
+     */
+    void updateRelations(String pid, Element previousRelsExt) {
+        submit(pid, update -> {
+            if (!update.rebuild && !update.previousRelsExtKnown) {
+                update.previousRelsExtKnown = true;
+                update.previousRelsExt = previousRelsExt;
+            }
+            update.rebuild = true;
+        });
+    }
+
+    /**
+     * Requests removal of relations of the object, e.g. after its RELS-EXT has been deleted.
+     */
+    void deleteRelations(String pid) {
+        submit(pid, update -> {
+            update.deleteRelations = true;
+            update.rebuild = false;
+        });
+    }
+
+    /**
+     * Requests removal of everything indexed for a deleted object.
+     * @param relsExt RELS-EXT of the deleted object, its relations are deleted by id; null if it is not known
+     *                and the relations have to be searched for
+     */
+    void delete(String pid, boolean deleteTargetRelations, Element relsExt) {
+        submit(pid, update -> {
+            if (relsExt != null && !update.rebuild && !update.deleteRelations && !update.previousRelsExtKnown) {
+                update.previousRelsExtKnown = true;
+                update.previousRelsExt = relsExt;
+            }
+            // the index is in sync with a known previous RELS-EXT only
+            update.deleteRelations |= !update.previousRelsExtKnown;
+            update.deleteTargetRelations |= deleteTargetRelations;
+            update.deleteDescription = true;
+            update.rebuild = false;
+        });
+    }
+
+    private void submit(String pid, Consumer<Update> change) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException("Processing index update queue is shut down");
+            }
+            Update update = pending.get(pid);
+            if (update == null) {
+                while (pending.size() >= capacity && !shutdown) {
+                    notFull.awaitUninterruptibly();
+                }
+                update = pending.get(pid);
+                if (update == null) {
+                    update = new Update();
+                    pending.put(pid, update);
+                    if (!running.contains(pid)) {
+                        ready.add(pid);
+                        executor.execute(this::runNext);
+                    }
+                }
+            }
+            change.accept(update);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runNext() {
+        String pid;
+        Update update;
+        lock.lock();
+        try {
+            pid = ready.poll();
+            if (pid == null) {
+                return;
+            }
+            update = pending.remove(pid);
+            running.add(pid);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            handler.apply(pid, update);
+        } catch (Throwable th) {
+            LOGGER.log(Level.SEVERE, "Cannot update processing index for " + pid + " - reindex manually.", th);
+        }
+        boolean commit;
+        lock.lock();
+        try {
+            // the last running update commits before it leaves, so await() returns only after the commit
+            commit = pending.isEmpty() && running.size() == 1;
+            if (!commit) {
+                finish(pid);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (commit) {
+            try {
+                handler.commit();
+            } catch (Throwable th) {
+                LOGGER.log(Level.SEVERE, "Cannot commit processing index", th);
+            }
+            lock.lock();
+            try {
+                finish(pid);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void finish(String pid) {
+        running.remove(pid);
+        if (pending.containsKey(pid)) {
+            // requested again while running
+            ready.add(pid);
+            executor.execute(this::runNext);
+        } else if (pending.isEmpty() && running.isEmpty()) {
+            idle.signalAll();
+        }
+    }
+
+    /**
+     * Waits until all requested updates have been applied and committed.
+     *
+     * @return false if the timeout elapsed first
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || !running.isEmpty()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = idle.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size() + running.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting updates and applies all that are waiting.
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (!await(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                LOGGER.warning("Processing index updates not drained");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+    }
+}
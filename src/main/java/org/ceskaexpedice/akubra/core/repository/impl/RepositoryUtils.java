@@ -23,6 +23,7 @@ import org.ceskaexpedice.akubra.KnownXmlFormatUris;
 import org.ceskaexpedice.akubra.RepositoryException;
 import org.ceskaexpedice.akubra.core.repository.CoreRepository;
 import org.ceskaexpedice.akubra.core.repository.RepositoryDatastream;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.ceskaexpedice.fedoramodel.DatastreamType;
 import org.ceskaexpedice.fedoramodel.DatastreamVersionType;
 import org.ceskaexpedice.fedoramodel.DigitalObject;
@@ -32,19 +33,13 @@ import org.fcrepo.common.FaultException;
 import org.fcrepo.common.PID;
 import org.fcrepo.server.errors.MalformedPidException;
 import org.fcrepo.server.storage.lowlevel.akubra.HashPathIdMapper;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.*;
 import java.text.ParseException;
@@ -104,25 +99,10 @@ public class RepositoryUtils {
 
     static InputStream getDatastreamContent(String pid, InputStream foxml, String dsId, CoreRepository coreRepository) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
-            XMLReader xmlReader = saxParser.getXMLReader();
-
-
             GetDatastreamContentSaxHandler handler = new GetDatastreamContentSaxHandler(dsId);
-            EntityResolver entityResolver = new EntityResolver() {
-                @Override
-                public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
-                    return new InputSource(new StringReader(""));
-                }
-            };
-            // external entities
-            xmlReader.setEntityResolver(entityResolver);
-            xmlReader.setContentHandler(handler);
-
             try {
-                xmlReader.parse(new InputSource(foxml));
+                // the handler resolves external entities to empty content
+                XmlPools.parse(foxml, handler, true);
             } catch (SAXException e) {
                 if (!FOUND.equals(e.getMessage())) {
                     throw e; // Only propagate real errors
@@ -130,22 +110,7 @@ public class RepositoryUtils {
             }
             // Handle <contentLocation> case
             if (handler.getContentLocationRef() != null) {
-                String ref = handler.getContentLocationRef();
-                String type = handler.getContentLocationType();
-                if ("URL".equals(type)) {
-                    if (ref.startsWith(LOCAL_REF_PREFIX)) {
-                        String[] refArray = ref.replace(LOCAL_REF_PREFIX, "").split("/");
-                        if (refArray.length == 2) {
-                            return coreRepository.retrieveDatastreamByInternalId(refArray[0] + "+" + refArray[1] + "+" + refArray[1] + ".0");
-                        } else {
-                            throw new IOException("Invalid datastream local reference: " + ref);
-                        }
-                    } else {
-                        return readFromURL(ref);
-                    }
-                } else {
-                    return coreRepository.retrieveDatastreamByInternalId(ref);
-                }
+                return getContentLocationStream(handler.getContentLocationType(), handler.getContentLocationRef(), coreRepository);
             }
             // Handle <xmlContent> case
             if (handler.getXmlContentStream() != null) {
@@ -158,13 +123,27 @@ public class RepositoryUtils {
         }
     }
 
+    static InputStream getContentLocationStream(String type, String ref, CoreRepository coreRepository) throws IOException {
+        if ("URL".equals(type)) {
+            if (ref.startsWith(LOCAL_REF_PREFIX)) {
+                String[] refArray = ref.replace(LOCAL_REF_PREFIX, "").split("/");
+                if (refArray.length == 2) {
+                    return coreRepository.retrieveDatastreamByInternalId(refArray[0] + "+" + refArray[1] + "+" + refArray[1] + ".0");
+                } else {
+                    throw new IOException("Invalid datastream local reference: " + ref);
+                }
+            } else {
+                return readFromURL(ref);
+            }
+        } else {
+            return coreRepository.retrieveDatastreamByInternalId(ref);
+        }
+    }
+
     static boolean datastreamExists(InputStream foxml, String datastreamId) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             DatastreamExistsSaxHandler handler = new DatastreamExistsSaxHandler(datastreamId);
-            saxParser.parse(foxml, handler);
+            XmlPools.parse(foxml, handler, true);
         } catch (SAXException e) {
             return FOUND.equals(e.getMessage());
         } catch (Exception e) {
@@ -19,9 +19,10 @@ package org.ceskaexpedice.akubra.impl;
 import org.apache.commons.io.IOUtils;
 import org.ceskaexpedice.akubra.*;
 import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
 import org.ceskaexpedice.akubra.core.repository.RepositoryObject;
 import org.ceskaexpedice.akubra.impl.utils.InternalSaxUtils;
-import org.ceskaexpedice.akubra.impl.utils.ObjectPropertiesSaxParser;
+import org.ceskaexpedice.akubra.impl.utils.ObjectInspectionSaxHandler;
 import org.ceskaexpedice.akubra.misc.MiscHelper;
 import org.ceskaexpedice.akubra.processingindex.ProcessingIndex;
 import org.ceskaexpedice.akubra.relsext.RelsExtHelper;
@@ -29,8 +30,9 @@ import org.ceskaexpedice.fedoramodel.DigitalObject;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
@@ -45,14 +47,14 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     public AkubraRepositoryImpl(CoreRepository coreRepository) {
         this.coreRepository = coreRepository;
-        this.relsExtHelper = new RelsExtHelperImpl(this);
+        this.relsExtHelper = new RelsExtHelperImpl(this, coreRepository);
         this.miscHelper = new MiscHelperImpl(this);
     }
 
     @Override
     public void ingest(DigitalObject digitalObject) {
         coreRepository.ingest(digitalObject);
-        coreRepository.getProcessingIndex().commit();
+        coreRepository.commitProcessingIndex();
     }
 
     @Override
@@ -89,12 +91,29 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     @Override
     public DigitalObjectMetadata getMetadata(String pid) {
-        DigitalObjectWrapper digitalObjectWrapper = get(pid);
-        if (digitalObjectWrapper == null) {
+        ObjectInspection inspection = inspect(pid, InspectionField.OBJECT_PROPERTIES);
+        return inspection != null ? inspection.getMetadata() : null;
+    }
+
+    @Override
+    public ObjectInspection inspect(String pid, InspectionField... fields) {
+        Set<InspectionField> requested = EnumSet.noneOf(InspectionField.class);
+        requested.addAll(Arrays.asList(fields));
+        InputStream foxml = coreRepository.getAsStream(pid);
+        if (foxml == null) {
             return null;
         }
-        return new DigitalObjectMetadataImpl(new ObjectPropertiesSaxParser(digitalObjectWrapper.asInputStream()),
-                coreRepository.getObjectStorePath(pid));
+        ObjectInspectionSaxHandler handler;
+        try (InputStream is = foxml) {
+            handler = InternalSaxUtils.inspect(is, requested);
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
+        DigitalObjectMetadata metadata = null;
+        if (handler.getObjectProperties() != null) {
+            metadata = new DigitalObjectMetadataImpl(handler.getObjectProperties(), coreRepository.getObjectStorePath(pid));
+        }
+        return new ObjectInspectionImpl(handler, metadata);
     }
 
     @Override
@@ -132,15 +151,7 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     @Override
     public void updateXMLDatastream(String pid, String dsId, String mimeType, InputStream binaryContent) {
-        doWithLock(pid, () -> {
-            RepositoryObject repositoryObject = coreRepository.getAsRepositoryObject(pid);
-            if (repositoryObject == null) {
-                return null;
-            }
-            coreRepository.deleteDatastream(pid, dsId);
-            coreRepository.createXMLDatastream(repositoryObject, dsId, mimeType, binaryContent);
-            return null;
-        });
+        coreRepository.updateDatastreams(pid, batch -> batch.createXMLDatastream(dsId, mimeType, binaryContent));
     }
 
     @Override
@@ -164,15 +175,7 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     @Override
     public void updateManagedDatastream(String pid, String dsId, String mimeType, InputStream binaryContent) {
-        doWithLock(pid, () -> {
-            RepositoryObject repositoryObject = coreRepository.getAsRepositoryObject(pid);
-            if (repositoryObject == null) {
-                return null;
-            }
-            coreRepository.deleteDatastream(pid, dsId);
-            coreRepository.createManagedDatastream(repositoryObject, dsId, mimeType, binaryContent);
-            return null;
-        });
+        coreRepository.updateDatastreams(pid, batch -> batch.createManagedDatastream(dsId, mimeType, binaryContent));
     }
 
     @Override
@@ -196,15 +199,7 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     @Override
     public void updateExternalDatastream(String pid, String dsId, String url, String mimeType) {
-        doWithLock(pid, () -> {
-            RepositoryObject repositoryObject = coreRepository.getAsRepositoryObject(pid);
-            if (repositoryObject == null) {
-                return null;
-            }
-            coreRepository.deleteDatastream(pid, dsId);
-            coreRepository.createExternalDatastream(repositoryObject, dsId, url, mimeType);
-            return null;
-        });
+        coreRepository.updateDatastreams(pid, batch -> batch.createExternalDatastream(dsId, url, mimeType));
     }
 
     @Override
@@ -212,6 +207,11 @@ public class AkubraRepositoryImpl implements AkubraRepository {
         updateExternalDatastream(pid, dsId.toString(), url, mimeType);
     }
 
+    @Override
+    public void updateDatastreams(String pid, Consumer<DatastreamBatch> operations) {
+        coreRepository.updateDatastreams(pid, operations);
+    }
+
     @Override
     public boolean datastreamExists(String pid, String dsId) {
         return coreRepository.datastreamExists(pid, dsId);
@@ -224,11 +224,24 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     @Override
     public DatastreamMetadata getDatastreamMetadata(String pid, String dsId) {
-        DigitalObjectWrapper digitalObjectWrapper = get(pid);
-        if (digitalObjectWrapper == null) {
+        DatastreamIndex datastreamIndex = coreRepository.getDatastreamIndex(pid);
+        if (datastreamIndex == null) {
             return null;
         }
-        Map<String, String> datastreamMetadata = InternalSaxUtils.getDatastreamMetadata(digitalObjectWrapper.asInputStream(), dsId);
+        Map<String, String> datastreamMetadata = new HashMap<>();
+        DatastreamIndex.Datastream datastream = datastreamIndex.get(dsId);
+        if (datastream != null) {
+            datastreamMetadata.put("ID", datastream.getId());
+            datastreamMetadata.put("CONTROL_GROUP", datastream.getControlGroup());
+            datastreamMetadata.put("STATE", datastream.getState());
+            datastreamMetadata.put("VERSIONABLE", datastream.getVersionable());
+            datastreamMetadata.put("MIMETYPE", datastream.getMimeType());
+            datastreamMetadata.put("CREATED", datastream.getCreated());
+            datastreamMetadata.put("SIZE", datastream.getSize());
+            if (datastream.getContentLocationRef() != null) {
+                datastreamMetadata.put("LOCATION", datastream.getContentLocationRef());
+            }
+        }
         return new DatastreamMetadataImpl(datastreamMetadata);
     }
 
@@ -263,12 +276,11 @@ public class AkubraRepositoryImpl implements AkubraRepository {
 
     @Override
     public List<String> getDatastreamNames(String pid) {
-        DigitalObjectWrapper digitalObjectWrapper = get(pid);
-        if (digitalObjectWrapper == null) {
+        DatastreamIndex datastreamIndex = coreRepository.getDatastreamIndex(pid);
+        if (datastreamIndex == null) {
             return null;
         }
-        List<String> datastreamNames = InternalSaxUtils.getDatastreamNames(digitalObjectWrapper.asInputStream());
-        return datastreamNames;
+        return new ArrayList<>(datastreamIndex.getDatastreamNames());
     }
 
     @Override
@@ -292,6 +304,11 @@ public class AkubraRepositoryImpl implements AkubraRepository {
         return coreRepository.doWithLock(pid, operation);
     }
 
+    @Override
+    public boolean awaitProcessingIndexUpdates(long timeout, TimeUnit unit) {
+        return coreRepository.awaitProcessingIndexUpdates(timeout, unit);
+    }
+
     @Override
     public void shutdown() {
         coreRepository.shutdown();
@@ -18,10 +18,10 @@ package org.ceskaexpedice.akubra.impl;
 
 import org.ceskaexpedice.akubra.DigitalObjectMetadata;
 import org.ceskaexpedice.akubra.core.repository.impl.RepositoryUtils;
-import org.ceskaexpedice.akubra.impl.utils.ObjectPropertiesSaxParser;
 
 import java.io.File;
 import java.util.Date;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -29,17 +29,17 @@ import java.util.logging.Logger;
  */
 class DigitalObjectMetadataImpl implements DigitalObjectMetadata {
     private static final Logger LOGGER = Logger.getLogger(DigitalObjectMetadataImpl.class.getName());
-    private ObjectPropertiesSaxParser objectPropertiesSaxParser;
+    private Map<String, String> properties;
     private File objectStoragePath;
 
-    DigitalObjectMetadataImpl(ObjectPropertiesSaxParser objectPropertiesSaxParser, File objectStoragePath) {
-        this.objectPropertiesSaxParser = objectPropertiesSaxParser;
+    DigitalObjectMetadataImpl(Map<String, String> properties, File objectStoragePath) {
+        this.properties = properties;
         this.objectStoragePath = objectStoragePath;
     }
 
     @Override
     public String getProperty(String propertyName) {
-        return objectPropertiesSaxParser.getProperty(propertyName);
+        return properties.get(propertyName);
     }
 
     @Override
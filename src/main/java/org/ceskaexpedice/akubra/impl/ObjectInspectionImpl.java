@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.impl;
+
+import org.ceskaexpedice.akubra.DigitalObjectMetadata;
+import org.ceskaexpedice.akubra.InspectionField;
+import org.ceskaexpedice.akubra.ObjectInspection;
+import org.ceskaexpedice.akubra.impl.utils.ObjectInspectionSaxHandler;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ObjectInspectionImpl
+ */
+class ObjectInspectionImpl implements ObjectInspection {
+    private final ObjectInspectionSaxHandler handler;
+    private final DigitalObjectMetadata metadata;
+
+    ObjectInspectionImpl(ObjectInspectionSaxHandler handler, DigitalObjectMetadata metadata) {
+        this.handler = handler;
+        this.metadata = metadata;
+    }
+
+    @Override
+    public Set<InspectionField> getFields() {
+        return handler.getFields();
+    }
+
+    @Override
+    public String getModel() {
+        return handler.getModel();
+    }
+
+    @Override
+    public String getTilesUrl() {
+        return handler.getTilesUrl();
+    }
+
+    @Override
+    public String getPidOfFirstChild() {
+        return handler.getPidOfFirstChild();
+    }
+
+    @Override
+    public DigitalObjectMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public List<String> getDatastreamNames() {
+        return handler.getDatastreamNames();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.impl;
+
+import org.ceskaexpedice.akubra.RepositoryNamespaces;
+import org.ceskaexpedice.akubra.pid.PIDParser;
+import org.ceskaexpedice.akubra.relsext.RelsExtEditor;
+import org.ceskaexpedice.akubra.relsext.RelsExtHelper;
+import org.ceskaexpedice.akubra.utils.DomUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * DOM backed RELS-EXT editing session
+ */
+class RelsExtEditorImpl implements RelsExtEditor {
+    private static final Logger LOGGER = Logger.getLogger(RelsExtEditorImpl.class.getName());
+
+    private final Document document;
+    private boolean modified;
+
+    RelsExtEditorImpl(Document document) {
+        this.document = document;
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    @Override
+    public boolean isModified() {
+        return modified;
+    }
+
+    @Override
+    public RelsExtEditor addRelation(String relation, String namespace, String targetRelation) {
+        Element subElm = document.createElementNS(namespace, relation);
+        subElm.setAttributeNS(RepositoryNamespaces.RDF_NAMESPACE_URI, "rdf:resource", targetRelation);
+        description().appendChild(subElm);
+        modified = true;
+        return this;
+    }
+
+    @Override
+    public RelsExtEditor removeRelation(String relation, String namespace, String targetRelation) {
+        final String targetPID = targetRelation.startsWith(PIDParser.INFO_FEDORA_PREFIX) ? targetRelation : PIDParser.INFO_FEDORA_PREFIX + targetRelation;
+        Element relationElement = DomUtils.findElement(document.getDocumentElement(), (element) -> {
+            String elmNamespace = element.getNamespaceURI();
+            String elmLocalname = element.getLocalName();
+            String elmResourceAttribute = element.getAttributeNS(RepositoryNamespaces.RDF_NAMESPACE_URI, "resource");
+            return (namespace.equals(elmNamespace)) && (elmLocalname.equals(relation)) && elmResourceAttribute.equals(targetPID);
+        });
+        if (relationElement != null) {
+            relationElement.getParentNode().removeChild(relationElement);
+            modified = true;
+        } else {
+            LOGGER.warning("Cannot find relation '" + namespace + relation);
+        }
+        return this;
+    }
+
+    @Override
+    public RelsExtEditor removeRelationsByNameAndNamespace(String relation, String namespace) {
+        List<Element> relationElements = DomUtils.getElementsRecursive(document.getDocumentElement(), (element) -> {
+            String elmNamespace = element.getNamespaceURI();
+            String elmLocalname = element.getLocalName();
+            return (namespace.equals(elmNamespace)) && (elmLocalname.equals(relation));
+        });
+        if (!relationElements.isEmpty()) {
+            relationElements.forEach(elm -> elm.getParentNode().removeChild(elm));
+            modified = true;
+        } else {
+            LOGGER.info("Cannot find relation '" + namespace + relation);
+        }
+        return this;
+    }
+
+    @Override
+    public RelsExtEditor removeRelationsByNamespace(String namespace) {
+        List<Element> relationElements = DomUtils.getElementsRecursive(document.getDocumentElement(),
+                (element) -> namespace.equals(element.getNamespaceURI()));
+        if (!relationElements.isEmpty()) {
+            relationElements.forEach(elm -> elm.getParentNode().removeChild(elm));
+            modified = true;
+        } else {
+            LOGGER.warning("Cannot find relation '" + namespace);
+        }
+        return this;
+    }
+
+    @Override
+    public RelsExtEditor addLiteral(String relation, String namespace, String value) {
+        Element subElm = document.createElementNS(namespace, relation);
+        subElm.setTextContent(value);
+        description().appendChild(subElm);
+        modified = true;
+        return this;
+    }
+
+    @Override
+    public RelsExtEditor removeLiteral(String relation, String namespace, String value) {
+        List<Element> descs = DomUtils.getElementsRecursive(description(), (element) -> {
+            String elmNamespace = element.getNamespaceURI();
+            String elmName = element.getLocalName();
+            return elmNamespace != null && elmNamespace.equals(namespace) && elmName.equals(relation)
+                    && element.getTextContent().equals(value);
+        });
+        if (!descs.isEmpty()) {
+            descs.forEach(literal -> literal.getParentNode().removeChild(literal));
+            modified = true;
+        }
+        return this;
+    }
+
+    private Element description() {
+        return DomUtils.findElement(document.getDocumentElement(), RelsExtHelper.RDF_DESCRIPTION_ELEMENT, RepositoryNamespaces.RDF_NAMESPACE_URI);
+    }
+}
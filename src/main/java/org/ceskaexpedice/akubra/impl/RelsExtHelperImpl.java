@@ -19,40 +19,41 @@ package org.ceskaexpedice.akubra.impl;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Triple;
 import org.ceskaexpedice.akubra.*;
+import org.ceskaexpedice.akubra.core.repository.CoreRepository;
 import org.ceskaexpedice.akubra.impl.utils.relsext.RelsExtInternalDomUtils;
 import org.ceskaexpedice.akubra.impl.utils.relsext.RelsExtInternalSaxUtils;
 import org.ceskaexpedice.akubra.impl.utils.relsext.RelsExtProcessTreeDomUtils;
-import org.ceskaexpedice.akubra.pid.PIDParser;
+import org.ceskaexpedice.akubra.relsext.RelsExtEditor;
 import org.ceskaexpedice.akubra.relsext.RelsExtHelper;
 import org.ceskaexpedice.akubra.relsext.RelsExtLiteral;
 import org.ceskaexpedice.akubra.relsext.RelsExtRelation;
 import org.ceskaexpedice.akubra.relsext.TreeNodeProcessor;
 import org.ceskaexpedice.akubra.utils.DomUtils;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import javax.xml.transform.TransformerException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
  * AkubraRepositoryImpl
  */
 public class RelsExtHelperImpl implements RelsExtHelper {
-    private static final String RDF_DESCRIPTION_ELEMENT = "Description";
-    private static final String RDF_ELEMENT = "RDF";
     private static final Logger LOGGER = Logger.getLogger(RelsExtHelperImpl.class.getName());
 
     private AkubraRepository akubraRepository;
+    private CoreRepository coreRepository;
 
-    public RelsExtHelperImpl(AkubraRepository akubraRepository) {
+    public RelsExtHelperImpl(AkubraRepository akubraRepository, CoreRepository coreRepository) {
         this.akubraRepository = akubraRepository;
+        this.coreRepository = coreRepository;
     }
 
     @Override
@@ -67,9 +68,11 @@ public class RelsExtHelperImpl implements RelsExtHelper {
 
     @Override
     public void update(String pid, InputStream xmlContent) {
-        akubraRepository.pi().doWithCommit(()->{
+        try {
             akubraRepository.updateXMLDatastream(pid, KnownDatastreams.RELS_EXT, "text/xml", xmlContent);
-        });
+        } finally {
+            coreRepository.commitProcessingIndex();
+        }
     }
 
     @Override
@@ -114,20 +117,14 @@ public class RelsExtHelperImpl implements RelsExtHelper {
 
     @Override
     public String getTilesUrl(String pid) {
-        DigitalObjectWrapper digitalObjectWrapper = akubraRepository.get(pid);
-        if(digitalObjectWrapper == null) {
-            return null;
-        }
-        return RelsExtInternalSaxUtils.getTilesUrl(digitalObjectWrapper.asInputStream());
+        ObjectInspection inspection = akubraRepository.inspect(pid, InspectionField.TILES_URL);
+        return inspection != null ? inspection.getTilesUrl() : null;
     }
 
     @Override
     public String getPidOfFirstChild(String pid) {
-        DigitalObjectWrapper digitalObjectWrapper = akubraRepository.get(pid);
-        if(digitalObjectWrapper == null) {
-            return null;
-        }
-        return RelsExtInternalSaxUtils.getPidOfFirstChild(digitalObjectWrapper.asInputStream());
+        ObjectInspection inspection = akubraRepository.inspect(pid, InspectionField.FIRST_CHILD);
+        return inspection != null ? inspection.getPidOfFirstChild() : null;
     }
 
     @Override
@@ -141,11 +138,8 @@ public class RelsExtHelperImpl implements RelsExtHelper {
 
     @Override
     public String getModel(String pid) {
-        DigitalObjectWrapper digitalObjectWrapper = akubraRepository.get(pid);
-        if(digitalObjectWrapper == null) {
-            return null;
-        }
-        return RelsExtInternalSaxUtils.getModel(digitalObjectWrapper.asInputStream());
+        ObjectInspection inspection = akubraRepository.inspect(pid, InspectionField.MODEL);
+        return inspection != null ? inspection.getModel() : null;
     }
 
     @Override
@@ -164,159 +158,76 @@ public class RelsExtHelperImpl implements RelsExtHelper {
     }
 
     @Override
-    public void addRelation(String pid, String relation, String namespace, String targetRelation) {
-        try {
+    public void edit(String pid, Consumer<RelsExtEditor> editor) {
+        akubraRepository.doWithLock(pid, () -> {
             DatastreamContentWrapper datastreamContent = get(pid);
-            if(datastreamContent == null) {
+            if (datastreamContent == null) {
                 LOGGER.warning("Datastream RELS-EXT does not exist: " + pid);
-                return;
+                return null;
             }
-            Document document = datastreamContent.asDom(true);
-            Element rdfDesc = DomUtils.findElement(document.getDocumentElement(), RDF_DESCRIPTION_ELEMENT, RepositoryNamespaces.RDF_NAMESPACE_URI);
-            Element subElm = document.createElementNS(namespace, relation);
-            subElm.setAttributeNS(RepositoryNamespaces.RDF_NAMESPACE_URI, "rdf:resource", targetRelation);
-            rdfDesc.appendChild(subElm);
-            changeRelations(pid, document);
-        } catch (Exception e) {
-            throw new RepositoryException(e);
-        }
+            RelsExtEditorImpl session = new RelsExtEditorImpl(datastreamContent.asDom(true));
+            editor.accept(session);
+            if (session.isModified()) {
+                changeRelations(pid, session.getDocument());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void addRelation(String pid, String relation, String namespace, String targetRelation) {
+        editWithCommit(pid, editor -> editor.addRelation(relation, namespace, targetRelation));
     }
 
     @Override
     public void removeRelation(String pid, String relation, String namespace, String targetRelation) {
-        try {
-            DatastreamContentWrapper datastreamContent = get(pid);
-            if(datastreamContent == null) {
-                LOGGER.warning("Datastream RELS-EXT does not exist: " + pid);
-                return;
-            }
-            Document document = datastreamContent.asDom(true);
-            final String targetPID = targetRelation.startsWith(PIDParser.INFO_FEDORA_PREFIX) ? targetRelation : PIDParser.INFO_FEDORA_PREFIX + targetRelation;
-            Element relationElement = DomUtils.findElement(document.getDocumentElement(), (element) -> {
-                String elmNamespace = element.getNamespaceURI();
-                String elmLocalname = element.getLocalName();
-                String elmResourceAttribute = element.getAttributeNS(RepositoryNamespaces.RDF_NAMESPACE_URI, "resource");
-                return (elmNamespace.equals(namespace)) && (elmLocalname.equals(relation)) && elmResourceAttribute.equals(targetPID);
-            });
-            if (relationElement != null) {
-                relationElement.getParentNode().removeChild(relationElement);
-                changeRelations(pid, document);
-            } else {
-                LOGGER.warning("Cannot find relation '" + namespace + relation);
-            }
-        } catch (Exception e) {
-            throw new RepositoryException(e);
-        }
+        editWithCommit(pid, editor -> editor.removeRelation(relation, namespace, targetRelation));
     }
 
     @Override
     public void removeRelationsByNameAndNamespace(String pid, String relation, String namespace) {
-        try {
-            DatastreamContentWrapper datastreamContent = get(pid);
-            if(datastreamContent == null) {
-                LOGGER.warning("Datastream RELS-EXT does not exist: " + pid);
-                return;
-            }
-            Document document = datastreamContent.asDom(true);
-            List<Element> relationElements = DomUtils.getElementsRecursive(document.getDocumentElement(), (element) -> {
-                String elmNamespace = element.getNamespaceURI();
-                String elmLocalname = element.getLocalName();
-                return (elmNamespace.equals(namespace)) && (elmLocalname.equals(relation));
-            });
-            if (!relationElements.isEmpty()) {
-                relationElements.stream().forEach((elm) -> {
-                    elm.getParentNode().removeChild(elm);
-                });
-                changeRelations(pid, document);
-            } else {
-                LOGGER.info("Cannot find relation '" + namespace + relation);
-            }
-        } catch (Exception e) {
-            throw new RepositoryException(e);
-        }
+        editWithCommit(pid, editor -> editor.removeRelationsByNameAndNamespace(relation, namespace));
     }
 
     @Override
     public void removeRelationsByNamespace(String pid, String namespace) {
-        try {
-            DatastreamContentWrapper datastreamContent = get(pid);
-            if(datastreamContent == null) {
-                LOGGER.warning("Datastream RELS-EXT does not exist: " + pid);
-                return;
-            }
-            Document document = datastreamContent.asDom(true);
-            List<Element> relationElements = DomUtils.getElementsRecursive(document.getDocumentElement(), (element) -> {
-                String elmNamespace = element.getNamespaceURI();
-                return (elmNamespace.equals(namespace));
-            });
-            // Change RELS-EXT relations
-            if (!relationElements.isEmpty()) {
-                relationElements.stream().forEach((elm) -> {
-                    elm.getParentNode().removeChild(elm);
-                });
-                changeRelations(pid, document);
-            } else {
-                LOGGER.warning("Cannot find relation '" + namespace);
-            }
-        } catch (Exception e) {
-            throw new RepositoryException(e);
-        }
+        editWithCommit(pid, editor -> editor.removeRelationsByNamespace(namespace));
     }
 
     @Override
     public void addLiteral(String pid, String relation, String namespace, String value) {
-        try {
-            DatastreamContentWrapper datastreamContent = get(pid);
-            if(datastreamContent == null) {
-                LOGGER.warning("Datastream RELS-EXT does not exist: " + pid);
-                return;
-            }
-            Document document = datastreamContent.asDom(true);
-            Element rdfDesc = DomUtils.findElement(document.getDocumentElement(), RDF_DESCRIPTION_ELEMENT, RepositoryNamespaces.RDF_NAMESPACE_URI);
-            Element subElm = document.createElementNS(namespace, relation);
-            subElm.setTextContent(value);
-            rdfDesc.appendChild(subElm);
-            changeRelations(pid, document);
-        } catch (Exception e) {
-            throw new RepositoryException(e);
-        }
-
+        editWithCommit(pid, editor -> editor.addLiteral(relation, namespace, value));
     }
 
     @Override
     public void removeLiteral(String pid, String relation, String namespace, String value) {
+        editWithCommit(pid, editor -> editor.removeLiteral(relation, namespace, value));
+    }
+
+    /**
+     * Single edits keep their visible-immediately semantics, the index is committed after the write
+     * unless it is updated in background
+     */
+    private void editWithCommit(String pid, Consumer<RelsExtEditor> editor) {
         try {
-            DatastreamContentWrapper datastreamContent = get(pid);
-            if(datastreamContent == null) {
-                LOGGER.warning("Datastream RELS-EXT does not exist: " + pid);
-                return;
-            }
-            Document document = datastreamContent.asDom(true);
-            Element rdfDesc = DomUtils.findElement(document.getDocumentElement(), RDF_DESCRIPTION_ELEMENT, RepositoryNamespaces.RDF_NAMESPACE_URI);
-            List<Element> descs = DomUtils.getElementsRecursive(rdfDesc, (element) -> {
-                String elmNamespace = element.getNamespaceURI();
-                String elmName = element.getLocalName();
-                if (elmNamespace != null && elmNamespace.equals(namespace) && elmName.equals(relation)) {
-                    String content = element.getTextContent();
-                    if (content.equals(value)) return true;
-                }
-                return false;
-            });
-            if (!descs.isEmpty()) {
-                descs.stream().forEach(literal -> {
-                    literal.getParentNode().removeChild(literal);
-                });
-                changeRelations(pid, document);
-            }
-        } catch (Exception e) {
-            throw new RepositoryException(e);
+            edit(pid, editor);
+        } finally {
+            coreRepository.commitProcessingIndex();
         }
     }
 
-    private void changeRelations(String pid, Document document) throws TransformerException {
+    /**
+     * Writes the edited RELS-EXT; one object write and one processing index update, no explicit commit
+     */
+    private void changeRelations(String pid, Document document) {
         StringWriter stringWriter = new StringWriter();
-        DomUtils.print(document, stringWriter);
-        update(pid, new ByteArrayInputStream(stringWriter.toString().getBytes(Charset.forName("UTF-8"))));
+        try {
+            DomUtils.print(document, stringWriter);
+        } catch (TransformerException e) {
+            throw new RepositoryException(e);
+        }
+        akubraRepository.updateXMLDatastream(pid, KnownDatastreams.RELS_EXT, "text/xml",
+                new ByteArrayInputStream(stringWriter.toString().getBytes(StandardCharsets.UTF_8)));
     }
 
 }
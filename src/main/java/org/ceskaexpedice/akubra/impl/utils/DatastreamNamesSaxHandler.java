@@ -27,7 +27,7 @@ public class DatastreamNamesSaxHandler extends DefaultHandler {
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        if ("datastream".equals(qName)) {
+        if ("datastream".equals(localName) || "datastream".equals(qName)) {
             String id = attributes.getValue("ID");
             if (id != null) {
                 datastreamIds.add(id);
@@ -16,14 +16,15 @@
  */
 package org.ceskaexpedice.akubra.impl.utils;
 
+import org.ceskaexpedice.akubra.InspectionField;
 import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 public final class InternalSaxUtils {
@@ -35,12 +36,9 @@ public final class InternalSaxUtils {
 
     public static String getModsPartType(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             GetModsPartTypeSaxHandler handler = new GetModsPartTypeSaxHandler();
             try {
-                saxParser.parse(foxml, handler);
+                XmlPools.parse(foxml, handler, true);
             } catch (SAXException e) {
                 if (!FOUND.equals(e.getMessage())) {
                     throw e;
@@ -54,23 +52,34 @@ public final class InternalSaxUtils {
 
     public static List<String> getDatastreamNames(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
             DatastreamNamesSaxHandler handler = new DatastreamNamesSaxHandler();
-            saxParser.parse(foxml, handler);
+            XmlPools.parse(foxml, handler, true);
             return handler.getDatastreamIds();
         } catch (Exception e) {
             throw new RepositoryException(e);
         }
     }
 
+    public static ObjectInspectionSaxHandler inspect(InputStream foxml, Set<InspectionField> fields) {
+        try {
+            ObjectInspectionSaxHandler handler = new ObjectInspectionSaxHandler(fields);
+            try {
+                XmlPools.parse(foxml, handler, true);
+            } catch (SAXException e) {
+                if (!FOUND.equals(e.getMessage())) {
+                    throw e;
+                }
+            }
+            return handler;
+        } catch (Exception e) {
+            throw new RepositoryException(e);
+        }
+    }
+
     public static Map<String, String> getDatastreamMetadata(InputStream foxml, String dsId) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             DatastreamMetadataSaxHandler handler = new DatastreamMetadataSaxHandler(dsId);
-            saxParser.parse(foxml, handler);
+            XmlPools.parse(foxml, handler, true);
             return handler.getMetadata();
         } catch (Exception e) {
             throw new RepositoryException(e);
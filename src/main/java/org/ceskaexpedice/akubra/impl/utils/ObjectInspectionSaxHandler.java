@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.impl.utils;
+
+import org.ceskaexpedice.akubra.InspectionField;
+import org.ceskaexpedice.akubra.KnownDatastreams;
+import org.ceskaexpedice.akubra.impl.utils.relsext.GetModelSaxHandler;
+import org.ceskaexpedice.akubra.impl.utils.relsext.GetPidOfFirstChildSaxHandler;
+import org.ceskaexpedice.akubra.impl.utils.relsext.GetTilesUrlSaxHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.ceskaexpedice.akubra.impl.utils.InternalSaxUtils.FOUND;
+
+/**
+ * Collects several facts about a digital object in one parse. Events are dispatched to the existing
+ * single purpose handlers; parsing stops with {@link InternalSaxUtils#FOUND} as soon as all requested
+ * fields are complete.
+ */
+public class ObjectInspectionSaxHandler extends DefaultHandler {
+
+    private final Set<InspectionField> fields;
+    private final Set<InspectionField> completed = EnumSet.noneOf(InspectionField.class);
+    private final List<DefaultHandler> delegates = new ArrayList<>();
+
+    private GetModelSaxHandler modelHandler;
+    private GetTilesUrlSaxHandler tilesUrlHandler;
+    private GetPidOfFirstChildSaxHandler firstChildHandler;
+    private ObjectPropertiesSaxParser.ObjectPropertiesHandler objectPropertiesHandler;
+    private DatastreamNamesSaxHandler datastreamNamesHandler;
+
+    private int depth;
+    private boolean insideRelsExt;
+
+    public ObjectInspectionSaxHandler(Set<InspectionField> fields) {
+        this.fields = fields.isEmpty() ? EnumSet.noneOf(InspectionField.class) : EnumSet.copyOf(fields);
+        if (this.fields.contains(InspectionField.MODEL)) {
+            modelHandler = new GetModelSaxHandler();
+            delegates.add(modelHandler);
+        }
+        if (this.fields.contains(InspectionField.TILES_URL)) {
+            tilesUrlHandler = new GetTilesUrlSaxHandler();
+            delegates.add(tilesUrlHandler);
+        }
+        if (this.fields.contains(InspectionField.FIRST_CHILD)) {
+            firstChildHandler = new GetPidOfFirstChildSaxHandler();
+            delegates.add(firstChildHandler);
+        }
+        if (this.fields.contains(InspectionField.OBJECT_PROPERTIES)) {
+            objectPropertiesHandler = new ObjectPropertiesSaxParser.ObjectPropertiesHandler();
+            delegates.add(objectPropertiesHandler);
+        }
+        if (this.fields.contains(InspectionField.DATASTREAM_NAMES)) {
+            datastreamNamesHandler = new DatastreamNamesSaxHandler();
+            delegates.add(datastreamNamesHandler);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        depth++;
+        if (depth == 2 && "datastream".equals(localName) && KnownDatastreams.RELS_EXT.toString().equals(attributes.getValue("ID"))) {
+            insideRelsExt = true;
+        }
+        boolean firstChildFound = false;
+        for (DefaultHandler delegate : delegates) {
+            try {
+                delegate.startElement(uri, localName, qName, attributes);
+            } catch (SAXException e) {
+                if (!FOUND.equals(e.getMessage())) {
+                    throw e;
+                }
+                // only the first child handler stops early
+                firstChildFound = true;
+            }
+        }
+        if (firstChildFound) {
+            complete(InspectionField.FIRST_CHILD, firstChildHandler);
+            if (completed.containsAll(fields)) {
+                throw new SAXException(FOUND);
+            }
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        for (DefaultHandler delegate : delegates) {
+            delegate.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        for (DefaultHandler delegate : delegates) {
+            delegate.endElement(uri, localName, qName);
+        }
+        if (depth == 2 && "objectProperties".equals(localName)) {
+            complete(InspectionField.OBJECT_PROPERTIES, objectPropertiesHandler);
+        }
+        if (depth == 2 && insideRelsExt) {
+            insideRelsExt = false;
+            complete(InspectionField.MODEL, modelHandler);
+            complete(InspectionField.TILES_URL, tilesUrlHandler);
+            complete(InspectionField.FIRST_CHILD, firstChildHandler);
+        }
+        depth--;
+        if (depth == 0) {
+            completed.addAll(fields);
+        }
+        if (completed.containsAll(fields)) {
+            throw new SAXException(FOUND);
+        }
+    }
+
+    private void complete(InspectionField field, DefaultHandler handler) {
+        if (handler != null) {
+            completed.add(field);
+            delegates.remove(handler);
+        }
+    }
+
+    public Set<InspectionField> getFields() {
+        return fields;
+    }
+
+    public String getModel() {
+        return modelHandler != null ? modelHandler.getModel() : null;
+    }
+
+    public String getTilesUrl() {
+        return tilesUrlHandler != null ? tilesUrlHandler.getTilesUrl() : null;
+    }
+
+    public String getPidOfFirstChild() {
+        return firstChildHandler != null ? firstChildHandler.getFirstChildPid() : null;
+    }
+
+    public Map<String, String> getObjectProperties() {
+        return objectPropertiesHandler != null ? objectPropertiesHandler.getProperties() : null;
+    }
+
+    public List<String> getDatastreamNames() {
+        return datastreamNamesHandler != null ? datastreamNamesHandler.getDatastreamIds() : null;
+    }
+}
@@ -17,11 +17,10 @@
 package org.ceskaexpedice.akubra.impl.utils;
 
 import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
@@ -38,10 +37,8 @@ public class ObjectPropertiesSaxParser {
 
     private void parseObjectProperties(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
             ObjectPropertiesHandler handler = new ObjectPropertiesHandler();
-            saxParser.parse(foxml, handler);
+            XmlPools.parse(foxml, handler, true);
             properties.putAll(handler.getProperties());
         } catch (Exception e) {
             throw new RepositoryException("Error processing object properties XML: " + e.getMessage(), e);
@@ -58,10 +55,10 @@ public class ObjectPropertiesSaxParser {
 
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) {
-            if ("objectProperties".equals(qName)) {
+            if ("objectProperties".equals(localName) || "objectProperties".equals(qName)) {
                 insideObjectProperties = true;
             }
-            if (insideObjectProperties && "property".equals(qName)) {
+            if (insideObjectProperties && ("property".equals(localName) || "property".equals(qName))) {
                 String name = attributes.getValue("NAME");
                 String value = attributes.getValue("VALUE");
                 if (name != null && value != null) {
@@ -72,7 +69,7 @@ public class ObjectPropertiesSaxParser {
 
         @Override
         public void endElement(String uri, String localName, String qName) {
-            if ("objectProperties".equals(qName)) {
+            if ("objectProperties".equals(localName) || "objectProperties".equals(qName)) {
                 insideObjectProperties = false;
             }
         }
@@ -27,8 +27,10 @@ import org.ceskaexpedice.akubra.utils.StringUtils;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Utils for various Processing Index related tasks
@@ -38,6 +40,12 @@ public final class ProcessingIndexUtils {
 
     public static final int DEFAULT_MAX_LOOKAT_VALUE = 10_000;
     public static final int DEFAULT_ITERATION_VALUE = 500;
+    // PIDs per OR query of the bulk lookups, keeps the query well below Solr's default maxBooleanClauses (1024)
+    public static final int DEFAULT_BULK_CHUNK_SIZE = 200;
+
+    // fields returned for relation and description items, the streams lists are left out
+    private static final List<String> RELATION_FIELDS = List.of("pid", "type", "source", "relation", "targetPid");
+    private static final List<String> DESCRIPTION_FIELDS = List.of("pid", "type", "source", "model", "dc.title", "title", "ref", "date");
 
     private static List<KnownRelations> OWN_RELATIONS = Arrays.asList(new KnownRelations[]{
             KnownRelations.HAS_PAGE, KnownRelations.HAS_UNIT, KnownRelations.HAS_VOLUME, KnownRelations.HAS_ITEM,
@@ -61,6 +69,10 @@ public final class ProcessingIndexUtils {
         return retvals;
     }
 
+    public static Map<String, List<ProcessingIndexItem>> getParents(Collection<String> targetPids, CoreRepository coreRepository) {
+        return bulkQuery(null, "targetPid", ProcessingIndexItem::targetPid, targetPids, RELATION_FIELDS, coreRepository);
+    }
+
     public static List<ProcessingIndexItem> getParents(String relation, String targetPid, CoreRepository coreRepository) {
         List<ProcessingIndexItem> pids = new ArrayList<>();
         String query = String.format("relation:%s AND targetPid:%s", relation, targetPid.replace(":", "\\:"));
@@ -70,7 +82,7 @@ public final class ProcessingIndexUtils {
                 .ascending(true)
                 .cursorMark(ProcessingIndex.CURSOR_MARK_START)
                 .rows(DEFAULT_ITERATION_VALUE)
-                .fieldsToFetch(List.of("source"))
+                .fieldsToFetch(RELATION_FIELDS)
                 .build();
         coreRepository.getProcessingIndex().iterate(params, processingIndexItem -> {
             pids.add(processingIndexItem);
@@ -94,20 +106,27 @@ public final class ProcessingIndexUtils {
 
 
 
+    /**
+     * Streams the parent relations {@link #getParentsRelation} classifies, in cursor (relation document id) order;
+     * the stream fails when it reaches a second own parent.
+     */
+    public static Stream<ProcessingIndexItem> streamParentsRelation(String targetPid, CoreRepository coreRepository) {
+        ProcessingIndexItem[] ownParentProcessingIndexRelation = {null};
+        return streamParentsForTarget(targetPid, coreRepository)
+                .peek(processingIndexRelation -> {
+                    if (isOwnRelation(processingIndexRelation.relation())) {
+                        ownParentProcessingIndexRelation[0] = ownParent(targetPid, ownParentProcessingIndexRelation[0], processingIndexRelation);
+                    }
+                });
+    }
+
     public static OwnedAndFosteredParents getParentsRelation(String targetPid, CoreRepository coreRepository) {
         List<ProcessingIndexItem> pseudoparentProcessingIndexRelations = getParentsForTarget(targetPid, coreRepository);
         ProcessingIndexItem ownParentProcessingIndexRelation = null;
         List<ProcessingIndexItem> fosterParentProcessingIndexRelations = new ArrayList<>();
         for (ProcessingIndexItem processingIndexRelation : pseudoparentProcessingIndexRelations) {
             if (isOwnRelation(processingIndexRelation.relation())) {
-                if (ownParentProcessingIndexRelation != null) {
-                    String header = String.format("Object \"%s\" has multiple own parents via:", targetPid);
-                    String firstRelation = String.format("\n\t - " + ownParentProcessingIndexRelation.pid());
-                    String secondRelation = String.format("\n\t - " + processingIndexRelation.pid());
-                    throw new RepositoryException(header+firstRelation+secondRelation);
-                } else {
-                    ownParentProcessingIndexRelation = processingIndexRelation;
-                }
+                ownParentProcessingIndexRelation = ownParent(targetPid, ownParentProcessingIndexRelation, processingIndexRelation);
             } else {
                 fosterParentProcessingIndexRelations.add(processingIndexRelation);
             }
@@ -115,6 +134,17 @@ public final class ProcessingIndexUtils {
         return new OwnedAndFosteredParents(ownParentProcessingIndexRelation, fosterParentProcessingIndexRelations);
     }
 
+    private static ProcessingIndexItem ownParent(String targetPid, ProcessingIndexItem ownParentProcessingIndexRelation,
+                                                 ProcessingIndexItem processingIndexRelation) {
+        if (ownParentProcessingIndexRelation != null) {
+            String header = String.format("Object \"%s\" has multiple own parents via:", targetPid);
+            String firstRelation = String.format("\n\t - " + ownParentProcessingIndexRelation.pid());
+            String secondRelation = String.format("\n\t - " + processingIndexRelation.pid());
+            throw new RepositoryException(header+firstRelation+secondRelation);
+        }
+        return processingIndexRelation;
+    }
+
     // ------------- children ----------------------------------
 
     public static List<ProcessingIndexItem> getChildren(String relation, String sourcePid, CoreRepository coreRepository) {
@@ -126,7 +156,7 @@ public final class ProcessingIndexUtils {
                 .ascending(true)
                 .cursorMark(ProcessingIndex.CURSOR_MARK_START)
                 .rows(DEFAULT_ITERATION_VALUE)
-                .fieldsToFetch(List.of("targetPid"))
+                .fieldsToFetch(RELATION_FIELDS)
                 .build();
         coreRepository.getProcessingIndex().iterate(params, processingIndexItem -> {
             processingIndexItems.add(processingIndexItem);
@@ -134,12 +164,32 @@ public final class ProcessingIndexUtils {
         return processingIndexItems;
     }
 
+    /**
+     * Streams the child relations {@link #getChildrenRelation(String, CoreRepository)} classifies,
+     * in cursor (relation document id) order.
+     */
+    public static Stream<ProcessingIndexItem> streamChildrenRelation(String sourcePid, CoreRepository coreRepository) {
+        return streamChildrenForSource(sourcePid, coreRepository)
+                .filter(ProcessingIndexUtils::isChildRelation);
+    }
+
     public static OwnedAndFosteredChildren getChildrenRelation(String sourcePid, CoreRepository coreRepository) {
-        List<ProcessingIndexItem> pseudochildrenTriplets = getChildrenForSource(sourcePid, coreRepository);
+        return toOwnedAndFosteredChildren(getChildrenForSource(sourcePid, coreRepository));
+    }
+
+    public static Map<String, OwnedAndFosteredChildren> getChildrenRelation(Collection<String> sourcePids, CoreRepository coreRepository) {
+        Map<String, List<ProcessingIndexItem>> triplets = bulkQuery("type:relation", "source", ProcessingIndexItem::source,
+                sourcePids, RELATION_FIELDS, coreRepository);
+        Map<String, OwnedAndFosteredChildren> retvals = new LinkedHashMap<>();
+        triplets.forEach((sourcePid, children) -> retvals.put(sourcePid, toOwnedAndFosteredChildren(children)));
+        return retvals;
+    }
+
+    private static OwnedAndFosteredChildren toOwnedAndFosteredChildren(List<ProcessingIndexItem> pseudochildrenTriplets) {
         List<ProcessingIndexItem> ownChildrenTriplets = new ArrayList<>();
         List<ProcessingIndexItem> fosterChildrenTriplets = new ArrayList<>();
         for (ProcessingIndexItem triplet : pseudochildrenTriplets) {
-            if (triplet.targetPid() != null && triplet.targetPid().startsWith("uuid:")) {
+            if (isChildRelation(triplet)) {
                 if (isOwnRelation(triplet.relation())) {
                     ownChildrenTriplets.add(triplet);
                 } else {
@@ -161,6 +211,17 @@ public final class ProcessingIndexUtils {
         return model == null ? null : model.substring("model:".length());
     }
 
+    public static Map<String, String> getModels(Collection<String> objectPids, CoreRepository coreRepository) {
+        Map<String, List<ProcessingIndexItem>> descriptions = bulkQuery("type:description", "source", ProcessingIndexItem::source,
+                objectPids, DESCRIPTION_FIELDS, coreRepository);
+        Map<String, String> retvals = new LinkedHashMap<>();
+        descriptions.forEach((pid, found) -> found.stream()
+                .filter(description -> description.model() != null)
+                .findFirst()
+                .ifPresent(description -> retvals.put(pid, description.model().substring("model:".length()))));
+        return retvals;
+    }
+
     public static CursorItemsPair getByModelWithCursor(String model, boolean ascendingOrder, String cursor, int limit, CoreRepository coreRepository) {
         List<ProcessingIndexItem> items = new ArrayList<>();
         String query = String.format("type:description AND model:%s", "model\\:" + model); //prvni "model:" je filtr na solr pole, druhy "model:" je hodnota pole, coze je mozna zbytecne (ten prefix)
@@ -176,7 +237,7 @@ public final class ProcessingIndexUtils {
         if (StringUtils.isAnyString(titlePrefix)) {
             query = String.format("type:description AND model:%s AND title_edge:%s", "model\\:" + model, titlePrefix); //prvni "model:" je filtr na solr pole, druhy "model:" je hodnota pole, coze  uprime zbytecne
         }
-        SizeItemsPair sizeItemsPair = getPageSortedByTitle(query, rows, pageIndex, Arrays.asList("source"), coreRepository);
+        SizeItemsPair sizeItemsPair = getPageSortedByTitle(query, rows, pageIndex, DESCRIPTION_FIELDS, coreRepository);
         return sizeItemsPair;
     }
 
@@ -189,7 +250,7 @@ public final class ProcessingIndexUtils {
                 .ascending(ascendingOrder)
                 .rows(limit)
                 .offset(offset)
-                .fieldsToFetch(List.of("source", "dc.title"))
+                .fieldsToFetch(DESCRIPTION_FIELDS)
                 .build();
         coreRepository.getProcessingIndex().iterate(params, processingIndexItem -> {
             titlePidPairs.add(processingIndexItem);
@@ -214,38 +275,95 @@ public final class ProcessingIndexUtils {
     }
 
     private static List<ProcessingIndexItem> getChildrenForSource(String sourcePid, CoreRepository coreRepository) {
-        List<ProcessingIndexItem> triplets = new ArrayList<>();
-        String query = String.format("source:%s", sourcePid.replace(":", "\\:"));
-        ProcessingIndexQueryParameters params = new ProcessingIndexQueryParameters.Builder()
-                .queryString(query)
-                .sortField("date")
-                .ascending(true)
-                //.cursorMark("*")
-                .rows(DEFAULT_MAX_LOOKAT_VALUE)
-                .fieldsToFetch(List.of("targetPid", "relation"))
-                .build();
-        coreRepository.getProcessingIndex().lookAt(params, processingIndexItem -> {
-            triplets.add(processingIndexItem);
-        });
-        return triplets;
+        return lookAtAll(query("type:relation", "source", List.of(sourcePid)), RELATION_FIELDS, coreRepository);
+    }
+
+    private static Stream<ProcessingIndexItem> streamChildrenForSource(String sourcePid, CoreRepository coreRepository) {
+        return cursorStream(query("type:relation", "source", List.of(sourcePid)), RELATION_FIELDS, coreRepository);
     }
 
     private static List<ProcessingIndexItem> getParentsForTarget(String targetPid, CoreRepository coreRepository) {
-        List<ProcessingIndexItem> processingIndexRelations = new ArrayList<>();
-        String query = String.format("targetPid:%s", targetPid.replace(":", "\\:"));
+        return lookAtAll(query(null, "targetPid", List.of(targetPid)), RELATION_FIELDS, coreRepository);
+    }
+
+    private static Stream<ProcessingIndexItem> streamParentsForTarget(String targetPid, CoreRepository coreRepository) {
+        return cursorStream(query(null, "targetPid", List.of(targetPid)), RELATION_FIELDS, coreRepository);
+    }
+
+    /**
+     * Queries the PIDs in chunks of {@link #DEFAULT_BULK_CHUNK_SIZE} and groups the found items by the PID they were found for.
+     * @return items keyed by PID in the order of the given PIDs without duplicates, every PID maps to a list
+     */
+    private static Map<String, List<ProcessingIndexItem>> bulkQuery(String filter, String field, Function<ProcessingIndexItem, String> key,
+                                                                    Collection<String> pids, List<String> fields, CoreRepository coreRepository) {
+        Map<String, List<ProcessingIndexItem>> retvals = new LinkedHashMap<>();
+        for (String pid : pids) {
+            retvals.put(pid, new ArrayList<>());
+        }
+        for (List<String> chunk : chunks(retvals.keySet())) {
+            lookAtAll(query(filter, field, chunk), fields, coreRepository).stream()
+                    .filter(item -> retvals.containsKey(key.apply(item)))
+                    .forEach(item -> retvals.get(key.apply(item)).add(item));
+        }
+        return retvals;
+    }
+
+    private static String query(String filter, String field, List<String> pids) {
+        String pidsQuery = anyOf(field, pids);
+        return filter != null ? filter + " AND " + pidsQuery : pidsQuery;
+    }
+
+    /**
+     * Reads all matching items in index order, page by page with start and rows. The lists keep the order relations
+     * were indexed in, which a cursor cannot do, it needs a sort on the unique key.
+     */
+    private static List<ProcessingIndexItem> lookAtAll(String query, List<String> fields, CoreRepository coreRepository) {
+        List<ProcessingIndexItem> items = new ArrayList<>();
+        while (true) {
+            int offset = items.size();
+            ProcessingIndexQueryParameters params = new ProcessingIndexQueryParameters.Builder()
+                    .queryString(query)
+                    .rows(DEFAULT_MAX_LOOKAT_VALUE)
+                    .offset(offset)
+                    .fieldsToFetch(fields)
+                    .build();
+            coreRepository.getProcessingIndex().lookAt(params, items::add);
+            if (items.size() - offset < DEFAULT_MAX_LOOKAT_VALUE) {
+                return items;
+            }
+        }
+    }
+
+    private static Stream<ProcessingIndexItem> cursorStream(String query, List<String> fields, CoreRepository coreRepository) {
         ProcessingIndexQueryParameters params = new ProcessingIndexQueryParameters.Builder()
                 .queryString(query)
-//                .sortField("date")
-//                .ascending(true)
-//                .cursorMark(ProcessingIndex.CURSOR_MARK_START)
-//                .rows(Integer.MAX_VALUE)
-                .rows(DEFAULT_MAX_LOOKAT_VALUE)
-                .fieldsToFetch(List.of("source", "relation"))
+                .cursorMark(ProcessingIndex.CURSOR_MARK_START)
+                .rows(DEFAULT_ITERATION_VALUE)
+                .fieldsToFetch(fields)
                 .build();
-        coreRepository.getProcessingIndex().lookAt(params, processingIndexItem -> {
-            processingIndexRelations.add(processingIndexItem);
-        });
-        return processingIndexRelations;
+        return coreRepository.getProcessingIndex().stream(params);
+    }
+
+    static List<List<String>> chunks(Collection<String> pids) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        for (String pid : new LinkedHashSet<>(pids)) {
+            chunk.add(pid);
+            if (chunk.size() == DEFAULT_BULK_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static String anyOf(String field, List<String> values) {
+        return values.stream()
+                .map(value -> "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"")
+                .collect(Collectors.joining(" OR ", field + ":(", ")"));
     }
 
     private static SizeItemsPair getPageSortedByTitle(String query, int rows, int pageIndex, List<String> fieldList,
@@ -280,6 +398,10 @@ public final class ProcessingIndexUtils {
         });
     }
 
+    private static boolean isChildRelation(ProcessingIndexItem item) {
+        return item.targetPid() != null && item.targetPid().startsWith("uuid:");
+    }
+
     private static boolean isOwnRelation(String relation) {
         for (KnownRelations knownRelation : OWN_RELATIONS) {
             if (relation.equals(knownRelation.toString())) {
@@ -20,7 +20,6 @@ import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.ceskaexpedice.akubra.RepositoryException;
-import org.ceskaexpedice.akubra.RepositoryNamespaceContext;
 import org.ceskaexpedice.akubra.RepositoryNamespaces;
 import org.ceskaexpedice.akubra.pid.LexerException;
 import org.ceskaexpedice.akubra.pid.PIDParser;
@@ -28,6 +27,7 @@ import org.ceskaexpedice.akubra.relsext.KnownRelations;
 import org.ceskaexpedice.akubra.relsext.RelsExtHelper;
 import org.ceskaexpedice.akubra.utils.DomUtils;
 import org.ceskaexpedice.akubra.utils.StringUtils;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -87,11 +87,7 @@ public final class RelsExtInternalDomUtils {
 
     public static String getElementValue(Document relsExt, String xpathExpression) {
         try {
-            XPathFactory xpfactory = XPathFactory.newInstance();
-            XPath xpath = xpfactory.newXPath();
-            xpath.setNamespaceContext(new RepositoryNamespaceContext());
-            XPathExpression expr = xpath.compile(xpathExpression);
-            Object tiles = expr.evaluate(relsExt.getDocumentElement(), XPathConstants.NODE);
+            Object tiles = XmlPools.evaluate(xpathExpression, relsExt.getDocumentElement(), XPathConstants.NODE);
             if (tiles != null) {
                 String data = ((Text) tiles).getData();
                 return data != null ? data.trim() : null;
@@ -18,10 +18,9 @@ package org.ceskaexpedice.akubra.impl.utils.relsext;
 
 import org.ceskaexpedice.akubra.RepositoryException;
 import org.ceskaexpedice.akubra.impl.utils.InternalSaxUtils;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.InputStream;
 import java.util.logging.Logger;
 
@@ -35,13 +34,10 @@ public final class RelsExtInternalSaxUtils {
 
     public static String getPidOfFirstChild(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             GetPidOfFirstChildSaxHandler handler = new GetPidOfFirstChildSaxHandler();
 
             try {
-                saxParser.parse(foxml, handler);
+                XmlPools.parse(foxml, handler, true);
             } catch (SAXException e) {
                 if (!InternalSaxUtils.FOUND.equals(e.getMessage())) {
                     throw e;
@@ -55,12 +51,9 @@ public final class RelsExtInternalSaxUtils {
 
     public static String getFirstReplicatedFrom(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             GetFirstReplicatedFromSaxHandler handler = new GetFirstReplicatedFromSaxHandler();
             try {
-                saxParser.parse(foxml, handler);
+                XmlPools.parse(foxml, handler, true);
             } catch (SAXException e) {
                 if (!FOUND.equals(e.getMessage())) {
                     throw e;
@@ -74,12 +67,9 @@ public final class RelsExtInternalSaxUtils {
 
     public static String getTilesUrl(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             GetTilesUrlSaxHandler handler = new GetTilesUrlSaxHandler();
             try {
-                saxParser.parse(foxml, handler);
+                XmlPools.parse(foxml, handler, true);
             } catch (SAXException e) {
                 if (!FOUND.equals(e.getMessage())) {
                     throw e;
@@ -93,13 +83,10 @@ public final class RelsExtInternalSaxUtils {
 
     public static String getModel(InputStream foxml) {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            factory.setNamespaceAware(true);
-            SAXParser saxParser = factory.newSAXParser();
             GetModelSaxHandler handler = new GetModelSaxHandler();
 
             try {
-                saxParser.parse(foxml, handler);
+                XmlPools.parse(foxml, handler, true);
             } catch (SAXException e) {
                 if (!InternalSaxUtils.FOUND.equals(e.getMessage())) {
                     throw e;
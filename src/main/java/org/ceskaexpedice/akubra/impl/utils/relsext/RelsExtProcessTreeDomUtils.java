@@ -21,6 +21,7 @@ import org.ceskaexpedice.akubra.pid.LexerException;
 import org.ceskaexpedice.akubra.pid.PIDParser;
 import org.ceskaexpedice.akubra.relsext.TreeNodeProcessStackAware;
 import org.ceskaexpedice.akubra.relsext.TreeNodeProcessor;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -101,7 +102,6 @@ public final class RelsExtProcessTreeDomUtils {
 
     public static void processInTree(String pid, TreeNodeProcessor processor, AkubraRepository akubraRepository) {
         try {
-            XPathFactory factory = XPathFactory.newInstance();
             Document relsExt = null;
             try {
                 // should be from
@@ -114,7 +114,7 @@ public final class RelsExtProcessTreeDomUtils {
                 LOGGER.warning("could not read root RELS-EXT, skipping object  (" + pid + "):" + ex);
             }
             if (!processor.skipBranch(pid, 0)) {
-                processInTreeInternal(pid, relsExt, processor, 0, new Stack<String>(), akubraRepository, factory);
+                processInTreeInternal(pid, relsExt, processor, 0, new Stack<String>(), akubraRepository);
             }
         } catch (Exception e) {
             throw new RepositoryException(e);
@@ -122,7 +122,7 @@ public final class RelsExtProcessTreeDomUtils {
     }
 
     private static boolean processInTreeInternal(String pid, Document relsExt, TreeNodeProcessor processor, int level,
-                                                 Stack<String> pidStack, AkubraRepository akubraRepository, XPathFactory xPathFactory)
+                                                 Stack<String> pidStack, AkubraRepository akubraRepository)
             throws XPathExpressionException, LexerException {
         processor.process(pid, level);
         boolean breakProcessing = processor.breakProcessing(pid, level);
@@ -132,10 +132,7 @@ public final class RelsExtProcessTreeDomUtils {
         if (relsExt == null) {
             return false;
         }
-        XPath xpath = xPathFactory.newXPath();
-        xpath.setNamespaceContext(new RepositoryNamespaceContext());
-        XPathExpression expr = xpath.compile("/rdf:RDF/rdf:Description/*");
-        NodeList nodes = (NodeList) expr.evaluate(relsExt, XPathConstants.NODESET);
+        NodeList nodes = (NodeList) XmlPools.evaluate("/rdf:RDF/rdf:Description/*", relsExt, XPathConstants.NODESET);
 
         if (pidStack.contains(pid)) {
             LOGGER.log(Level.WARNING, "Cyclic reference on " + pid);
@@ -165,7 +162,7 @@ public final class RelsExtProcessTreeDomUtils {
                                             + "] and pid (" + objectId + "):" + ex);
                                 }
                                 breakProcessing = processInTreeInternal(pidParser.getObjectPid(), iterationgRelsExt,
-                                        processor, level + 1, pidStack, akubraRepository, xPathFactory);
+                                        processor, level + 1, pidStack, akubraRepository);
 
                                 if (breakProcessing) {
                                     break;
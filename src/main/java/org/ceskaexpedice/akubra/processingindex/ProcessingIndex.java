@@ -18,11 +18,17 @@ package org.ceskaexpedice.akubra.processingindex;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.ceskaexpedice.fedoramodel.DigitalObject;
 import org.json.JSONObject;
+import org.w3c.dom.Element;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interface for interacting with the processing index of Akubra objects.
@@ -57,6 +63,26 @@ public interface ProcessingIndex {
      */
     String iterate(ProcessingIndexQueryParameters params, Consumer<ProcessingIndexItem> action);
 
+    /**
+     * Publishes all processing index items matching the query parameters, read with a Solr cursor.
+     * Pages are fetched ahead as subscribers request items; a subscriber that stops requesting holds back the scan.
+     * The cursor starts at the cursor mark of the parameters, or at the beginning if none is set.
+     *
+     * @param params The query parameters used to filter processing index entries.
+     * @return A publisher delivering the items on a background thread.
+     */
+    Flow.Publisher<ProcessingIndexItem> publish(ProcessingIndexQueryParameters params);
+
+    /**
+     * Streams all processing index items matching the query parameters, read page by page with a Solr cursor
+     * on the consuming thread. Nothing is read before a terminal operation starts.
+     * The cursor starts at the cursor mark of the parameters, or at the beginning if none is set.
+     *
+     * @param params The query parameters used to filter processing index entries.
+     * @return A lazy stream of items.
+     */
+    Stream<ProcessingIndexItem> stream(ProcessingIndexQueryParameters params);
+
     /**
      * Performs a lightweight inspection of processing index items based on the provided query parameters.
      * Unlike {@link #iterate}, this method does not use Solr cursor-based pagination and is intended for
@@ -76,6 +102,14 @@ public interface ProcessingIndex {
      */
     List<ProcessingIndexItem>  getParents(String targetPid);
 
+    /**
+     * Retrieves parent items of many target PIDs at once, the PIDs are queried in chunks rather than one by one.
+     *
+     * @param targetPids The unique identifiers of the target objects.
+     * @return Parent items keyed by target PID in the order of the given PIDs, PIDs without parents map to an empty list.
+     */
+    Map<String, List<ProcessingIndexItem>> getParents(Collection<String> targetPids);
+
     /**
      * Retrieves a list of parent items associated with the given target PID and relation type.
      *
@@ -87,12 +121,26 @@ public interface ProcessingIndex {
 
     /**
      * Retrieves the parents of the given target PID, categorized into "owned" and "fostered" relationships.
+     * The foster parents keep the order they were indexed in.
      *
      * @param targetPid The unique identifier of the target object.
      * @return An {@code OwnedAndFosteredParents} object containing lists of parents classified by relation type.
+     * @throws org.ceskaexpedice.akubra.RepositoryException if the object has more than one owned parent
      */
     OwnedAndFosteredParents getOwnedAndFosteredParents(String targetPid);
 
+    /**
+     * Streams the relations pointing to the given target PID, use {@link ProcessingIndexItem#relation()}
+     * to tell owned and fostered ones apart. The relations are the ones {@link #getOwnedAndFosteredParents(String)}
+     * classifies; the stream fails with a {@link org.ceskaexpedice.akubra.RepositoryException} when it reaches
+     * a second owned parent. The relations are read page by page with a Solr cursor as the stream is consumed,
+     * nothing is read before, so unlike the list they come ordered by relation document id, that is by source PID.
+     *
+     * @param targetPid The unique identifier of the target object.
+     * @return A lazy stream of parent relation items.
+     */
+    Stream<ProcessingIndexItem> streamOwnedAndFosteredParents(String targetPid);
+
 
     /***
      * Retrieves the conflicting parents of the given target PID, categorized into "owned" and "fostered" relationships.
@@ -129,12 +177,33 @@ public interface ProcessingIndex {
 
     /**
      * Retrieves the children of the given PID, categorized into "owned" and "fostered" relationships.
+     * The children keep the order they were indexed in.
      *
      * @param pid The unique identifier of the object whose children are to be retrieved.
      * @return An {@code OwnedAndFosteredChildren} object containing lists of children classified by relation type.
      */
     OwnedAndFosteredChildren getOwnedAndFosteredChildren(String pid);
 
+    /**
+     * Retrieves the owned and fostered children of many PIDs at once, the PIDs are queried in chunks rather than one by one.
+     *
+     * @param pids The unique identifiers of the objects whose children are to be retrieved.
+     * @return Children keyed by PID in the order of the given PIDs, PIDs without children map to empty lists.
+     */
+    Map<String, OwnedAndFosteredChildren> getOwnedAndFosteredChildren(Collection<String> pids);
+
+    /**
+     * Streams the owned and fostered child relations of the given PID,
+     * use {@link ProcessingIndexItem#relation()} to tell them apart. The relations are the ones
+     * {@link #getOwnedAndFosteredChildren(String)} classifies. They are read page by page with a Solr cursor
+     * as the stream is consumed, nothing is read before, so unlike the list they come ordered by relation
+     * document id, that is by relation and target PID.
+     *
+     * @param pid The unique identifier of the object whose children are to be retrieved.
+     * @return A lazy stream of child relation items.
+     */
+    Stream<ProcessingIndexItem> streamOwnedAndFosteredChildren(String pid);
+
     /**
      * Retrieves the model associated with the given PID.
      *
@@ -143,6 +212,14 @@ public interface ProcessingIndex {
      */
     String getModel(String pid);
 
+    /**
+     * Retrieves the models of many PIDs at once, the PIDs are queried in chunks rather than one by one.
+     *
+     * @param pids The unique identifiers of the objects.
+     * @return Models keyed by PID in the order of the given PIDs, PIDs that are not indexed are left out.
+     */
+    Map<String, String> getModels(Collection<String> pids);
+
     /**
      * Retrieves indexed items by model using a cursor-based pagination approach.
      *
@@ -233,6 +310,23 @@ public interface ProcessingIndex {
      */
     void rebuildProcessingIndex(String pid, Consumer<UpdateRequest> updateRequestCustomizer);
 
+    /**
+     * rebuild processing index for the given object that has just been written, without reading it from the repository
+     * @param digitalObject The object whose index entries to rebuild
+     */
+    void rebuildProcessingIndexFromObject(DigitalObject digitalObject, Consumer<UpdateRequest> updateRequestCustomizer);
+
+    /**
+     * Updates the processing index after RELS-EXT of the object has been changed or deleted.
+     * Relations are diffed against the previous RELS-EXT: only new relation documents are sent
+     * and relations that are gone are deleted by their id. When the object itself has been deleted,
+     * all relations of the previous RELS-EXT are deleted by their id.
+     *
+     * @param pid The unique identifier of the object
+     * @param previousRelsExt root element of the RELS-EXT the index was built from, null if the object had none
+     */
+    void updateRelations(String pid, Element previousRelsExt);
+
     /**
      * Performs operations on the processing index with an explicit commit.
      *
@@ -243,6 +337,34 @@ public interface ProcessingIndex {
     /**
      * Commits the changes to the processing index.
      * This method ensures that any updates or deletions made to the index are finalized.
+     * How the commit is sent to Solr depends on the configured {@link org.ceskaexpedice.akubra.config.CommitStrategy}.
      */
     void commit();
+
+    /**
+     * Returns statistics of commit requests and of commits actually sent to Solr.
+     *
+     * @return commit statistics snapshot
+     */
+    ProcessingIndexCommitStats getCommitStats();
+
+    /**
+     * Returns statistics of update requests sent to Solr, including the failed ones.
+     *
+     * @return update statistics snapshot
+     */
+    ProcessingIndexUpdateStats getUpdateStats();
+
+    /**
+     * Returns statistics of the query result cache, disabled statistics if the cache is not configured.
+     *
+     * @return query cache statistics snapshot
+     */
+    ProcessingIndexQueryCacheStats getQueryCacheStats();
+
+    /**
+     * Sends all queued updates and releases the resources of the processing index.
+     */
+    default void shutdown() {
+    }
 }
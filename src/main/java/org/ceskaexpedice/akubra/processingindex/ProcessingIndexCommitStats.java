@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.processingindex;
+
+import org.ceskaexpedice.akubra.config.CommitStrategy;
+
+/**
+ * Snapshot of the processing index commit statistics
+ * @param strategy configured commit strategy
+ * @param requestCount number of explicit commit requests
+ * @param commitCount number of commits sent to Solr
+ * @param coalescedCount number of requests served by a commit of another request or left to commitWithin
+ */
+public record ProcessingIndexCommitStats(
+        CommitStrategy strategy,
+        long requestCount,
+        long commitCount,
+        long coalescedCount
+) {
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.processingindex;
+
+/**
+ * Snapshot of the processing index query cache statistics
+ * @param enabled true if the cache is configured
+ * @param hitCount number of queries served from the cache
+ * @param missCount number of queries sent to Solr
+ * @param evictionCount number of entries evicted because of size or expiration
+ * @param invalidationCount number of PIDs invalidated by index updates
+ * @param entryCount current number of cached results
+ * @param maxEntries configured upper bound of cached results
+ */
+public record ProcessingIndexQueryCacheStats(
+        boolean enabled,
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long invalidationCount,
+        long entryCount,
+        long maxEntries
+) {
+
+    /**
+     * @return share of queries served from the cache, 0 if there were none
+     */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.processingindex;
+
+/**
+ * Snapshot of the processing index update statistics
+ * @param requestCount number of update requests written to Solr
+ * @param documentCount number of documents added or deleted by written requests
+ * @param failedRequestCount number of update requests that failed
+ * @param failedDocumentCount number of documents of failed requests
+ * @param queuedRequestCount number of update requests waiting or being sent
+ * @param retryPendingCount number of failed operations waiting in the retry spool
+ */
+public record ProcessingIndexUpdateStats(
+        long requestCount,
+        long documentCount,
+        long failedRequestCount,
+        long failedDocumentCount,
+        long queuedRequestCount,
+        long retryPendingCount
+) {
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.relsext;
+
+/**
+ * Editing session over the RELS-EXT of one digital object, see {@link RelsExtHelper#edit(String, java.util.function.Consumer)}.
+ * Changes are applied to an in-memory copy of the datastream and written together when the session ends.
+ */
+public interface RelsExtEditor {
+
+    /**
+     * Adds a new relationship.
+     *
+     * @param relation       The relationship type (e.g., "isPartOf").
+     * @param namespace      The namespace URI for the relationship.
+     * @param targetRelation The target object of the relationship.
+     * @return This editor.
+     */
+    RelsExtEditor addRelation(String relation, String namespace, String targetRelation);
+
+    /**
+     * Removes a specific relationship.
+     *
+     * @param relation       The relationship type.
+     * @param namespace      The namespace URI of the relationship.
+     * @param targetRelation The target object of the relationship.
+     * @return This editor.
+     */
+    RelsExtEditor removeRelation(String relation, String namespace, String targetRelation);
+
+    /**
+     * Removes all relationships of the given type.
+     *
+     * @param relation  The relationship type.
+     * @param namespace The namespace URI of the relationship.
+     * @return This editor.
+     */
+    RelsExtEditor removeRelationsByNameAndNamespace(String relation, String namespace);
+
+    /**
+     * Removes all relationships and literals in the namespace.
+     *
+     * @param namespace The namespace URI of the relationship.
+     * @return This editor.
+     */
+    RelsExtEditor removeRelationsByNamespace(String namespace);
+
+    /**
+     * Adds a literal value.
+     *
+     * @param relation  The property name.
+     * @param namespace The namespace URI for the property.
+     * @param value     The literal value to be stored.
+     * @return This editor.
+     */
+    RelsExtEditor addLiteral(String relation, String namespace, String value);
+
+    /**
+     * Removes a specific literal value.
+     *
+     * @param relation  The property name.
+     * @param namespace The namespace URI of the property.
+     * @param value     The literal value to be removed.
+     * @return This editor.
+     */
+    RelsExtEditor removeLiteral(String relation, String namespace, String value);
+
+    /**
+     * Checks whether any change has been made in this session.
+     *
+     * @return {@code true} if the RELS-EXT will be written.
+     */
+    boolean isModified();
+}
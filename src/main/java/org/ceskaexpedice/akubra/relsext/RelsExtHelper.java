@@ -22,6 +22,7 @@ import org.json.JSONObject;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Main repository access point for managing RELS EXT datastream relations.
@@ -146,6 +147,21 @@ public interface RelsExtHelper {
 
     // ------ CDU of individual relation or literal ------------------------------------------
 
+    /**
+     * Applies any number of relation and literal changes to the RELS-EXT datastream of a digital object.
+     * The datastream is read once under the object lock and written once if anything changed;
+     * the processing index is updated once and not committed explicitly, unlike the single change methods below.
+     * <pre>{@code
+     * repository.re().edit(pid, editor -> editor
+     *         .removeRelationsByNameAndNamespace("policy", RepositoryNamespaces.KRAMERIUS_URI)
+     *         .addLiteral("policy", RepositoryNamespaces.KRAMERIUS_URI, "policy:public"));
+     * }</pre>
+     *
+     * @param pid    The persistent identifier of the object.
+     * @param editor Applies the changes.
+     */
+    void edit(String pid, Consumer<RelsExtEditor> editor);
+
     /**
      * Adds a new relationship to the RELS-EXT datastream of a digital object.
      *
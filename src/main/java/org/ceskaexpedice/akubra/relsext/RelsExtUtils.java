@@ -18,22 +18,19 @@ package org.ceskaexpedice.akubra.relsext;
 
 import org.ceskaexpedice.akubra.KnownDatastreams;
 import org.ceskaexpedice.akubra.RepositoryException;
-import org.ceskaexpedice.akubra.RepositoryNamespaceContext;
 import org.ceskaexpedice.akubra.RepositoryNamespaces;
 import org.ceskaexpedice.akubra.pid.LexerException;
 import org.ceskaexpedice.akubra.pid.PIDParser;
 import org.ceskaexpedice.akubra.utils.DomUtils;
 import org.ceskaexpedice.akubra.utils.StringUtils;
+import org.ceskaexpedice.akubra.utils.XmlPools;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -84,11 +81,7 @@ public final class RelsExtUtils {
 
     public static String getTilesUrl(Element relsExt) {
         try {
-            XPathFactory xpfactory = XPathFactory.newInstance();
-            XPath xpath = xpfactory.newXPath();
-            xpath.setNamespaceContext(new RepositoryNamespaceContext());
-            XPathExpression expr = xpath.compile("//kramerius:tiles-url/text()");
-            Object tiles = expr.evaluate(relsExt, XPathConstants.NODE);
+            Object tiles = XmlPools.evaluate("//kramerius:tiles-url/text()", relsExt, XPathConstants.NODE);
             if (tiles != null) {
                 String data = ((Text) tiles).getData();
                 return data != null ? data.trim() : null;
@@ -24,12 +24,8 @@ import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSSerializer;
 import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.InputStream;
@@ -40,7 +36,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -64,10 +59,7 @@ public final class DomUtils {
      */
     public static Document streamToDocument(Reader reader) {
         try {
-            DocumentBuilderFactory newInstance = DocumentBuilderFactory.newInstance();
-            LOGGER.log(Level.FINE, "builder factory instance :" + newInstance.getClass().getResource(newInstance.getClass().getSimpleName() + ".class"));
-            DocumentBuilder builder = newInstance.newDocumentBuilder();
-            return builder.parse(new InputSource(reader));
+            return XmlPools.parseDocument(new InputSource(reader), false);
         } catch (Exception e) {
             throw new RepositoryException();
         }
@@ -82,11 +74,7 @@ public final class DomUtils {
      */
     public static Document streamToDocument(Reader reader, boolean namespaceaware) {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            LOGGER.log(Level.FINE, "builder factory instance :" + factory.getClass().getResource(factory.getClass().getSimpleName() + ".class"));
-            factory.setNamespaceAware(namespaceaware);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.parse(new InputSource(reader));
+            return XmlPools.parseDocument(new InputSource(reader), namespaceaware);
         } catch (Exception e) {
             throw new RepositoryException(e);
         }
@@ -100,10 +88,7 @@ public final class DomUtils {
      */
     public static Document streamToDocument(InputStream is) {
         try {
-            DocumentBuilderFactory newInstance = DocumentBuilderFactory.newInstance();
-            LOGGER.log(Level.FINE, "builder factory instance :" + newInstance.getClass().getResource(newInstance.getClass().getSimpleName() + ".class"));
-            DocumentBuilder builder = newInstance.newDocumentBuilder();
-            return builder.parse(is);
+            return XmlPools.parseDocument(is, false);
         } catch (Exception e) {
             throw new RepositoryException(e);
         }
@@ -118,11 +103,7 @@ public final class DomUtils {
      */
     public static Document streamToDocument(InputStream is, boolean namespaceaware) {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            LOGGER.log(Level.FINE, "builder factory instance :" + factory.getClass().getResource(factory.getClass().getSimpleName() + ".class"));
-            factory.setNamespaceAware(namespaceaware);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.parse(is);
+            return XmlPools.parseDocument(is, namespaceaware);
         } catch (Exception e) {
             throw new RepositoryException(e);
         }
@@ -353,12 +334,9 @@ public final class DomUtils {
      * @throws TransformerException
      */
     public static void print(Document doc, OutputStream out) throws TransformerException {
-        TransformerFactory tFactory = TransformerFactory.newInstance();
-        Transformer transformer = tFactory.newTransformer();
-
         DOMSource source = new DOMSource(doc);
         StreamResult result = new StreamResult(out);
-        transformer.transform(source, result);
+        XmlPools.transform(source, result);
     }
 
     /**
@@ -369,12 +347,9 @@ public final class DomUtils {
      * @throws TransformerException
      */
     public static void print(Document doc, Writer out) throws TransformerException {
-        TransformerFactory tFactory = TransformerFactory.newInstance();
-        Transformer transformer = tFactory.newTransformer();
-
         DOMSource source = new DOMSource(doc);
         StreamResult result = new StreamResult(out);
-        transformer.transform(source, result);
+        XmlPools.transform(source, result);
     }
 
     /**
@@ -385,12 +360,9 @@ public final class DomUtils {
      * @throws TransformerException
      */
     public static void print(Element elm, OutputStream out) throws TransformerException {
-        TransformerFactory tFactory = TransformerFactory.newInstance();
-        Transformer transformer = tFactory.newTransformer();
-
         DOMSource source = new DOMSource(elm);
         StreamResult result = new StreamResult(out);
-        transformer.transform(source, result);
+        XmlPools.transform(source, result);
     }
 
     /**
@@ -401,12 +373,9 @@ public final class DomUtils {
      * @throws TransformerException
      */
     public static void print(Element elm, Writer out) throws TransformerException {
-        TransformerFactory tFactory = TransformerFactory.newInstance();
-        Transformer transformer = tFactory.newTransformer();
-
         DOMSource source = new DOMSource(elm);
         StreamResult result = new StreamResult(out);
-        transformer.transform(source, result);
+        XmlPools.transform(source, result);
     }
 
     /**
@@ -417,9 +386,7 @@ public final class DomUtils {
      * @throws ParserConfigurationException
      */
     public static Document crateDocument(String rootName) throws ParserConfigurationException {
-        DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder = builderFactory.newDocumentBuilder();
-        Document document = docBuilder.newDocument();
+        Document document = XmlPools.newDocument(false);
         Element rootElement = document.createElement(rootName);
         document.appendChild(rootElement);
         return document;
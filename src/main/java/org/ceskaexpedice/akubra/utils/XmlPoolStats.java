@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.utils;
+
+/**
+ * Snapshot of one {@link XmlPools} pool
+ * @param name pool name
+ * @param capacity maximum number of idle instances kept for reuse
+ * @param idle current number of idle instances
+ * @param created number of instances created so far
+ * @param acquired number of acquisitions
+ * @param reused number of acquisitions served by an idle instance
+ * @param discarded number of released instances dropped because the pool was full or the reset failed
+ */
+public record XmlPoolStats(
+        String name,
+        int capacity,
+        int idle,
+        long created,
+        long acquired,
+        long reused,
+        long discarded
+) {
+}
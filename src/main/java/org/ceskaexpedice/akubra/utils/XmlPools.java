@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.utils;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.RepositoryNamespaceContext;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared XML infrastructure; reuses SAX parsers, document builders, transformers and compiled XPath expressions.
+ * <p>
+ * Factories are looked up once. Instances are kept in small bounded pools instead of thread locals, so
+ * the pools work the same for platform and virtual threads. An instance is borrowed for one call only,
+ * reset afterwards and returned to the pool; when the pool is empty a new instance is created, when
+ * it is full the returned instance is dropped.
+ * </p>
+ * XPath expressions are compiled with {@link RepositoryNamespaceContext} and pooled per expression string.
+ *
+ * @author pavels, petrp
+ */
+public final class XmlPools {
+
+    private static final Logger LOGGER = Logger.getLogger(XmlPools.class.getName());
+
+    private static final int CAPACITY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MAX_XPATH_EXPRESSIONS = 256;
+
+    private static final SAXParserFactory SAX_FACTORY = saxParserFactory(false);
+    private static final SAXParserFactory NS_SAX_FACTORY = saxParserFactory(true);
+    private static final DocumentBuilderFactory DOCUMENT_FACTORY = documentBuilderFactory(false);
+    private static final DocumentBuilderFactory NS_DOCUMENT_FACTORY = documentBuilderFactory(true);
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+    private static final Pool<SAXParser> SAX_PARSERS = new Pool<>("saxParser", () -> newSaxParser(SAX_FACTORY), SAXParser::reset);
+    private static final Pool<SAXParser> NS_SAX_PARSERS = new Pool<>("saxParser-ns", () -> newSaxParser(NS_SAX_FACTORY), SAXParser::reset);
+    private static final Pool<DocumentBuilder> DOCUMENT_BUILDERS = new Pool<>("documentBuilder", () -> newDocumentBuilder(DOCUMENT_FACTORY), DocumentBuilder::reset);
+    private static final Pool<DocumentBuilder> NS_DOCUMENT_BUILDERS = new Pool<>("documentBuilder-ns", () -> newDocumentBuilder(NS_DOCUMENT_FACTORY), DocumentBuilder::reset);
+    private static final Pool<Transformer> TRANSFORMERS = new Pool<>("transformer", XmlPools::newTransformer, Transformer::reset);
+    private static final Map<String, Pool<XPathExpression>> XPATH_EXPRESSIONS = new ConcurrentHashMap<>();
+
+    private XmlPools() {}
+
+    /**
+     * Parses the stream with a pooled SAX parser
+     *
+     * @param is             Input stream, not closed
+     * @param handler        SAX handler
+     * @param namespaceAware namespace aware flag
+     * @throws SAXException  parse error or an early termination signalled by the handler
+     * @throws IOException   read error
+     */
+    public static void parse(InputStream is, DefaultHandler handler, boolean namespaceAware) throws SAXException, IOException {
+        Pool<SAXParser> pool = namespaceAware ? NS_SAX_PARSERS : SAX_PARSERS;
+        SAXParser parser = pool.acquire();
+        try {
+            parser.parse(is, handler);
+        } finally {
+            pool.release(parser);
+        }
+    }
+
+    /**
+     * Parses a DOM document with a pooled document builder
+     *
+     * @param source         Input source
+     * @param namespaceAware namespace aware flag
+     * @return DOM
+     * @throws SAXException  parse error
+     * @throws IOException   read error
+     */
+    public static Document parseDocument(InputSource source, boolean namespaceAware) throws SAXException, IOException {
+        Pool<DocumentBuilder> pool = namespaceAware ? NS_DOCUMENT_BUILDERS : DOCUMENT_BUILDERS;
+        DocumentBuilder builder = pool.acquire();
+        try {
+            return builder.parse(source);
+        } finally {
+            pool.release(builder);
+        }
+    }
+
+    /**
+     * Parses a DOM document with a pooled document builder
+     *
+     * @param is             Input stream, not closed
+     * @param namespaceAware namespace aware flag
+     * @return DOM
+     * @throws SAXException  parse error
+     * @throws IOException   read error
+     */
+    public static Document parseDocument(InputStream is, boolean namespaceAware) throws SAXException, IOException {
+        return parseDocument(new InputSource(is), namespaceAware);
+    }
+
+    /**
+     * Creates new empty document
+     *
+     * @param namespaceAware namespace aware flag
+     * @return empty DOM
+     */
+    public static Document newDocument(boolean namespaceAware) {
+        Pool<DocumentBuilder> pool = namespaceAware ? NS_DOCUMENT_BUILDERS : DOCUMENT_BUILDERS;
+        DocumentBuilder builder = pool.acquire();
+        try {
+            return builder.newDocument();
+        } finally {
+            pool.release(builder);
+        }
+    }
+
+    /**
+     * Identity transformation with a pooled transformer
+     *
+     * @param source Source
+     * @param result Result
+     * @throws TransformerException transformation error
+     */
+    public static void transform(Source source, Result result) throws TransformerException {
+        Transformer transformer = TRANSFORMERS.acquire();
+        try {
+            transformer.transform(source, result);
+        } finally {
+            TRANSFORMERS.release(transformer);
+        }
+    }
+
+    /**
+     * Evaluates the XPath expression; prefixes are resolved by {@link RepositoryNamespaceContext}
+     *
+     * @param expression XPath expression
+     * @param item       Context node
+     * @param returnType One of {@link javax.xml.xpath.XPathConstants}
+     * @return Result of evaluation
+     * @throws XPathExpressionException invalid expression or evaluation error
+     */
+    public static Object evaluate(String expression, Object item, QName returnType) throws XPathExpressionException {
+        Pool<XPathExpression> pool = XPATH_EXPRESSIONS.get(expression);
+        if (pool == null) {
+            XPathExpression compiled = compile(expression);
+            if (XPATH_EXPRESSIONS.size() >= MAX_XPATH_EXPRESSIONS) {
+                // ad hoc expressions are not worth keeping
+                return compiled.evaluate(item, returnType);
+            }
+            pool = XPATH_EXPRESSIONS.computeIfAbsent(expression, e -> new Pool<>("xpath:" + e, () -> compileUnchecked(e), null));
+            pool.add(compiled);
+        }
+        XPathExpression compiled = pool.acquire();
+        try {
+            return compiled.evaluate(item, returnType);
+        } finally {
+            pool.release(compiled);
+        }
+    }
+
+    /**
+     * Returns statistics of all pools
+     *
+     * @return Pool statistics
+     */
+    public static List<XmlPoolStats> getStats() {
+        List<XmlPoolStats> stats = new ArrayList<>();
+        for (Pool<?> pool : List.of(SAX_PARSERS, NS_SAX_PARSERS, DOCUMENT_BUILDERS, NS_DOCUMENT_BUILDERS, TRANSFORMERS)) {
+            stats.add(pool.getStats());
+        }
+        for (Pool<XPathExpression> pool : XPATH_EXPRESSIONS.values()) {
+            stats.add(pool.getStats());
+        }
+        return stats;
+    }
+
+    private static SAXParserFactory saxParserFactory(boolean namespaceAware) {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(namespaceAware);
+        return factory;
+    }
+
+    private static DocumentBuilderFactory documentBuilderFactory(boolean namespaceAware) {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(namespaceAware);
+        LOGGER.log(Level.FINE, "builder factory instance :" + factory.getClass().getResource(factory.getClass().getSimpleName() + ".class"));
+        return factory;
+    }
+
+    // factories are not guaranteed to be thread safe, creation is rare so it is simply serialized
+
+    private static SAXParser newSaxParser(SAXParserFactory factory) {
+        synchronized (factory) {
+            try {
+                return factory.newSAXParser();
+            } catch (ParserConfigurationException | SAXException e) {
+                throw new RepositoryException(e);
+            }
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder(DocumentBuilderFactory factory) {
+        synchronized (factory) {
+            try {
+                return factory.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new RepositoryException(e);
+            }
+        }
+    }
+
+    private static Transformer newTransformer() {
+        synchronized (TRANSFORMER_FACTORY) {
+            try {
+                return TRANSFORMER_FACTORY.newTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw new RepositoryException(e);
+            }
+        }
+    }
+
+    private static XPathExpression compile(String expression) throws XPathExpressionException {
+        XPath xpath;
+        synchronized (XPATH_FACTORY) {
+            xpath = XPATH_FACTORY.newXPath();
+        }
+        xpath.setNamespaceContext(new RepositoryNamespaceContext());
+        return xpath.compile(expression);
+    }
+
+    private static XPathExpression compileUnchecked(String expression) {
+        try {
+            return compile(expression);
+        } catch (XPathExpressionException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    private interface Resetter<T> {
+        void reset(T instance);
+    }
+
+    private interface Creator<T> {
+        T create();
+    }
+
+    private static final class Pool<T> {
+        private final String name;
+        private final Creator<T> creator;
+        private final Resetter<T> resetter;
+        private final ArrayBlockingQueue<T> idle = new ArrayBlockingQueue<>(CAPACITY);
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong reused = new AtomicLong();
+        private final AtomicLong discarded = new AtomicLong();
+
+        private Pool(String name, Creator<T> creator, Resetter<T> resetter) {
+            this.name = name;
+            this.creator = creator;
+            this.resetter = resetter;
+        }
+
+        private T acquire() {
+            acquired.incrementAndGet();
+            T instance = idle.poll();
+            if (instance != null) {
+                reused.incrementAndGet();
+                return instance;
+            }
+            created.incrementAndGet();
+            return creator.create();
+        }
+
+        private void add(T instance) {
+            created.incrementAndGet();
+            if (!idle.offer(instance)) {
+                discarded.incrementAndGet();
+            }
+        }
+
+        private void release(T instance) {
+            try {
+                if (resetter != null) {
+                    resetter.reset(instance);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Cannot reset pooled " + name + ", dropping it", e);
+                discarded.incrementAndGet();
+                return;
+            }
+            if (!idle.offer(instance)) {
+                discarded.incrementAndGet();
+            }
+        }
+
+        private XmlPoolStats getStats() {
+            return new XmlPoolStats(name, CAPACITY, idle.size(), created.get(), acquired.get(), reused.get(), discarded.get());
+        }
+    }
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.fedoramodel;
+
+import org.ceskaexpedice.akubra.utils.XmlPools;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hand-written StAX reader and writer for {@link DigitalObject}, an alternative to the JAXB binding of this package.
+ * <p>
+ * It produces the same object tree as the JAXB unmarshaller and the same XML infoset as the JAXB marshaller:
+ * FOXML elements in the default namespace, attributes written only when set, <code>xmlContent</code> children as
+ * detached DOM elements carrying their in-scope namespace declarations, <code>binaryContent</code> as base64.
+ * Unknown elements are skipped like JAXB does. Instances are stateless and thread safe.
+ * </p>
+ * Not generated; lives in this package to see whether optional attributes are set or just defaulted by getters.
+ */
+public final class FoxmlStaxBinder {
+
+    public static final String FOXML_NAMESPACE_URI = "info:fedora/fedora-system:def/foxml#";
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final DatatypeFactory DATATYPE_FACTORY = createDatatypeFactory();
+
+    private FoxmlStaxBinder() {}
+
+    /**
+     * Reads a FOXML document.
+     *
+     * @param foxml FOXML stream, not closed
+     * @return The digital object.
+     * @throws XMLStreamException Malformed document or a document that is not FOXML.
+     */
+    public static DigitalObject read(InputStream foxml) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(foxml);
+        try {
+            Deque<Map<String, String>> namespaces = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if (!"digitalObject".equals(reader.getLocalName()) || !FOXML_NAMESPACE_URI.equals(reader.getNamespaceURI())) {
+                        throw new XMLStreamException("Unexpected root element " + reader.getName(), reader.getLocation());
+                    }
+                    return readDigitalObject(reader, namespaces);
+                }
+            }
+            throw new XMLStreamException("Missing root element");
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes a FOXML document.
+     *
+     * @param object The digital object.
+     * @param out Target stream, flushed but not closed
+     * @throws XMLStreamException Write error.
+     */
+    public static void write(DigitalObject object, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+        try {
+            // StAX cannot declare standalone, the header is written as raw text to match the JAXB output
+            writer.writeDTD(XML_DECLARATION);
+            writeDigitalObject(writer, object);
+            writer.writeEndDocument();
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    // reading
+
+    private static DigitalObject readDigitalObject(XMLStreamReader reader, Deque<Map<String, String>> namespaces) throws XMLStreamException {
+        pushNamespaces(reader, namespaces);
+        DigitalObject object = new DigitalObject();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String ns = reader.getAttributeNamespace(i);
+            String name = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i);
+            if (ns == null || ns.isEmpty()) {
+                switch (name) {
+                    case "VERSION":
+                        object.version = value;
+                        continue;
+                    case "PID":
+                        object.pid = value;
+                        continue;
+                    case "FEDORA_URI":
+                        object.fedorauri = value;
+                        continue;
+                    default:
+                }
+            }
+            object.getOtherAttributes().put(reader.getAttributeName(i), value);
+        }
+        while (nextChild(reader)) {
+            if (isFoxml(reader, "objectProperties")) {
+                object.objectProperties = readObjectProperties(reader);
+            } else if (isFoxml(reader, "datastream")) {
+                object.getDatastream().add(readDatastream(reader, namespaces));
+            } else {
+                skipElement(reader);
+            }
+        }
+        namespaces.pop();
+        return object;
+    }
+
+    private static ObjectPropertiesType readObjectProperties(XMLStreamReader reader) throws XMLStreamException {
+        ObjectPropertiesType properties = new ObjectPropertiesType();
+        while (nextChild(reader)) {
+            if (isFoxml(reader, "property")) {
+                PropertyType property = new PropertyType();
+                property.name = reader.getAttributeValue(null, "NAME");
+                property.value = reader.getAttributeValue(null, "VALUE");
+                properties.getProperty().add(property);
+            } else if (isFoxml(reader, "extproperty")) {
+                ExtpropertyType property = new ExtpropertyType();
+                property.name = reader.getAttributeValue(null, "NAME");
+                property.value = reader.getAttributeValue(null, "VALUE");
+                properties.getExtproperty().add(property);
+            }
+            skipElement(reader);
+        }
+        return properties;
+    }
+
+    private static DatastreamType readDatastream(XMLStreamReader reader, Deque<Map<String, String>> namespaces) throws XMLStreamException {
+        pushNamespaces(reader, namespaces);
+        DatastreamType datastream = new DatastreamType();
+        datastream.id = collapse(reader.getAttributeValue(null, "ID"));
+        datastream.controlgroup = reader.getAttributeValue(null, "CONTROL_GROUP");
+        datastream.fedorauri = reader.getAttributeValue(null, "FEDORA_URI");
+        String state = reader.getAttributeValue(null, "STATE");
+        if (state != null) {
+            datastream.state = StateType.fromValue(state.trim());
+        }
+        datastream.versionable = parseBoolean(reader.getAttributeValue(null, "VERSIONABLE"));
+        while (nextChild(reader)) {
+            if (isFoxml(reader, "datastreamVersion")) {
+                datastream.getDatastreamVersion().add(readDatastreamVersion(reader, namespaces));
+            } else {
+                skipElement(reader);
+            }
+        }
+        namespaces.pop();
+        return datastream;
+    }
+
+    private static DatastreamVersionType readDatastreamVersion(XMLStreamReader reader, Deque<Map<String, String>> namespaces) throws XMLStreamException {
+        pushNamespaces(reader, namespaces);
+        DatastreamVersionType version = new DatastreamVersionType();
+        version.id = collapse(reader.getAttributeValue(null, "ID"));
+        version.label = reader.getAttributeValue(null, "LABEL");
+        String created = reader.getAttributeValue(null, "CREATED");
+        if (created != null) {
+            version.created = DATATYPE_FACTORY.newXMLGregorianCalendar(created.trim());
+        }
+        version.mimetype = reader.getAttributeValue(null, "MIMETYPE");
+        String altIds = reader.getAttributeValue(null, "ALT_IDS");
+        if (altIds != null) {
+            for (String altId : altIds.trim().split("\\s+")) {
+                if (!altId.isEmpty()) {
+                    version.getALTIDS().add(altId);
+                }
+            }
+        }
+        version.formaturi = reader.getAttributeValue(null, "FORMAT_URI");
+        String size = reader.getAttributeValue(null, "SIZE");
+        if (size != null) {
+            version.size = Long.valueOf(size.trim());
+        }
+        while (nextChild(reader)) {
+            if (isFoxml(reader, "contentDigest")) {
+                ContentDigestType digest = new ContentDigestType();
+                digest.type = reader.getAttributeValue(null, "TYPE");
+                digest.digest = reader.getAttributeValue(null, "DIGEST");
+                version.contentDigest = digest;
+                skipElement(reader);
+            } else if (isFoxml(reader, "contentLocation")) {
+                ContentLocationType location = new ContentLocationType();
+                location.type = reader.getAttributeValue(null, "TYPE");
+                location.ref = reader.getAttributeValue(null, "REF");
+                version.contentLocation = location;
+                skipElement(reader);
+            } else if (isFoxml(reader, "binaryContent")) {
+                version.binaryContent = Base64.getMimeDecoder().decode(reader.getElementText());
+            } else if (isFoxml(reader, "xmlContent")) {
+                version.xmlContent = readXmlContent(reader, namespaces);
+            } else {
+                skipElement(reader);
+            }
+        }
+        namespaces.pop();
+        return version;
+    }
+
+    private static XmlContentType readXmlContent(XMLStreamReader reader, Deque<Map<String, String>> namespaces) throws XMLStreamException {
+        pushNamespaces(reader, namespaces);
+        XmlContentType content = new XmlContentType();
+        while (nextChild(reader)) {
+            Document document = XmlPools.newDocument(true);
+            Element element = readElement(reader, document);
+            // detached elements keep the namespaces they inherited from FOXML, like JAXB does
+            for (Map<String, String> scope : namespaces) {
+                for (Map.Entry<String, String> binding : scope.entrySet()) {
+                    String attributeName = binding.getKey().isEmpty() ? "xmlns" : "xmlns:" + binding.getKey();
+                    if (!element.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, binding.getKey().isEmpty() ? "xmlns" : binding.getKey())) {
+                        element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attributeName, binding.getValue());
+                    }
+                }
+            }
+            document.appendChild(element);
+            content.getAny().add(element);
+        }
+        namespaces.pop();
+        return content;
+    }
+
+    private static Element readElement(XMLStreamReader reader, Document document) throws XMLStreamException {
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()), qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, uri == null ? "" : uri);
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+                    qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+        }
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    element.appendChild(readElement(reader, document));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    element.appendChild(document.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    element.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return element;
+                default:
+            }
+        }
+        throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     * @return false when the end of the current element is reached
+     */
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static boolean isFoxml(XMLStreamReader reader, String localName) {
+        return localName.equals(reader.getLocalName()) && FOXML_NAMESPACE_URI.equals(reader.getNamespaceURI());
+    }
+
+    private static void pushNamespaces(XMLStreamReader reader, Deque<Map<String, String>> namespaces) {
+        Map<String, String> scope = new LinkedHashMap<>();
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            scope.put(prefix == null ? "" : prefix, uri == null ? "" : uri);
+        }
+        // inner declarations win, they are visited first when iterating the deque
+        namespaces.push(scope);
+    }
+
+    // writing
+
+    private static void writeDigitalObject(XMLStreamWriter writer, DigitalObject object) throws XMLStreamException {
+        writer.setDefaultNamespace(FOXML_NAMESPACE_URI);
+        writer.writeStartElement(FOXML_NAMESPACE_URI, "digitalObject");
+        writer.writeDefaultNamespace(FOXML_NAMESPACE_URI);
+        Map<String, String> declared = new HashMap<>();
+        for (QName name : object.getOtherAttributes().keySet()) {
+            String ns = name.getNamespaceURI();
+            if (!ns.isEmpty() && !declared.containsValue(ns)) {
+                String prefix = name.getPrefix().isEmpty() || declared.containsKey(name.getPrefix()) ? "ns" + (declared.size() + 1) : name.getPrefix();
+                declared.put(prefix, ns);
+                writer.setPrefix(prefix, ns);
+                writer.writeNamespace(prefix, ns);
+            }
+        }
+        writeAttribute(writer, "VERSION", object.version);
+        writeAttribute(writer, "PID", object.pid);
+        writeAttribute(writer, "FEDORA_URI", object.fedorauri);
+        for (Map.Entry<QName, String> attribute : object.getOtherAttributes().entrySet()) {
+            QName name = attribute.getKey();
+            if (name.getNamespaceURI().isEmpty()) {
+                writer.writeAttribute(name.getLocalPart(), attribute.getValue());
+            } else {
+                writer.writeAttribute(writer.getPrefix(name.getNamespaceURI()), name.getNamespaceURI(), name.getLocalPart(), attribute.getValue());
+            }
+        }
+        if (object.objectProperties != null) {
+            writer.writeStartElement(FOXML_NAMESPACE_URI, "objectProperties");
+            if (object.objectProperties.property != null) {
+                for (PropertyType property : object.objectProperties.property) {
+                    writer.writeEmptyElement(FOXML_NAMESPACE_URI, "property");
+                    writeAttribute(writer, "NAME", property.name);
+                    writeAttribute(writer, "VALUE", property.value);
+                }
+            }
+            if (object.objectProperties.extproperty != null) {
+                for (ExtpropertyType property : object.objectProperties.extproperty) {
+                    writer.writeEmptyElement(FOXML_NAMESPACE_URI, "extproperty");
+                    writeAttribute(writer, "NAME", property.name);
+                    writeAttribute(writer, "VALUE", property.value);
+                }
+            }
+            writer.writeEndElement();
+        }
+        if (object.datastream != null) {
+            for (DatastreamType datastream : object.datastream) {
+                writeDatastream(writer, datastream);
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeDatastream(XMLStreamWriter writer, DatastreamType datastream) throws XMLStreamException {
+        writer.writeStartElement(FOXML_NAMESPACE_URI, "datastream");
+        writeAttribute(writer, "ID", datastream.id);
+        writeAttribute(writer, "CONTROL_GROUP", datastream.controlgroup);
+        writeAttribute(writer, "FEDORA_URI", datastream.fedorauri);
+        writeAttribute(writer, "STATE", datastream.state != null ? datastream.state.value() : null);
+        writeAttribute(writer, "VERSIONABLE", datastream.versionable != null ? datastream.versionable.toString() : null);
+        if (datastream.datastreamVersion != null) {
+            for (DatastreamVersionType version : datastream.datastreamVersion) {
+                writeDatastreamVersion(writer, version);
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeDatastreamVersion(XMLStreamWriter writer, DatastreamVersionType version) throws XMLStreamException {
+        writer.writeStartElement(FOXML_NAMESPACE_URI, "datastreamVersion");
+        writeAttribute(writer, "ID", version.id);
+        writeAttribute(writer, "LABEL", version.label);
+        writeAttribute(writer, "CREATED", version.created != null ? version.created.toXMLFormat() : null);
+        writeAttribute(writer, "MIMETYPE", version.mimetype);
+        if (version.altids != null && !version.altids.isEmpty()) {
+            writeAttribute(writer, "ALT_IDS", String.join(" ", version.altids));
+        }
+        writeAttribute(writer, "FORMAT_URI", version.formaturi);
+        writeAttribute(writer, "SIZE", version.size != null ? version.size.toString() : null);
+        if (version.contentDigest != null) {
+            writer.writeEmptyElement(FOXML_NAMESPACE_URI, "contentDigest");
+            writeAttribute(writer, "TYPE", version.contentDigest.type);
+            writeAttribute(writer, "DIGEST", version.contentDigest.digest);
+        }
+        if (version.xmlContent != null) {
+            writer.writeStartElement(FOXML_NAMESPACE_URI, "xmlContent");
+            if (version.xmlContent.any != null) {
+                for (Element element : version.xmlContent.any) {
+                    writeElement(writer, element);
+                }
+            }
+            writer.writeEndElement();
+        }
+        if (version.contentLocation != null) {
+            writer.writeEmptyElement(FOXML_NAMESPACE_URI, "contentLocation");
+            writeAttribute(writer, "TYPE", version.contentLocation.type);
+            writeAttribute(writer, "REF", version.contentLocation.ref);
+        }
+        if (version.binaryContent != null) {
+            writer.writeStartElement(FOXML_NAMESPACE_URI, "binaryContent");
+            writer.writeCharacters(Base64.getEncoder().encodeToString(version.binaryContent));
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, Element element) throws XMLStreamException {
+        String prefix = element.getPrefix() != null ? element.getPrefix() : "";
+        String ns = element.getNamespaceURI() != null ? element.getNamespaceURI() : "";
+        String localName = element.getLocalName() != null ? element.getLocalName() : element.getNodeName();
+        writer.writeStartElement(prefix, localName, ns);
+        // own declarations first, then whatever the element and its attributes need but is not bound yet
+        Map<String, String> declarations = new LinkedHashMap<>();
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                String declaredPrefix = "xmlns".equals(attribute.getName()) ? "" : attribute.getLocalName();
+                declarations.put(declaredPrefix, attribute.getValue());
+            }
+        }
+        if (!declarations.containsKey(prefix) && !ns.equals(boundUri(writer, prefix))) {
+            declarations.put(prefix, ns);
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String attributeNs = attribute.getNamespaceURI();
+            if (attributeNs != null && !XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNs) && !XMLConstants.XML_NS_URI.equals(attributeNs)) {
+                String attributePrefix = attribute.getPrefix() != null ? attribute.getPrefix() : "";
+                if (!declarations.containsKey(attributePrefix) && !attributeNs.equals(boundUri(writer, attributePrefix))) {
+                    declarations.put(attributePrefix, attributeNs);
+                }
+            }
+        }
+        for (Map.Entry<String, String> declaration : declarations.entrySet()) {
+            if (declaration.getKey().isEmpty()) {
+                writer.setDefaultNamespace(declaration.getValue());
+                writer.writeDefaultNamespace(declaration.getValue());
+            } else {
+                writer.setPrefix(declaration.getKey(), declaration.getValue());
+                writer.writeNamespace(declaration.getKey(), declaration.getValue());
+            }
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String attributeNs = attribute.getNamespaceURI();
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNs)) {
+                continue;
+            }
+            if (attributeNs == null) {
+                writer.writeAttribute(attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName(), attribute.getValue());
+            } else {
+                writer.writeAttribute(attribute.getPrefix() != null ? attribute.getPrefix() : "", attributeNs, attribute.getLocalName(), attribute.getValue());
+            }
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    writeElement(writer, (Element) child);
+                    break;
+                case Node.TEXT_NODE:
+                    writer.writeCharacters(child.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    writer.writeCData(child.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    writer.writeComment(child.getNodeValue());
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    writer.writeProcessingInstruction(child.getNodeName(), child.getNodeValue());
+                    break;
+                default:
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    private static String boundUri(XMLStreamWriter writer, String prefix) {
+        String uri = writer.getNamespaceContext().getNamespaceURI(prefix);
+        return uri != null ? uri : "";
+    }
+
+    private static void writeAttribute(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        if (value != null) {
+            writer.writeAttribute(name, value);
+        }
+    }
+
+    // helpers
+
+    private static Boolean parseBoolean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return "true".equals(trimmed) || "1".equals(trimmed);
+    }
+
+    /**
+     * Same as the CollapsedStringAdapter used by JAXB for ID attributes
+     */
+    private static String collapse(String value) {
+        if (value == null) {
+            return null;
+        }
+        return value.trim().replaceAll("[ \\t\\r\\n]+", " ");
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static DatatypeFactory createDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
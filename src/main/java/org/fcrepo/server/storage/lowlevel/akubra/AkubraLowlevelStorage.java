@@ -43,6 +43,14 @@ public class AkubraLowlevelStorage
     private static final Logger logger =
             LoggerFactory.getLogger(AkubraLowlevelStorage.class);
 
+    /**
+     * Produces blob content by writing it directly to the blob output stream.
+     * The stream is closed by the storage after the writer returns.
+     */
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
     private final BlobStore objectStore;
 
     private final BlobStore datastreamStore;
@@ -94,7 +102,7 @@ public class AkubraLowlevelStorage
 
     public long addDatastream(String dsKey, InputStream content, Map<String, String> hints)
             throws LowlevelStorageException {
-        return add(datastreamStore, dsKey, content, hints);
+        return add(datastreamStore, dsKey, copying(content), hints);
     }
 
     public long addDatastream(String pid, InputStream content) throws LowlevelStorageException {
@@ -103,7 +111,16 @@ public class AkubraLowlevelStorage
 
     public void addObject(String objectKey, InputStream content, Map<String, String> hints)
             throws LowlevelStorageException {
-        add(objectStore, objectKey, content, hints);
+        add(objectStore, objectKey, copying(content), hints);
+    }
+
+    /**
+     * Adds an object whose serialization is written straight into the new blob.
+     * A blob left incomplete by a failing writer is removed.
+     */
+    public void addObject(String objectKey, ContentWriter writer, Map<String, String> hints)
+            throws LowlevelStorageException {
+        add(objectStore, objectKey, writer, hints);
     }
 
     public void addObject(String pid, InputStream content) throws LowlevelStorageException {
@@ -144,7 +161,7 @@ public class AkubraLowlevelStorage
 
     public long replaceDatastream(String dsKey, InputStream content, Map<String, String> hints)
             throws LowlevelStorageException {
-        return replace(datastreamStore, dsKey, content, forceSafeDatastreamOverwrites, hints);
+        return replace(datastreamStore, dsKey, copying(content), forceSafeDatastreamOverwrites, hints);
     }
     
     public long replaceDatastream(String pid, InputStream content) throws LowlevelStorageException {
@@ -153,8 +170,18 @@ public class AkubraLowlevelStorage
 
     public void replaceObject(String objectKey, InputStream content, Map<String, String> hints)
             throws LowlevelStorageException {
-        replace(objectStore, objectKey, content, forceSafeObjectOverwrites, hints);
+        replace(objectStore, objectKey, copying(content), forceSafeObjectOverwrites, hints);
     }
+
+    /**
+     * Replaces an object whose serialization is written straight into the blob.
+     * With safe overwrites the original content survives a failing writer.
+     */
+    public void replaceObject(String objectKey, ContentWriter writer, Map<String, String> hints)
+            throws LowlevelStorageException {
+        replace(objectStore, objectKey, writer, forceSafeObjectOverwrites, hints);
+    }
+
     public void replaceObject(String pid, InputStream content) throws LowlevelStorageException {
         this.replaceObject(pid, content, null);
     }
@@ -212,7 +239,7 @@ public class AkubraLowlevelStorage
 
     private static long add(BlobStore store,
                             String key,
-                            InputStream content, Map<String, String> hints)
+                            ContentWriter writer, Map<String, String> hints)
             throws ObjectAlreadyInLowlevelStorageException {
         BlobStoreConnection connection = null;
         try {
@@ -220,7 +247,19 @@ public class AkubraLowlevelStorage
             connection = getConnection(store, hints);
             Blob blob = getBlob(connection, blobId, hints);
             OutputStream out = openOutputStream(blob, -1, false);
-            copy(content, out);
+            boolean written = false;
+            try {
+                write(writer, out);
+                written = true;
+            } finally {
+                if (!written) {
+                    try {
+                        delete(blob);
+                    } catch (Throwable th) {
+                        logger.error("Failed to delete incomplete blob " + blob.getId(), th);
+                    }
+                }
+            }
             try {
                 return blob.getSize();
             } catch (MissingBlobException e) { // should never happen
@@ -265,7 +304,7 @@ public class AkubraLowlevelStorage
 
     private static long replace(BlobStore store,
                                 String key,
-                                InputStream content,
+                                ContentWriter writer,
                                 boolean forceSafeOverwrite,
                                 Map<String, String> hints)
             throws LowlevelStorageException {
@@ -276,11 +315,11 @@ public class AkubraLowlevelStorage
             Blob blob = getBlob(connection, blobId, null);
             if (exists(blob)) {
                 if (forceSafeOverwrite) {
-                    safeOverwrite(blob, content);
+                    safeOverwrite(blob, writer);
                 } else {
                     // leave it to the store impl to ensure atomicity
                     OutputStream out = openOutputStream(blob, -1, true);
-                    copy(content, out);
+                    write(writer, out);
                 }
             } else {
                 throw new ObjectNotInLowlevelStorageException("Object not found in low-level storage: " + key);
@@ -319,7 +358,7 @@ public class AkubraLowlevelStorage
      * original content is not destroyed until the replacement is successfully
      * put in its place.
      */
-    private static void safeOverwrite(Blob origBlob, InputStream content) {
+    private static void safeOverwrite(Blob origBlob, ContentWriter writer) {
         BlobStoreConnection connection = origBlob.getConnection();
         String origId = origBlob.getId().toString();
 
@@ -327,9 +366,19 @@ public class AkubraLowlevelStorage
         Blob newBlob = null;
         try {
             newBlob = connection.getBlob(new URI(origId + "/new"), null);
-            copy(content, newBlob.openOutputStream(-1, false));
+            write(writer, newBlob.openOutputStream(-1, false));
         } catch (Throwable th) {
             // any error or exception here is an unrecoverable fault
+            if (newBlob != null) {
+                try {
+                    if (newBlob.exists()) {
+                        newBlob.delete();
+                    }
+                } catch (Throwable deleteTh) {
+                    logger.error("Failed to delete " + newBlob.getId() + " after failed write"
+                            + " during safe overwrite", deleteTh);
+                }
+            }
             throw new FaultException(th);
         }
 
@@ -548,14 +597,23 @@ public class AkubraLowlevelStorage
         }
     }
 
-    private static long copy(InputStream source, OutputStream sink) {
+    private static ContentWriter copying(InputStream source) {
+        return out -> {
+            try {
+                IOUtils.copyLarge(source, out);
+            } finally {
+                IOUtils.closeQuietly(source);
+            }
+        };
+    }
+
+    private static void write(ContentWriter writer, OutputStream sink) {
         try {
-            return IOUtils.copyLarge(source, sink);
+            writer.write(sink);
         } catch (IOException e) {
             logger.error(e.toString(),e);
-            throw new FaultException("System error copying stream", e);
+            throw new FaultException("System error writing stream", e);
         } finally {
-            IOUtils.closeQuietly(source);
             IOUtils.closeQuietly(sink);
         }
     }
@@ -23,6 +23,7 @@ import org.ceskaexpedice.akubra.core.processingindex.ProcessingIndexSolr;
 import org.ceskaexpedice.akubra.core.repository.CoreRepository;
 import org.ceskaexpedice.akubra.core.repository.impl.CoreRepositoryImpl;
 import org.ceskaexpedice.akubra.utils.Dom4jUtils;
+import org.ceskaexpedice.fedoramodel.DatastreamVersionType;
 import org.ceskaexpedice.fedoramodel.DigitalObject;
 import org.ceskaexpedice.hazelcast.HazelcastConfiguration;
 import org.ceskaexpedice.hazelcast.HazelcastServerNode;
@@ -31,6 +32,7 @@ import org.ceskaexpedice.testutils.IntegrationTestsUtils;
 import org.dom4j.Document;
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -38,7 +40,7 @@ import java.nio.file.Path;
 import java.util.Properties;
 
 import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
 
 public class DatastreamWriteTest {
     private static Properties testsProperties;
@@ -105,6 +107,13 @@ public class DatastreamWriteTest {
         Assertions.assertTrue(datastreamExists);
 
         DigitalObject digitalObject = akubraRepository.get(PID_MONOGRAPH).asDigitalObject();
+        DatastreamVersionType version = digitalObject.getDatastream().stream()
+                .filter(datastream -> "pepo".equals(datastream.getID())).findFirst().get().getDatastreamVersion().get(0);
+        Assertions.assertNull(version.getBinaryContent());
+        Assertions.assertEquals("INTERNAL_ID", version.getContentLocation().getTYPE());
+        Assertions.assertEquals(Files.size(importFile), version.getSIZE());
+        Assertions.assertEquals("MD5", version.getContentDigest().getTYPE());
+        Assertions.assertArrayEquals(Files.readAllBytes(importFile), akubraRepository.getDatastreamContent(PID_MONOGRAPH, "pepo").asInputStream().readAllBytes());
         Document document = Dom4jUtils.streamToDocument(akubraRepository.marshall(digitalObject), true);
         IntegrationTestsUtils.debugPrint(document.asXML(),testsProperties);
     }
@@ -128,9 +137,72 @@ public class DatastreamWriteTest {
         boolean datastreamExists = akubraRepository.datastreamExists(PID_MONOGRAPH, KnownDatastreams.RELS_EXT);
         Assertions.assertTrue(datastreamExists);
 
+        reset(mockFeeder);
         akubraRepository.deleteDatastream(PID_MONOGRAPH, KnownDatastreams.RELS_EXT);
         datastreamExists = akubraRepository.datastreamExists(PID_MONOGRAPH, KnownDatastreams.RELS_EXT);
         Assertions.assertFalse(datastreamExists);
+        // relations of the removed RELS-EXT are deleted by id
+        verify(mockFeeder, times(1)).updateRelations(eq(PID_MONOGRAPH), notNull());
+        verify(mockFeeder, never()).deleteByRelationsForPid(any());
+    }
+
+    @Test
+    void testUpdateDatastreams() throws IOException {
+        Assertions.assertTrue(akubraRepository.datastreamExists(PID_MONOGRAPH, KnownDatastreams.RELS_EXT));
+        Path xmlFile = Path.of("src/test/resources/xmlStream.xml");
+        Path imageFile = Path.of("src/test/resources/thumbnail.jpg");
+        try (InputStream xml = Files.newInputStream(xmlFile); InputStream image = Files.newInputStream(imageFile)) {
+            akubraRepository.updateDatastreams(PID_MONOGRAPH, batch -> batch
+                    .createXMLDatastream("pepo", "text/xml", xml)
+                    .createManagedDatastream("pepoImage", "image/jpeg", image)
+                    .deleteDatastream(KnownDatastreams.RELS_EXT));
+        }
+        Assertions.assertTrue(akubraRepository.datastreamExists(PID_MONOGRAPH, "pepo"));
+        Assertions.assertTrue(akubraRepository.datastreamExists(PID_MONOGRAPH, "pepoImage"));
+        Assertions.assertFalse(akubraRepository.datastreamExists(PID_MONOGRAPH, KnownDatastreams.RELS_EXT));
+        Assertions.assertArrayEquals(Files.readAllBytes(imageFile), akubraRepository.getDatastreamContent(PID_MONOGRAPH, "pepoImage").asInputStream().readAllBytes());
+
+        // replacing managed content keeps the new content
+        try (InputStream image = Files.newInputStream(imageFile)) {
+            akubraRepository.updateManagedDatastream(PID_MONOGRAPH, "pepoImage", "image/jpeg", image);
+        }
+        Assertions.assertArrayEquals(Files.readAllBytes(imageFile), akubraRepository.getDatastreamContent(PID_MONOGRAPH, "pepoImage").asInputStream().readAllBytes());
+    }
+
+    @Test
+    void testFailedUpdateDatastreamsKeepsContent() throws IOException {
+        Path imageFile = Path.of("src/test/resources/thumbnail.jpg");
+        try (InputStream image = Files.newInputStream(imageFile)) {
+            akubraRepository.createManagedDatastream(PID_MONOGRAPH, "pepoImage", "image/jpeg", image);
+        }
+        DatastreamVersionType stored = managedVersion("pepoImage");
+
+        byte[] replacement = "replacement".getBytes();
+        Assertions.assertThrows(RepositoryException.class, () -> akubraRepository.updateDatastreams(PID_MONOGRAPH, batch -> batch
+                .createManagedDatastream("pepoImage", "image/jpeg", new ByteArrayInputStream(replacement))
+                .createManagedDatastream("pepoNew", "image/jpeg", new ByteArrayInputStream(replacement))
+                .createXMLDatastream("pepo", "text/xml", new ByteArrayInputStream("<not-xml".getBytes()))));
+
+        // the stored object and its content are unchanged
+        DatastreamVersionType current = managedVersion("pepoImage");
+        Assertions.assertEquals(stored.getContentLocation().getREF(), current.getContentLocation().getREF());
+        Assertions.assertEquals(stored.getSIZE(), current.getSIZE());
+        Assertions.assertArrayEquals(Files.readAllBytes(imageFile), akubraRepository.getDatastreamContent(PID_MONOGRAPH, "pepoImage").asInputStream().readAllBytes());
+        Assertions.assertFalse(akubraRepository.datastreamExists(PID_MONOGRAPH, "pepoNew"));
+
+        // a successful replacement is stored under a new location and the old content is removed
+        akubraRepository.updateDatastreams(PID_MONOGRAPH, batch -> batch
+                .createManagedDatastream("pepoImage", "image/jpeg", new ByteArrayInputStream(replacement)));
+        DatastreamVersionType replaced = managedVersion("pepoImage");
+        Assertions.assertNotEquals(stored.getContentLocation().getREF(), replaced.getContentLocation().getREF());
+        Assertions.assertEquals(replacement.length, replaced.getSIZE());
+        Assertions.assertArrayEquals(replacement, akubraRepository.getDatastreamContent(PID_MONOGRAPH, "pepoImage").asInputStream().readAllBytes());
+    }
+
+    private static DatastreamVersionType managedVersion(String dsId) {
+        DigitalObject digitalObject = akubraRepository.get(PID_MONOGRAPH).asDigitalObject();
+        return digitalObject.getDatastream().stream()
+                .filter(datastream -> dsId.equals(datastream.getID())).findFirst().get().getDatastreamVersion().get(0);
     }
 
 }
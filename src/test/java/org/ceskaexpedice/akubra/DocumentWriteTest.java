@@ -88,7 +88,7 @@ public class DocumentWriteTest {
         // test ingest result
         DigitalObject digitalObjectImported = akubraRepository.get(PID_IMPORTED).asDigitalObject();
         Assertions.assertNotNull(digitalObjectImported);
-        verify(mockFeeder, times(1)).rebuildProcessingIndex(any(), isNull());
+        verify(mockFeeder, times(1)).rebuildProcessingIndexFromObject(any(), isNull());
         verify(mockFeeder, times(1)).commit();
     }
 
@@ -94,7 +94,7 @@ public class NoLocksTest {
         DigitalObject digitalObjectImported = akubraRepository.get(PID_IMPORTED).asDigitalObject();
         Assertions.assertNotNull(digitalObjectImported);
         verify(mockFeeder, times(1)).commit();
-        verify(mockFeeder, times(1)).rebuildProcessingIndex(any(), isNull());
+        verify(mockFeeder, times(1)).rebuildProcessingIndexFromObject(any(), isNull());
     }
 
     @Test
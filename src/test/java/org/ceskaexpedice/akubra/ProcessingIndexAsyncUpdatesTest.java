@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra;
+
+import org.apache.commons.io.FileUtils;
+import org.ceskaexpedice.akubra.config.RepositoryConfiguration;
+import org.ceskaexpedice.akubra.core.CoreRepositoryFactory;
+import org.ceskaexpedice.akubra.core.processingindex.ProcessingIndexSolr;
+import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.core.repository.impl.CoreRepositoryImpl;
+import org.ceskaexpedice.fedoramodel.DigitalObject;
+import org.ceskaexpedice.hazelcast.HazelcastConfiguration;
+import org.ceskaexpedice.hazelcast.HazelcastServerNode;
+import org.ceskaexpedice.testutils.AkubraTestsUtils;
+import org.ceskaexpedice.testutils.IntegrationTestsUtils;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
+import static org.mockito.Mockito.*;
+
+public class ProcessingIndexAsyncUpdatesTest {
+    private static ProcessingIndexSolr mockFeeder;
+    private static AkubraRepository akubraRepository;
+    private static final List<Thread> commitThreads = new CopyOnWriteArrayList<>();
+
+    @BeforeAll
+    static void beforeAll() {
+        Properties testsProperties = IntegrationTestsUtils.loadProperties();
+        HazelcastConfiguration hazelcastConfig = AkubraTestsUtils.createHazelcastConfig(testsProperties);
+        HazelcastServerNode.ensureHazelcastNode(hazelcastConfig);
+        mockFeeder = mock(ProcessingIndexSolr.class);
+        String testRepoPath = TEST_OUTPUT_REPOSITORY.toFile().getAbsolutePath() + "/";
+        RepositoryConfiguration config = new RepositoryConfiguration.Builder()
+                .processingIndexHost(IntegrationTestsUtils.getProperty("processingIndexHost", null, testsProperties))
+                .objectStorePath(testRepoPath + "objectStore")
+                .objectStorePattern("##/##")
+                .datastreamStorePath(testRepoPath + "datastreamStore")
+                .datastreamStorePattern("##/##")
+                .hazelcastConfiguration(hazelcastConfig)
+                .processingIndexAsyncUpdates(true)
+                .build();
+        CoreRepository coreRepository = CoreRepositoryFactory.createRepository(config);
+        ((CoreRepositoryImpl) coreRepository).setProcessingIndex(mockFeeder);
+        akubraRepository = AkubraRepositoryFactory.createRepository(coreRepository);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        akubraRepository.shutdown();
+        HazelcastServerNode.shutdown();
+    }
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        if (Files.exists(TEST_OUTPUT_REPOSITORY)) {
+            FileUtils.deleteDirectory(TEST_OUTPUT_REPOSITORY.toFile());
+        }
+        Files.createDirectories(TEST_OUTPUT_REPOSITORY);
+        FileUtils.copyDirectory(TEST_REPOSITORY.toFile(), TEST_OUTPUT_REPOSITORY.toFile());
+        reset(mockFeeder);
+        commitThreads.clear();
+        doAnswer(invocation -> commitThreads.add(Thread.currentThread())).when(mockFeeder).commit();
+    }
+
+    @Test
+    void testIngestDoesNotCommitOnCallerThread() throws IOException {
+        try (InputStream inputStream = Files.newInputStream(Path.of("src/test/resources/titlePageImport.xml"))) {
+            DigitalObject digitalObject = akubraRepository.unmarshall(inputStream);
+            akubraRepository.ingest(digitalObject);
+        }
+        Assertions.assertTrue(akubraRepository.awaitProcessingIndexUpdates(10, TimeUnit.SECONDS));
+        assertCommittedInBackground();
+    }
+
+    @Test
+    void testRelationEditDoesNotCommitOnCallerThread() {
+        akubraRepository.re().addRelation(PID_TITLE_PAGE, "kramerius:hasPage",
+                "http://www.nsdl.org/ontologies/relationships#", "info:fedora/uuid:12993b4a-71b4-4f19-8953-0701243cc25d_1");
+        Assertions.assertTrue(akubraRepository.awaitProcessingIndexUpdates(10, TimeUnit.SECONDS));
+        assertCommittedInBackground();
+    }
+
+    private static void assertCommittedInBackground() {
+        // the queue commits once it has applied the update
+        Assertions.assertFalse(commitThreads.isEmpty());
+        Assertions.assertFalse(commitThreads.contains(Thread.currentThread()));
+    }
+}
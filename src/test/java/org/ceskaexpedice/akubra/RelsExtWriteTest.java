@@ -60,6 +60,7 @@ public class RelsExtWriteTest {
         doNothing().when(mockFeeder).deleteByRelationsForPid(anyString());
         doNothing().when(mockFeeder).lookAt(any(), any());
         doNothing().when(mockFeeder).rebuildProcessingIndex(any(), any());
+        doNothing().when(mockFeeder).updateRelations(any(), any());
         doNothing().when(mockFeeder).commit();
 
 
@@ -129,6 +130,20 @@ public class RelsExtWriteTest {
         Assertions.assertEquals(0, relations.size());
     }
 
+    @Test
+    void testEdit() {
+        Assertions.assertEquals(1, akubraRepository.re().getRelations(PID_TITLE_PAGE, null).size());
+        Assertions.assertEquals(4, akubraRepository.re().getLiterals(PID_TITLE_PAGE, null).size());
+
+        akubraRepository.re().edit(PID_TITLE_PAGE, editor -> editor
+                .removeRelation("hasModel", "info:fedora/fedora-system:def/model#", "model:page")
+                .addRelation("kramerius:hasPage", "http://www.nsdl.org/ontologies/relationships#", "info:fedora/uuid:12993b4a-71b4-4f19-8953-0701243cc25d_1")
+                .addRelation("kramerius:hasPage", "http://www.nsdl.org/ontologies/relationships#", "info:fedora/uuid:12993b4a-71b4-4f19-8953-0701243cc25d_2")
+                .addLiteral("pepoItemID", "http://www.openarchives.org/OAI/2.0/", "uuid:12993b4a-71b4-4f19-8953-0701243cc25d"));
+        Assertions.assertEquals(2, akubraRepository.re().getRelations(PID_TITLE_PAGE, null).size());
+        Assertions.assertEquals(5, akubraRepository.re().getLiterals(PID_TITLE_PAGE, null).size());
+    }
+
     @Test
     void testAddLiteral() {
         List<RelsExtLiteral> literals = akubraRepository.re().getLiterals(PID_TITLE_PAGE, null);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorPrefetchTest {
+
+    static final int PAGES = 5;
+    static final int ROWS = 3;
+
+    @Test
+    public void testAllPagesInOrder() {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        List<String> pids = new ArrayList<>();
+        try (CursorPrefetch items = new CursorPrefetch(CursorPrefetchTest::fetch, "0", ROWS, executor)) {
+            items.forEachRemaining(item -> pids.add(item.pid()));
+        }
+        assertEquals(PAGES * ROWS, pids.size());
+        assertEquals("uuid:0-0", pids.get(0));
+        assertEquals("uuid:4-2", pids.get(pids.size() - 1));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testReadAheadIsBounded() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        AtomicInteger fetched = new AtomicInteger();
+        try (CursorPrefetch items = new CursorPrefetch((cursor, sink) -> {
+            String next = fetch(cursor, sink);
+            fetched.incrementAndGet();
+            return next;
+        }, "0", ROWS, executor)) {
+            assertTrue(items.hasNext());
+            Thread.sleep(200);
+            // one page queued, the second one blocked on the full queue
+            assertEquals(1, fetched.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailureRethrown() {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (CursorPrefetch items = new CursorPrefetch((cursor, sink) -> {
+            if (cursor.equals("2")) {
+                throw new IllegalStateException("Solr is down");
+            }
+            return fetch(cursor, sink);
+        }, "0", ROWS, executor)) {
+            List<ProcessingIndexItem> read = new ArrayList<>();
+            RepositoryException e = assertThrows(RepositoryException.class, () -> items.forEachRemaining(read::add));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertFalse(items.hasNext());
+        }
+        executor.shutdown();
+    }
+
+    static String fetch(String cursor, java.util.function.Consumer<ProcessingIndexItem> sink) {
+        int page = Integer.parseInt(cursor);
+        if (page >= PAGES) {
+            return cursor;
+        }
+        for (int i = 0; i < ROWS; i++) {
+            sink.accept(item("uuid:" + page + "-" + i));
+        }
+        return String.valueOf(page + 1);
+    }
+
+    static ProcessingIndexItem item(String pid) {
+        return new ProcessingIndexItem(pid, "description", null, null, null, null, null, pid, null, null, null);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorPublisherTest {
+
+    @Test
+    public void testDemandDriven() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CursorPublisher publisher = new CursorPublisher(
+                () -> new CursorPrefetch(CursorPrefetchTest::fetch, "0", CursorPrefetchTest.ROWS, executor), executor);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(4);
+        Thread.sleep(200);
+        assertEquals(4, subscriber.items.size());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals(CursorPrefetchTest.PAGES * CursorPrefetchTest.ROWS, subscriber.items.size());
+        assertNull(subscriber.error);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CursorPublisher publisher = new CursorPublisher(
+                () -> new CursorPrefetch(CursorPrefetchTest::fetch, "0", CursorPrefetchTest.ROWS, executor), executor);
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(ProcessingIndexItem item) {
+                super.onNext(item);
+                subscription.cancel();
+            }
+        };
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10);
+        Thread.sleep(200);
+        assertEquals(1, subscriber.items.size());
+        assertEquals(1, subscriber.done.getCount());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CursorPublisher publisher = new CursorPublisher(
+                () -> new CursorPrefetch(CursorPrefetchTest::fetch, "0", CursorPrefetchTest.ROWS, executor), executor);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        executor.shutdown();
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<ProcessingIndexItem> {
+        final List<ProcessingIndexItem> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ProcessingIndexItem item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
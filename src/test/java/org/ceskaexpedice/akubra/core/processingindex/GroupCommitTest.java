@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupCommitTest {
+
+    @Test
+    public void testConcurrentRequestsMerged() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger commits = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit(() -> {
+            if (commits.incrementAndGet() == 1) {
+                started.countDown();
+                await(release);
+            }
+        });
+        Thread first = new Thread(groupCommit::commit);
+        first.start();
+        started.await();
+
+        List<Thread> waiting = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread(groupCommit::commit);
+            thread.start();
+            waiting.add(thread);
+        }
+        while (groupCommit.getRequestCount() < 6) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.join();
+        for (Thread thread : waiting) {
+            thread.join();
+        }
+        // requests made during the first commit need a commit of their own, one is enough for all of them
+        assertEquals(2, commits.get());
+        assertEquals(2, groupCommit.getCommitCount());
+        assertEquals(6, groupCommit.getRequestCount());
+    }
+
+    @Test
+    public void testFailedCommitRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        GroupCommit groupCommit = new GroupCommit(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("failed");
+            }
+        });
+        assertThrows(IllegalStateException.class, groupCommit::commit);
+        groupCommit.commit();
+        assertEquals(2, attempts.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.RepositoryNamespaces;
+import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
+import org.ceskaexpedice.akubra.utils.DomUtils;
+import org.ceskaexpedice.fedoramodel.DigitalObject;
+import org.ceskaexpedice.fedoramodel.FoxmlStaxBinder;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+
+import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class IndexedObjectTest {
+
+    private static final String PID = "uuid:534faa9e-b675-46f3-a4db-e107127a1112";
+
+    @Test
+    public void testStoredAndIngestedObjectAgree() throws Exception {
+        byte[] foxml = loadResource("foxml/534faa9e-b675-46f3-a4db-e107127a1112.xml");
+        CoreRepository coreRepository = mock(CoreRepository.class);
+        when(coreRepository.getDatastreamIndex(PID)).thenReturn(DatastreamIndex.build(foxml));
+        DigitalObject digitalObject = FoxmlStaxBinder.read(new ByteArrayInputStream(foxml));
+
+        IndexedObject stored = IndexedObject.read(PID, coreRepository);
+        IndexedObject ingested = IndexedObject.of(digitalObject, coreRepository);
+        assertEquals(PID, stored.getPid());
+        assertEquals(PID, ingested.getPid());
+        assertEquals(stored.getStreamNames(), ingested.getStreamNames());
+        assertTrue(stored.hasStream("BIBLIO_MODS"));
+        assertFalse(ingested.hasStream("IMG_FULL"));
+
+        for (String dsId : new String[]{"RELS-EXT", "DC", "BIBLIO_MODS"}) {
+            Element fromStore = stored.getXmlContent(dsId);
+            Element fromObject = ingested.getXmlContent(dsId);
+            assertEquals(fromStore.getNamespaceURI(), fromObject.getNamespaceURI(), dsId);
+            assertEquals(fromStore.getLocalName(), fromObject.getLocalName(), dsId);
+            assertEquals(fromStore.getTextContent(), fromObject.getTextContent(), dsId);
+        }
+        Element description = DomUtils.findElement(stored.getXmlContent("RELS-EXT"), "Description", RepositoryNamespaces.RDF_NAMESPACE_URI);
+        assertNotNull(description);
+        assertNull(stored.getXmlContent("NOT_EXISTING"));
+
+        // inline XML never goes back to the repository
+        verify(coreRepository, times(1)).getDatastreamIndex(PID);
+        verify(coreRepository, never()).getDatastreamContent(any(), any());
+    }
+
+    @Test
+    public void testMissingObject() {
+        CoreRepository coreRepository = mock(CoreRepository.class);
+        assertNull(IndexedObject.read(PID, coreRepository));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexQueryCacheStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessingIndexQueryCacheTest {
+
+    @Test
+    public void testHitMissAndDependencyInvalidation() {
+        ProcessingIndexQueryCache cache = new ProcessingIndexQueryCache(100, 0, 0);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            String parent = cache.get("parents", "uuid:child", null, () -> { loads.incrementAndGet(); return "uuid:parent"; }, List::of);
+            assertEquals("uuid:parent", parent);
+        }
+        assertEquals(1, loads.get());
+
+        // the entry depends on the parent found
+        cache.invalidate(List.of("uuid:parent"));
+        cache.committed(cache.markCommit());
+        cache.get("parents", "uuid:child", null, () -> { loads.incrementAndGet(); return "uuid:parent"; }, List::of);
+        assertEquals(2, loads.get());
+
+        cache.invalidate(List.of("uuid:other"));
+        cache.get("parents", "uuid:child", null, () -> { loads.incrementAndGet(); return "uuid:parent"; }, List::of);
+        assertEquals(2, loads.get());
+
+        ProcessingIndexQueryCacheStats stats = cache.getStats();
+        assertTrue(stats.enabled());
+        assertEquals(2, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(2, stats.invalidationCount());
+        assertEquals(0.5, stats.hitRate());
+    }
+
+    @Test
+    public void testNotCachedUntilCommitted() {
+        ProcessingIndexQueryCache cache = new ProcessingIndexQueryCache(100, 0, 0);
+        AtomicInteger loads = new AtomicInteger();
+        cache.invalidate(List.of("uuid:1"));
+        long mark = cache.markCommit();
+        cache.get("model", "uuid:1", null, () -> { loads.incrementAndGet(); return "page"; }, model -> List.of());
+        cache.get("model", "uuid:1", null, () -> { loads.incrementAndGet(); return "page"; }, model -> List.of());
+        assertEquals(2, loads.get());
+
+        cache.committed(mark);
+        cache.get("model", "uuid:1", null, () -> { loads.incrementAndGet(); return "page"; }, model -> List.of());
+        cache.get("model", "uuid:1", null, () -> { loads.incrementAndGet(); return "page"; }, model -> List.of());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() {
+        ProcessingIndexQueryCache cache = new ProcessingIndexQueryCache(100, 0, 0);
+        cache.get("model", "uuid:1", null, () -> {
+            // simulates an index update sent while the old result is being read
+            cache.invalidate(List.of("uuid:1"));
+            return "page";
+        }, model -> List.of());
+        assertEquals(0, cache.getStats().entryCount());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        ProcessingIndexQueryCache cache = new ProcessingIndexQueryCache(100, 0, 0);
+        cache.get("model", "uuid:1", null, () -> "page", model -> List.of());
+        cache.get("containsRelation", "uuid:2", "hasPage", () -> true, contains -> List.of());
+        assertEquals(2, cache.getStats().entryCount());
+        cache.invalidateAll();
+        assertEquals(0, cache.getStats().entryCount());
+        cache.get("model", "uuid:1", null, () -> "page", model -> List.of());
+        assertEquals(0, cache.getStats().entryCount());
+    }
+}
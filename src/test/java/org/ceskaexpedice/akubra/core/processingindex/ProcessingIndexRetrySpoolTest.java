@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessingIndexRetrySpoolTest {
+
+    @Test
+    public void testRetryWithBackoff() throws Exception {
+        Path file = Files.createTempFile("akubra-retry", ".jsonl");
+        AtomicInteger attempts = new AtomicInteger();
+        ProcessingIndexRetrySpool spool = new ProcessingIndexRetrySpool(file, 10, 40, (operation, pid) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Solr is down");
+            }
+        });
+        spool.add(ProcessingIndexRetrySpool.OP_REINDEX, "uuid:1");
+        awaitReplayed(spool, 1);
+        assertEquals(3, attempts.get());
+        assertEquals(0, spool.getPendingCount());
+        assertEquals("", Files.readString(file, StandardCharsets.UTF_8));
+        spool.shutdown();
+        Files.delete(file);
+    }
+
+    @Test
+    public void testReloadAfterRestart() throws Exception {
+        Path file = Files.createTempFile("akubra-retry", ".jsonl");
+        ProcessingIndexRetrySpool failing = new ProcessingIndexRetrySpool(file, 60000, 60000, (operation, pid) -> {
+            throw new IllegalStateException("Solr is down");
+        });
+        failing.add(ProcessingIndexRetrySpool.OP_REINDEX, "uuid:1");
+        failing.add(ProcessingIndexRetrySpool.OP_DELETE_TARGETS, "uuid:2");
+        failing.add(ProcessingIndexRetrySpool.OP_REINDEX, "uuid:1");
+        failing.add(ProcessingIndexRetrySpool.OP_COMMIT, null);
+        assertEquals(3, failing.getPendingCount());
+        failing.shutdown();
+        assertEquals(3, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+
+        List<String> replayed = new CopyOnWriteArrayList<>();
+        ProcessingIndexRetrySpool spool = new ProcessingIndexRetrySpool(file, 10, 10, (operation, pid) -> replayed.add(operation + " " + pid));
+        awaitReplayed(spool, 3);
+        assertEquals(3, replayed.size());
+        assertTrue(replayed.containsAll(List.of("reindex uuid:1", "deleteTargets uuid:2", "commit null")));
+        assertEquals(0, spool.getPendingCount());
+        spool.shutdown();
+        Files.delete(file);
+    }
+
+    private static void awaitReplayed(ProcessingIndexRetrySpool spool, long count) throws InterruptedException {
+        for (int i = 0; i < 500 && spool.getReplayedCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, spool.getReplayedCount());
+    }
+}
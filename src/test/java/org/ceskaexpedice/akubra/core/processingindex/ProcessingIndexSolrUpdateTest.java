@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.ceskaexpedice.akubra.config.CommitStrategy;
+import org.ceskaexpedice.akubra.config.RepositoryConfiguration;
+import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.core.repository.DatastreamIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ProcessingIndexSolrUpdateTest {
+
+    private static final String PID = "uuid:1";
+
+    private CoreRepository coreRepository;
+    private ProcessingIndexSolr processingIndex;
+    private List<UpdateRequest> sent;
+    private SolrClient updateClient;
+    private SolrClient queryClient;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        coreRepository = mock(CoreRepository.class);
+        sent = new CopyOnWriteArrayList<>();
+        updateClient = mock(SolrClient.class);
+        when(updateClient.request(any(), any())).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            return new NamedList<>();
+        });
+        queryClient = mock(SolrClient.class);
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getResults()).thenReturn(new SolrDocumentList());
+        when(queryClient.query(any(), any(SolrRequest.METHOD.class))).thenReturn(response);
+        processingIndex = processingIndex(new RepositoryConfiguration.Builder());
+    }
+
+    @Test
+    public void testUpdateRelationsSendsOnlyChanges() {
+        store(relsExt("uuid:p2", "uuid:p3"));
+        processingIndex.updateRelations(PID, parseRelsExt(relsExt("uuid:p1", "uuid:p2")));
+        processingIndex.shutdown();
+
+        assertEquals(1, sent.size());
+        UpdateRequest request = sent.get(0);
+        // the unchanged relation to uuid:p2 is neither sent nor deleted
+        assertEquals(List.of("description|" + PID, relation("uuid:p3")), documentIds(request));
+        assertEquals(List.of(relation("uuid:p1")), request.getDeleteById());
+    }
+
+    @Test
+    public void testRebuildSendsAllRelations() {
+        store(relsExt("uuid:p1", "uuid:p2"));
+        processingIndex.rebuildProcessingIndex(PID, null);
+        processingIndex.shutdown();
+
+        assertEquals(1, sent.size());
+        UpdateRequest request = sent.get(0);
+        assertEquals(List.of("description|" + PID, relation("uuid:p1"), relation("uuid:p2")), documentIds(request));
+        assertTrue(request.getDeleteById() == null || request.getDeleteById().isEmpty());
+        SolrInputDocument description = request.getDocuments().get(0);
+        assertEquals("model:monograph", description.getFieldValue("model"));
+    }
+
+    @Test
+    public void testUpdateRelationsOfRemovedObject() {
+        processingIndex.updateRelations(PID, parseRelsExt(relsExt("uuid:p1", "uuid:p2")));
+        processingIndex.shutdown();
+
+        assertEquals(1, sent.size());
+        UpdateRequest request = sent.get(0);
+        assertTrue(request.getDocuments() == null || request.getDocuments().isEmpty());
+        assertEquals(List.of(relation("uuid:p1"), relation("uuid:p2")), request.getDeleteById().stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testUnchangedRelationsSendDescriptionOnly() {
+        store(relsExt("uuid:p1"));
+        processingIndex.updateRelations(PID, parseRelsExt(relsExt("uuid:p1")));
+        processingIndex.shutdown();
+
+        assertEquals(1, sent.size());
+        assertEquals(List.of("description|" + PID), documentIds(sent.get(0)));
+        assertTrue(sent.get(0).getDeleteById() == null || sent.get(0).getDeleteById().isEmpty());
+    }
+
+    @Test
+    public void testCommitWithinBackfillsOnceDelayElapses() throws Exception {
+        processingIndex.shutdown();
+        processingIndex = processingIndex(new RepositoryConfiguration.Builder()
+                .processingIndexCommitStrategy(CommitStrategy.COMMIT_WITHIN)
+                .processingIndexCommitWithinMs(500));
+        store(relsExt("uuid:p1"));
+        processingIndex.rebuildProcessingIndex(PID, null);
+        processingIndex.commit();
+
+        // relations sent so far are not searchable before commitWithin elapses
+        verify(queryClient, never()).query(argThat(ProcessingIndexSolrUpdateTest::isBackfill), any(SolrRequest.METHOD.class));
+        verify(queryClient, timeout(5000)).query(argThat(ProcessingIndexSolrUpdateTest::isBackfill), any(SolrRequest.METHOD.class));
+        verify(updateClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+        processingIndex.shutdown();
+    }
+
+    @Test
+    public void testShutdownBackfillsPending() throws Exception {
+        store(relsExt("uuid:p1"));
+        processingIndex.rebuildProcessingIndex(PID, null);
+        verify(queryClient, never()).query(argThat(ProcessingIndexSolrUpdateTest::isBackfill), any(SolrRequest.METHOD.class));
+        processingIndex.shutdown();
+
+        verify(updateClient).commit(anyBoolean(), anyBoolean(), anyBoolean());
+        verify(queryClient).query(argThat(ProcessingIndexSolrUpdateTest::isBackfill), any(SolrRequest.METHOD.class));
+    }
+
+    private ProcessingIndexSolr processingIndex(RepositoryConfiguration.Builder builder) {
+        return new ProcessingIndexSolr(builder.objectStorePattern("##/##").build(), coreRepository, updateClient, queryClient);
+    }
+
+    private static boolean isBackfill(SolrParams params) {
+        return params != null && params.get("q") != null && params.get("q").startsWith("{!terms f=targetPid}" + PID);
+    }
+
+    private void store(String relsExt) {
+        String foxml = "<digitalObject VERSION=\"1.1\" PID=\"" + PID + "\" xmlns=\"info:fedora/fedora-system:def/foxml#\">" +
+                "<datastream ID=\"RELS-EXT\" CONTROL_GROUP=\"X\" STATE=\"A\" VERSIONABLE=\"false\">" +
+                "<datastreamVersion ID=\"RELS-EXT.0\" MIMETYPE=\"application/rdf+xml\"><xmlContent>" + relsExt +
+                "</xmlContent></datastreamVersion></datastream></digitalObject>";
+        when(coreRepository.getDatastreamIndex(PID)).thenReturn(DatastreamIndex.build(foxml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String relsExt(String... pages) {
+        StringBuilder builder = new StringBuilder("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">")
+                .append("<rdf:Description rdf:about=\"info:fedora/").append(PID).append("\">")
+                .append("<hasModel xmlns=\"info:fedora/fedora-system:def/model#\" rdf:resource=\"info:fedora/model:monograph\"/>");
+        for (String page : pages) {
+            builder.append("<hasPage xmlns=\"http://www.nsdl.org/ontologies/relationships#\" rdf:resource=\"info:fedora/")
+                    .append(page).append("\"/>");
+        }
+        return builder.append("</rdf:Description></rdf:RDF>").toString();
+    }
+
+    private static Element parseRelsExt(String relsExt) {
+        try {
+            return parseXml(relsExt.getBytes(StandardCharsets.UTF_8)).getDocumentElement();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String relation(String target) {
+        return "relation|" + PID + "|hasPage|" + target;
+    }
+
+    private static List<String> documentIds(UpdateRequest request) {
+        return request.getDocuments().stream().map(doc -> doc.getFieldValue("pid").toString()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.ceskaexpedice.akubra.utils.DomUtils;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RelsExtFingerprintTest {
+
+    private static final String RELS_EXT = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"" +
+            " xmlns:fedora-model=\"info:fedora/fedora-system:def/model#\" xmlns:rel=\"http://www.nsdl.org/ontologies/relationships#\">" +
+            "<rdf:Description rdf:about=\"info:fedora/uuid:1\">" +
+            "<fedora-model:hasModel rdf:resource=\"info:fedora/model:monograph\"/>" +
+            "%s" +
+            "<rel:tiles-url>%s</rel:tiles-url>" +
+            "</rdf:Description></rdf:RDF>";
+
+    @Test
+    public void testUnchangedRelations() {
+        Element first = relsExt("<rel:hasPage rdf:resource=\"info:fedora/uuid:2\"/><rel:hasPage rdf:resource=\"info:fedora/uuid:3\"/>", "a");
+        Element reordered = relsExt("\n  <rel:hasPage rdf:resource=\"info:fedora/uuid:3\"/>\n  <rel:hasPage rdf:resource=\"info:fedora/uuid:2\"/>", "b");
+        assertNotNull(RelsExtFingerprint.of(first));
+        assertEquals(RelsExtFingerprint.of(first), RelsExtFingerprint.of(reordered));
+        assertTrue(RelsExtFingerprint.sameRelations(first, reordered));
+    }
+
+    @Test
+    public void testChangedRelations() {
+        Element first = relsExt("<rel:hasPage rdf:resource=\"info:fedora/uuid:2\"/>", "a");
+        Element added = relsExt("<rel:hasPage rdf:resource=\"info:fedora/uuid:2\"/><rel:hasPage rdf:resource=\"info:fedora/uuid:3\"/>", "a");
+        Element renamed = relsExt("<rel:isOnPage rdf:resource=\"info:fedora/uuid:2\"/>", "a");
+        assertFalse(RelsExtFingerprint.sameRelations(first, added));
+        assertFalse(RelsExtFingerprint.sameRelations(first, renamed));
+    }
+
+    private static Element relsExt(String relations, String tilesUrl) {
+        return DomUtils.streamToDocument(new StringReader(String.format(RELS_EXT, relations, tilesUrl)), true).getDocumentElement();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.ceskaexpedice.akubra.processingindex.ProcessingIndexUpdateStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolrUpdatePipelineTest {
+
+    @Test
+    public void testMergeInOrder() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> sent = new CopyOnWriteArrayList<>();
+        SolrUpdatePipeline pipeline = new SolrUpdatePipeline(request -> {
+            started.countDown();
+            release.await();
+            sent.add(SolrUpdatePipeline.documentIds(request));
+        }, 1, 100, 3, null);
+        pipeline.submit("uuid:1", add("a"));
+        started.await();
+        pipeline.submit("uuid:1", add("b"));
+        pipeline.submit("uuid:1", add("c", "d"));
+        pipeline.submit("uuid:1", add("e"));
+        UpdateRequest delete = new UpdateRequest();
+        delete.deleteById("f");
+        pipeline.submit("uuid:1", delete);
+        pipeline.submit("uuid:1", add("g"));
+        release.countDown();
+        pipeline.flush();
+        assertEquals(List.of(List.of("a"), List.of("b", "c", "d"), List.of("e"), List.of("f"), List.of("g")), sent);
+        ProcessingIndexUpdateStats stats = pipeline.getStats();
+        assertEquals(5, stats.requestCount());
+        assertEquals(7, stats.documentCount());
+        assertEquals(0, stats.queuedRequestCount());
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testFailureReported() {
+        List<String> failed = new CopyOnWriteArrayList<>();
+        SolrUpdatePipeline pipeline = new SolrUpdatePipeline(request -> {
+            if (SolrUpdatePipeline.documentIds(request).contains("b")) {
+                throw new IllegalStateException("Solr is down");
+            }
+        }, 2, 100, 1, (documentIds, error) -> failed.addAll(documentIds));
+        pipeline.submit("uuid:1", add("a"));
+        pipeline.submit("uuid:2", add("b", "c"));
+        pipeline.flush();
+        assertEquals(List.of("b", "c"), failed);
+        ProcessingIndexUpdateStats stats = pipeline.getStats();
+        assertEquals(1, stats.requestCount());
+        assertEquals(1, stats.failedRequestCount());
+        assertEquals(2, stats.failedDocumentCount());
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testBackPressureAndShutdownDrain() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        SolrUpdatePipeline pipeline = new SolrUpdatePipeline(request -> {
+            started.countDown();
+            release.await();
+            sent.addAll(SolrUpdatePipeline.documentIds(request));
+        }, 1, 1, 1, null);
+        pipeline.submit("uuid:1", add("a"));
+        started.await();
+        pipeline.submit("uuid:1", add("b"));
+        Thread producer = new Thread(() -> pipeline.submit("uuid:1", add("c")));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        release.countDown();
+        producer.join();
+        pipeline.shutdown();
+        assertEquals(List.of("a", "b", "c"), sent);
+        assertThrows(RuntimeException.class, () -> pipeline.submit("uuid:1", add("d")));
+    }
+
+    @Test
+    public void testFlushUnderContinuousLoad() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        SolrUpdatePipeline pipeline = new SolrUpdatePipeline(request -> {
+            Thread.sleep(1);
+            sent.addAll(SolrUpdatePipeline.documentIds(request));
+        }, 1, 10, 1, null);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String key = "uuid:" + i;
+            Thread producer = new Thread(() -> {
+                while (running.get()) {
+                    pipeline.submit(key, add("load"));
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        pipeline.submit("uuid:flush", add("flushed"));
+        // the queue stays full, flush waits only for the requests submitted before it
+        Thread flush = new Thread(pipeline::flush);
+        flush.start();
+        flush.join(10000);
+        boolean flushed = !flush.isAlive();
+        running.set(false);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(flushed);
+        assertTrue(sent.contains("flushed"));
+        pipeline.shutdown();
+    }
+
+    private static UpdateRequest add(String... ids) {
+        List<SolrInputDocument> documents = new ArrayList<>();
+        for (String id : ids) {
+            SolrInputDocument document = new SolrInputDocument();
+            document.addField("pid", id);
+            documents.add(document);
+        }
+        UpdateRequest request = new UpdateRequest();
+        request.add(documents);
+        return request;
+    }
+}
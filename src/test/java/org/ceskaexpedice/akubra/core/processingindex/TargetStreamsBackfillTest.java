@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.processingindex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TargetStreamsBackfillTest {
+
+    @Test
+    public void testResolvedOnlyWhenSearchable() {
+        List<Map<String, List<String>>> resolved = new ArrayList<>();
+        TargetStreamsBackfill backfill = new TargetStreamsBackfill(2, streams -> {
+            resolved.add(streams);
+            return streams.size();
+        });
+        backfill.add("uuid:1", List.of("DC"));
+        backfill.add("uuid:2", List.of("DC"));
+        // nothing has been committed yet
+        assertEquals(0, backfill.flush(Long.MAX_VALUE - 1));
+        assertTrue(resolved.isEmpty());
+
+        long mark = backfill.mark();
+        backfill.add("uuid:3", List.of("DC"));
+        backfill.add("uuid:1", List.of("DC", "IMG_FULL"));
+        backfill.searchable(mark, 100);
+        assertEquals(0, backfill.flush(99));
+        // uuid:1 was added again after the mark and waits for the next commit
+        assertEquals(1, backfill.flush(100));
+        assertEquals(List.of(Map.of("uuid:2", List.of("DC"))), resolved);
+        assertEquals(2, backfill.getPendingCount());
+
+        backfill.searchable(backfill.mark(), 200);
+        assertEquals(0, backfill.flush(150));
+        assertEquals(2, backfill.flush(200));
+        assertEquals(List.of("uuid:3", "uuid:1"), new ArrayList<>(resolved.get(1).keySet()));
+        assertEquals(List.of("DC", "IMG_FULL"), resolved.get(1).get("uuid:1"));
+        assertEquals(0, backfill.getPendingCount());
+    }
+
+    @Test
+    public void testFlushInChunks() {
+        List<Map<String, List<String>>> resolved = new ArrayList<>();
+        TargetStreamsBackfill backfill = new TargetStreamsBackfill(2, streams -> {
+            resolved.add(streams);
+            return 1;
+        });
+        for (int i = 1; i <= 5; i++) {
+            backfill.add("uuid:" + i, List.of("DC"));
+        }
+        backfill.searchable(backfill.mark(), 0);
+        assertEquals(3, backfill.flush(0));
+        assertEquals(List.of(2, 2, 1), resolved.stream().map(Map::size).toList());
+        assertEquals(0, backfill.flush(0));
+    }
+}
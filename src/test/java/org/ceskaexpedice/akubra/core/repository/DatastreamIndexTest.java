@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.*;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatastreamIndexTest {
+
+    private static final String FOXML_NS = "info:fedora/fedora-system:def/foxml#";
+
+    @Test
+    public void testDefaultNamespaceFoxml() throws Exception {
+        byte[] foxml = loadResource("foxml/docWithQuoteEntities.xml");
+        DatastreamIndex index = DatastreamIndex.build(foxml);
+        assertTrue(index.contains("DC"));
+        assertFalse(index.contains("NOT_EXISTING"));
+        assertEquals(datastreamIds(foxml), index.getDatastreamNames());
+        assertContentEquals(foxml, index);
+
+        DatastreamIndex.Datastream preview = index.get("IMG_PREVIEW");
+        assertEquals("M", preview.getControlGroup());
+        assertEquals("image/jpeg", preview.getMimeType());
+        assertEquals("INTERNAL_ID", preview.getContentLocationType());
+        assertEquals("uuid:d6972ae4-b161-4997-84a8-129af7eb9057+IMG_PREVIEW+IMG_PREVIEW.0", preview.getContentLocationRef());
+        assertFalse(preview.hasXmlContent());
+    }
+
+    @Test
+    public void testPrefixedFoxml() throws Exception {
+        for (String resource : new String[]{"foxml/534faa9e-b675-46f3-a4db-e107127a1112.xml",
+                "foxml/686cf4a1-f440-4d46-8353-4af3629fc4c8.xml", "foxml/bbae3d9d-ee9f-43a3-9431-024db12de070.xml"}) {
+            byte[] foxml = loadResource(resource);
+            DatastreamIndex index = DatastreamIndex.build(foxml);
+            assertEquals(datastreamIds(foxml), index.getDatastreamNames(), resource);
+            assertContentEquals(foxml, index);
+        }
+    }
+
+    @Test
+    public void testInheritedNamespace() throws Exception {
+        String foxml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<foxml:digitalObject xmlns:foxml=\"" + FOXML_NS + "\" xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" PID=\"uuid:1\">" +
+                "<foxml:datastream ID=\"RELS-EXT\" CONTROL_GROUP=\"X\" STATE=\"A\" VERSIONABLE=\"false\">" +
+                "<foxml:datastreamVersion ID=\"RELS-EXT.0\" MIMETYPE=\"text/xml\" CREATED=\"2020-01-01T00:00:00Z\">" +
+                "<foxml:xmlContent><rdf:RDF><rdf:Description rdf:about=\"info:fedora/uuid:1\"/></rdf:RDF></foxml:xmlContent>" +
+                "</foxml:datastreamVersion>" +
+                "<foxml:datastreamVersion ID=\"RELS-EXT.1\" MIMETYPE=\"application/rdf+xml\" CREATED=\"2021-01-01T00:00:00Z\">" +
+                "<foxml:xmlContent><!-- latest --><rdf:RDF><rdf:Description rdf:about=\"info:fedora/uuid:1\">&amp;</rdf:Description></rdf:RDF></foxml:xmlContent>" +
+                "</foxml:datastreamVersion></foxml:datastream></foxml:digitalObject>";
+        DatastreamIndex index = DatastreamIndex.build(foxml.getBytes(StandardCharsets.UTF_8));
+        DatastreamIndex.Datastream relsExt = index.get("RELS-EXT");
+        assertEquals("RELS-EXT.1", relsExt.getVersionId());
+        assertEquals("application/rdf+xml", relsExt.getMimeType());
+        String content = IOUtils.toString(index.openXmlContent("RELS-EXT"), StandardCharsets.UTF_8);
+        assertTrue(content.startsWith("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"));
+        Element root = parseXml(content.getBytes(StandardCharsets.UTF_8)).getDocumentElement();
+        assertEquals("RDF", root.getLocalName());
+        assertEquals("&", root.getTextContent());
+    }
+
+    @Test
+    public void testIsoEncodedFoxml() throws Exception {
+        String foxml = "<?xml version=\"1.0\" encoding=\"ISO-8859-2\"?>" +
+                "<digitalObject xmlns=\"" + FOXML_NS + "\" PID=\"uuid:1\">" +
+                "<datastream ID=\"DC\" CONTROL_GROUP=\"X\" STATE=\"A\" VERSIONABLE=\"false\">" +
+                "<datastreamVersion ID=\"DC.0\" LABEL=\"\u017dlu\u0165ou\u010dk\u00fd k\u016f\u0148\" MIMETYPE=\"text/xml\">" +
+                "<xmlContent><dc xmlns=\"http://purl.org/dc/elements/1.1/\">P\u0159\u00edli\u0161</dc></xmlContent>" +
+                "</datastreamVersion></datastream></digitalObject>";
+        DatastreamIndex index = DatastreamIndex.build(foxml.getBytes("ISO-8859-2"));
+        assertEquals("\u017dlu\u0165ou\u010dk\u00fd k\u016f\u0148", index.get("DC").getLabel());
+        assertEquals("P\u0159\u00edli\u0161", parseXml(IOUtils.toByteArray(index.openXmlContent("DC"))).getDocumentElement().getTextContent());
+    }
+
+    private static void assertContentEquals(byte[] foxml, DatastreamIndex index) throws Exception {
+        Document document = parseXml(foxml);
+        NodeList datastreams = document.getElementsByTagNameNS(FOXML_NS, "datastream");
+        for (int i = 0; i < datastreams.getLength(); i++) {
+            Element datastream = (Element) datastreams.item(i);
+            String id = datastream.getAttribute("ID");
+            NodeList xmlContents = datastream.getElementsByTagNameNS(FOXML_NS, "xmlContent");
+            if (xmlContents.getLength() == 0) {
+                assertNull(index.openXmlContent(id), id);
+                continue;
+            }
+            Element expected = firstChildElement((Element) xmlContents.item(xmlContents.getLength() - 1));
+            try (InputStream content = index.openXmlContent(id)) {
+                assertNotNull(content, id);
+                Element actual = parseXml(IOUtils.toByteArray(content)).getDocumentElement();
+                assertSameTree(expected, actual);
+            }
+        }
+    }
+
+    private static Element firstChildElement(Element element) {
+        return childElements(element).get(0);
+    }
+
+    private static List<String> datastreamIds(byte[] foxml) throws Exception {
+        NodeList datastreams = parseXml(foxml).getElementsByTagNameNS(FOXML_NS, "datastream");
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < datastreams.getLength(); i++) {
+            ids.add(((Element) datastreams.item(i)).getAttribute("ID"));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import org.ceskaexpedice.akubra.core.repository.ObjectCacheStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FoxmlCacheTest {
+
+    @Test
+    public void testHitMissAndInvalidate() {
+        FoxmlCache cache = new FoxmlCache(1024, 0);
+        AtomicInteger loads = new AtomicInteger();
+        byte[] first = cache.get("uuid:1", () -> { loads.incrementAndGet(); return new byte[10]; });
+        byte[] second = cache.get("uuid:1", () -> { loads.incrementAndGet(); return new byte[10]; });
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+
+        cache.invalidate("uuid:1");
+        cache.get("uuid:1", () -> { loads.incrementAndGet(); return new byte[10]; });
+        assertEquals(2, loads.get());
+
+        ObjectCacheStats stats = cache.getStats();
+        assertTrue(stats.enabled());
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(10, stats.weightBytes());
+    }
+
+    @Test
+    public void testMissingObjectNotCached() {
+        FoxmlCache cache = new FoxmlCache(1024, 0);
+        assertNull(cache.get("uuid:missing", () -> null));
+        assertEquals(0, cache.getStats().entryCount());
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() {
+        FoxmlCache cache = new FoxmlCache(1024, 0);
+        byte[] stale = cache.get("uuid:1", () -> {
+            // simulates a write that completes while the old bytes are being read
+            cache.invalidate("uuid:1");
+            return new byte[10];
+        });
+        assertNotNull(stale);
+        assertEquals(0, cache.getStats().entryCount());
+    }
+
+    @Test
+    public void testSizeBound() {
+        FoxmlCache cache = new FoxmlCache(100, 0);
+        assertNotNull(cache.get("uuid:big", () -> new byte[200]));
+        assertEquals(0, cache.getStats().entryCount());
+        for (int i = 0; i < 50; i++) {
+            cache.get("uuid:" + i, () -> new byte[10]);
+        }
+        ObjectCacheStats stats = cache.getStats();
+        assertTrue(stats.weightBytes() <= 100);
+        assertTrue(stats.evictionCount() > 0);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.bind.JAXBException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JaxbPoolTest {
+
+    @Test
+    public void testLazyGrowthAndReuse() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        JaxbPool<Object> pool = new JaxbPool<>("test", 2, 100, () -> { created.incrementAndGet(); return new Object(); });
+        assertEquals(0, created.get());
+        Object first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testHardCapAndTimeout() throws Exception {
+        JaxbPool<Object> pool = new JaxbPool<>("test", 2, 50, Object::new);
+        Object first = pool.acquire();
+        pool.acquire();
+        assertEquals(2, pool.getInUseCount());
+        assertThrows(RepositoryException.class, pool::acquire);
+        pool.discard(first);
+        assertNotNull(pool.acquire());
+    }
+
+    @Test
+    public void testFailedCreationFreesPermit() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        JaxbPool<Object> pool = new JaxbPool<>("test", 1, 50, () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new JAXBException("broken");
+            }
+            return new Object();
+        });
+        assertThrows(JAXBException.class, pool::acquire);
+        assertEquals(0, pool.getInUseCount());
+        assertNotNull(pool.acquire());
+    }
+
+    @Test
+    public void testWarmup() throws Exception {
+        JaxbPool<Object> pool = new JaxbPool<>("test", 3, 50, Object::new);
+        Object inUse = pool.acquire();
+        assertEquals(2, pool.warmup(10));
+        assertEquals(2, pool.getIdleCount());
+        pool.release(inUse);
+        assertEquals(0, pool.warmup(10));
+        assertEquals(3, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.core.repository.impl;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessingIndexUpdateQueueTest {
+
+    @Test
+    public void testCoalescing() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> applied = new CopyOnWriteArrayList<>();
+        AtomicInteger commits = new AtomicInteger();
+        ProcessingIndexUpdateQueue queue = new ProcessingIndexUpdateQueue(handler(applied, commits, started, release), 1, 100);
+        queue.rebuild("uuid:blocker");
+        for (int i = 0; i < 10; i++) {
+            queue.rebuild("uuid:1");
+        }
+        queue.delete("uuid:2", true, null);
+        queue.rebuild("uuid:2");
+        release.countDown();
+        assertTrue(queue.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("uuid:blocker rebuild", "uuid:1 rebuild", "uuid:2 delete+targets rebuild"), applied);
+        assertEquals(1, commits.get());
+        queue.shutdown();
+    }
+
+    @Test
+    public void testDeleteWithKnownRelations() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> applied = new CopyOnWriteArrayList<>();
+        ProcessingIndexUpdateQueue queue = new ProcessingIndexUpdateQueue(handler(applied, new AtomicInteger(), started, release), 1, 100);
+        Element relsExt = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().createElement("RDF");
+        Element changedRelsExt = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().createElement("RDF");
+        queue.rebuild("uuid:blocker");
+        queue.delete("uuid:1", false, relsExt);
+        // the index is in sync with the RELS-EXT before the first change
+        queue.updateRelations("uuid:2", relsExt);
+        queue.delete("uuid:2", true, changedRelsExt);
+        // relations of a plain rebuild are not known
+        queue.rebuild("uuid:3");
+        queue.delete("uuid:3", false, relsExt);
+        release.countDown();
+        assertTrue(queue.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("uuid:blocker rebuild", "uuid:1 delete-by-id", "uuid:2 delete-by-id", "uuid:3 delete"), applied);
+        queue.shutdown();
+    }
+
+    @Test
+    public void testRequestWhileRunning() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> applied = new CopyOnWriteArrayList<>();
+        ProcessingIndexUpdateQueue queue = new ProcessingIndexUpdateQueue(handler(applied, new AtomicInteger(), started, release), 4, 100);
+        queue.rebuild("uuid:1");
+        started.await();
+        queue.deleteRelations("uuid:1");
+        release.countDown();
+        assertTrue(queue.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("uuid:1 rebuild", "uuid:1 delete"), applied);
+        queue.shutdown();
+    }
+
+    @Test
+    public void testBackPressureAndShutdownDrain() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> applied = new CopyOnWriteArrayList<>();
+        ProcessingIndexUpdateQueue queue = new ProcessingIndexUpdateQueue(handler(applied, new AtomicInteger(), started, release), 1, 2);
+        queue.rebuild("uuid:0");
+        started.await();
+        queue.rebuild("uuid:1");
+        queue.rebuild("uuid:2");
+        Thread producer = new Thread(() -> queue.rebuild("uuid:3"));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        queue.shutdown();
+        assertEquals(4, applied.size());
+        assertEquals(0, queue.getPendingCount());
+        assertThrows(IllegalStateException.class, () -> queue.rebuild("uuid:4"));
+    }
+
+    private static ProcessingIndexUpdateQueue.Handler handler(List<String> applied, AtomicInteger commits, CountDownLatch started, CountDownLatch release) {
+        return new ProcessingIndexUpdateQueue.Handler() {
+            @Override
+            public void apply(String pid, ProcessingIndexUpdateQueue.Update update) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                StringBuilder sb = new StringBuilder(pid);
+                if (update.isDeleteRelations()) {
+                    sb.append(update.isDeleteTargetRelations() ? " delete+targets" : " delete");
+                } else if (update.isDeleteDescription() && update.isPreviousRelsExtKnown()) {
+                    sb.append(" delete-by-id");
+                }
+                if (update.isRebuild()) {
+                    sb.append(" rebuild");
+                }
+                applied.add(sb.toString());
+            }
+
+            @Override
+            public void commit() {
+                commits.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.impl.utils;
+
+import org.ceskaexpedice.akubra.InspectionField;
+import org.ceskaexpedice.akubra.impl.utils.relsext.RelsExtInternalSaxUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.EnumSet;
+
+import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectInspectionSaxHandlerTest {
+
+    private static final String[] RESOURCES = {
+            "foxml/534faa9e-b675-46f3-a4db-e107127a1112.xml",
+            "foxml/686cf4a1-f440-4d46-8353-4af3629fc4c8.xml",
+            "foxml/bbae3d9d-ee9f-43a3-9431-024db12de070.xml",
+            "foxml/docWithQuoteEntities.xml",
+            "org/ceskaexpedice/akubra/impl/utils/relsext/info%3Afedora%2Fuuid%3A7e6619ab-e814-4505-a2c1-c94acd8bb3ea"
+    };
+
+    @Test
+    public void testSameResultsAsSingleFieldParsers() throws Exception {
+        for (String resource : RESOURCES) {
+            byte[] foxml = loadResource(resource);
+            ObjectInspectionSaxHandler handler = InternalSaxUtils.inspect(new ByteArrayInputStream(foxml),
+                    EnumSet.allOf(InspectionField.class));
+            assertEquals(RelsExtInternalSaxUtils.getModel(new ByteArrayInputStream(foxml)), handler.getModel(), resource);
+            assertEquals(RelsExtInternalSaxUtils.getTilesUrl(new ByteArrayInputStream(foxml)), handler.getTilesUrl(), resource);
+            assertEquals(RelsExtInternalSaxUtils.getPidOfFirstChild(new ByteArrayInputStream(foxml)), handler.getPidOfFirstChild(), resource);
+            assertEquals(InternalSaxUtils.getDatastreamNames(new ByteArrayInputStream(foxml)), handler.getDatastreamNames(), resource);
+            ObjectPropertiesSaxParser properties = new ObjectPropertiesSaxParser(new ByteArrayInputStream(foxml));
+            assertEquals(properties.getProperty("info:fedora/fedora-system:def/model#label"),
+                    handler.getObjectProperties().get("info:fedora/fedora-system:def/model#label"), resource);
+        }
+    }
+
+    @Test
+    public void testStopsAfterRequestedFields() throws Exception {
+        byte[] foxml = loadResource("foxml/bbae3d9d-ee9f-43a3-9431-024db12de070.xml");
+        CountingInputStream counting = new CountingInputStream(new ByteArrayInputStream(foxml));
+        ObjectInspectionSaxHandler handler = InternalSaxUtils.inspect(counting, EnumSet.of(InspectionField.OBJECT_PROPERTIES));
+        assertNotNull(handler.getObjectProperties());
+        assertNull(handler.getModel());
+        assertNull(handler.getDatastreamNames());
+        assertTrue(counting.count < foxml.length);
+    }
+
+    private static class CountingInputStream extends java.io.FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws java.io.IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws java.io.IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.impl.utils;
+
+import org.ceskaexpedice.akubra.RepositoryException;
+import org.ceskaexpedice.akubra.core.repository.CoreRepository;
+import org.ceskaexpedice.akubra.processingindex.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ProcessingIndexUtilsTest {
+
+    private static final String PID = "uuid:1";
+
+    private CoreRepository coreRepository;
+    private ProcessingIndex processingIndex;
+
+    @BeforeEach
+    void beforeEach() {
+        processingIndex = mock(ProcessingIndex.class);
+        coreRepository = mock(CoreRepository.class);
+        when(coreRepository.getProcessingIndex()).thenReturn(processingIndex);
+    }
+
+    @Test
+    public void testStreamChildrenMatchesLists() {
+        ProcessingIndexItem page = relation(PID, "hasPage", "uuid:page");
+        ProcessingIndexItem article = relation(PID, "contains", "uuid:article");
+        ProcessingIndexItem donator = relation(PID, "hasDonator", "donator:norway");
+        indexed(page, article, donator);
+
+        // relations to anything but objects are left out of both
+        assertEquals(List.of(page, article), ProcessingIndexUtils.streamChildrenRelation(PID, coreRepository).collect(Collectors.toList()));
+        OwnedAndFosteredChildren children = ProcessingIndexUtils.getChildrenRelation(PID, coreRepository);
+        assertEquals(List.of(page), children.own());
+        assertEquals(List.of(article), children.foster());
+    }
+
+    @Test
+    public void testStreamChildrenIsLazy() {
+        AtomicInteger read = new AtomicInteger();
+        when(processingIndex.stream(any())).thenAnswer(invocation -> Stream.iterate(0, i -> i + 1)
+                .peek(i -> read.incrementAndGet())
+                .map(i -> relation(PID, "hasPage", "uuid:page" + i)));
+        Stream<ProcessingIndexItem> children = ProcessingIndexUtils.streamChildrenRelation(PID, coreRepository);
+        assertEquals(0, read.get());
+        assertEquals(3, children.limit(3).count());
+        assertEquals(3, read.get());
+    }
+
+    @Test
+    public void testListsKeepIndexOrderPastLookAtLimit() {
+        List<ProcessingIndexItem> pages = new ArrayList<>();
+        for (int i = ProcessingIndexUtils.DEFAULT_MAX_LOOKAT_VALUE + 5; i > 0; i--) {
+            pages.add(relation(PID, "hasPage", "uuid:page" + i));
+        }
+        indexed(pages.toArray(new ProcessingIndexItem[0]));
+
+        OwnedAndFosteredChildren children = ProcessingIndexUtils.getChildrenRelation(PID, coreRepository);
+        assertEquals(pages, children.own());
+        // pages of rows without a sort, no cursor
+        verify(processingIndex, times(2)).lookAt(any(), any());
+        verify(processingIndex, never()).stream(any());
+    }
+
+    @Test
+    public void testStreamParentsMatchesLists() {
+        ProcessingIndexItem foster = relation("uuid:a", "isOnPage", PID);
+        ProcessingIndexItem own = relation("uuid:b", "hasPage", PID);
+        ProcessingIndexItem otherFoster = relation("uuid:c", "contains", PID);
+        indexed(foster, own, otherFoster);
+
+        assertEquals(List.of(foster, own, otherFoster), ProcessingIndexUtils.streamParentsRelation(PID, coreRepository).collect(Collectors.toList()));
+        OwnedAndFosteredParents parents = ProcessingIndexUtils.getParentsRelation(PID, coreRepository);
+        assertEquals(own, parents.own());
+        assertEquals(List.of(foster, otherFoster), parents.foster());
+    }
+
+    @Test
+    public void testStreamParentsFailsOnSecondOwnParent() {
+        ProcessingIndexItem own = relation("uuid:a", "hasPage", PID);
+        ProcessingIndexItem foster = relation("uuid:b", "isOnPage", PID);
+        ProcessingIndexItem secondOwn = relation("uuid:c", "hasUnit", PID);
+        indexed(own, foster, secondOwn);
+
+        // the stream fails only when it reaches the second own parent
+        assertEquals(List.of(own, foster), ProcessingIndexUtils.streamParentsRelation(PID, coreRepository).limit(2).collect(Collectors.toList()));
+        assertThrows(RepositoryException.class, () -> ProcessingIndexUtils.streamParentsRelation(PID, coreRepository).collect(Collectors.toList()));
+        assertThrows(RepositoryException.class, () -> ProcessingIndexUtils.getParentsRelation(PID, coreRepository));
+
+        ConflictingOwnedAndFosteredParents conflicting = ProcessingIndexUtils.getConflictingOwnerAndFosteredParents(PID, coreRepository);
+        assertEquals(List.of(own, secondOwn), conflicting.ownItems());
+        assertEquals(List.of(foster), conflicting.foster());
+    }
+
+    @Test
+    public void testChunks() {
+        List<String> pids = new ArrayList<>();
+        for (int i = 0; i < 2 * ProcessingIndexUtils.DEFAULT_BULK_CHUNK_SIZE + 50; i++) {
+            pids.add("uuid:" + i);
+        }
+        pids.add("uuid:0");
+        List<List<String>> chunks = ProcessingIndexUtils.chunks(pids);
+        assertEquals(List.of(ProcessingIndexUtils.DEFAULT_BULK_CHUNK_SIZE, ProcessingIndexUtils.DEFAULT_BULK_CHUNK_SIZE, 50),
+                chunks.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(pids.subList(0, pids.size() - 1), chunks.stream().flatMap(List::stream).collect(Collectors.toList()));
+        assertTrue(ProcessingIndexUtils.chunks(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testAnyOf() {
+        assertEquals("source:(\"uuid:1\" OR \"a\\\"b\" OR \"c\\\\d\")",
+                ProcessingIndexUtils.anyOf("source", List.of("uuid:1", "a\"b", "c\\d")));
+    }
+
+    @Test
+    public void testGetModelsInInputOrder() {
+        indexedByPid(pid -> pid.equals("uuid:missing") ? List.of() : List.of(description(pid, "model:page")));
+        List<String> pids = new ArrayList<>();
+        for (int i = 2 * ProcessingIndexUtils.DEFAULT_BULK_CHUNK_SIZE + 50; i > 0; i--) {
+            pids.add("uuid:" + i);
+        }
+        pids.add(1, "uuid:missing");
+        pids.add("uuid:7");
+
+        Map<String, String> models = ProcessingIndexUtils.getModels(pids, coreRepository);
+        List<String> expected = pids.stream().distinct().filter(pid -> !pid.equals("uuid:missing")).collect(Collectors.toList());
+        assertEquals(expected, new ArrayList<>(models.keySet()));
+        assertTrue(models.values().stream().allMatch("page"::equals));
+        // one query per chunk of distinct PIDs
+        verify(processingIndex, times(3)).lookAt(any(), any());
+    }
+
+    @Test
+    public void testBulkParents() {
+        ProcessingIndexItem ofA = relation("uuid:parent", "hasPage", "uuid:a");
+        ProcessingIndexItem ofB = relation("uuid:parent", "hasPage", "uuid:b");
+        ProcessingIndexItem fosterOfB = relation("uuid:article", "isOnPage", "uuid:b");
+        indexedByPid(pid -> switch (pid) {
+            case "uuid:a" -> List.of(ofA);
+            case "uuid:b" -> List.of(ofB, fosterOfB);
+            default -> List.of();
+        });
+
+        Map<String, List<ProcessingIndexItem>> parents = ProcessingIndexUtils.getParents(List.of("uuid:b", "uuid:a", "uuid:b", "uuid:orphan"), coreRepository);
+        assertEquals(List.of("uuid:b", "uuid:a", "uuid:orphan"), new ArrayList<>(parents.keySet()));
+        assertEquals(List.of(ofB, fosterOfB), parents.get("uuid:b"));
+        assertEquals(List.of(ofA), parents.get("uuid:a"));
+        assertEquals(List.of(), parents.get("uuid:orphan"));
+    }
+
+    @Test
+    public void testBulkChildrenMatchSingle() {
+        indexedByPid(pid -> switch (pid) {
+            case "uuid:1" -> List.of(relation(pid, "hasPage", "uuid:page"), relation(pid, "hasDonator", "donator:norway"));
+            case "uuid:2" -> List.of(relation(pid, "hasUnit", "uuid:unit"), relation(pid, "contains", "uuid:article"));
+            default -> List.of();
+        });
+
+        Map<String, OwnedAndFosteredChildren> children = ProcessingIndexUtils.getChildrenRelation(List.of("uuid:2", "uuid:leaf", "uuid:1", "uuid:2"), coreRepository);
+        assertEquals(List.of("uuid:2", "uuid:leaf", "uuid:1"), new ArrayList<>(children.keySet()));
+        for (String pid : children.keySet()) {
+            assertEquals(ProcessingIndexUtils.getChildrenRelation(pid, coreRepository), children.get(pid), pid);
+        }
+        assertEquals(1, children.get("uuid:1").own().size());
+        assertEquals(List.of(), children.get("uuid:1").foster());
+        assertEquals(1, children.get("uuid:2").foster().size());
+        assertEquals(new OwnedAndFosteredChildren(List.of(), List.of()), children.get("uuid:leaf"));
+    }
+
+    /**
+     * Answers every query with the items of the quoted PIDs it asks for.
+     */
+    private void indexedByPid(Function<String, List<ProcessingIndexItem>> itemsByPid) {
+        indexed(params -> {
+            Matcher quoted = Pattern.compile("\"([^\"]*)\"").matcher(params.getQueryString());
+            List<ProcessingIndexItem> found = new ArrayList<>();
+            while (quoted.find()) {
+                found.addAll(itemsByPid.apply(quoted.group(1)));
+            }
+            return found;
+        });
+    }
+
+    private void indexed(ProcessingIndexItem... items) {
+        indexed(params -> List.of(items));
+    }
+
+    /**
+     * Answers cursor streams with all the items and lookAt with the page of them the offset and rows ask for.
+     */
+    private void indexed(Function<ProcessingIndexQueryParameters, List<ProcessingIndexItem>> items) {
+        when(processingIndex.stream(any())).thenAnswer(invocation -> items.apply(invocation.getArgument(0)).stream());
+        doAnswer(invocation -> {
+            ProcessingIndexQueryParameters params = invocation.getArgument(0);
+            Consumer<ProcessingIndexItem> action = invocation.getArgument(1);
+            items.apply(params).stream().skip(params.getOffset()).limit(params.getRows()).forEach(action);
+            return null;
+        }).when(processingIndex).lookAt(any(), any());
+    }
+
+    private static ProcessingIndexItem description(String source, String model) {
+        return new ProcessingIndexItem(source, "description", model, null, null, null, null,
+                "description|" + source, null, null, null);
+    }
+
+    private static ProcessingIndexItem relation(String source, String relation, String target) {
+        return new ProcessingIndexItem(source, "relation", null, null, null, null, null,
+                "relation|" + source + "|" + relation + "|" + target, relation, target, null);
+    }
+}
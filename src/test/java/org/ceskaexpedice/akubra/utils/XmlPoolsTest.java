@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.akubra.utils;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.xpath.XPathConstants;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XmlPoolsTest {
+
+    private static final Logger LOGGER = Logger.getLogger(XmlPoolsTest.class.getName());
+
+    private static final String RELS_EXT = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" " +
+            "xmlns:kramerius=\"http://www.nsdl.org/ontologies/relationships#\">" +
+            "<rdf:Description rdf:about=\"info:fedora/uuid:1\">" +
+            "<kramerius:hasPage rdf:resource=\"info:fedora/uuid:2\"/><kramerius:tiles-url> http://tiles </kramerius:tiles-url>" +
+            "</rdf:Description></rdf:RDF>";
+
+    @Test
+    public void testParsersAreReusedAfterFailure() throws Exception {
+        long reusedBefore = stats("saxParser-ns").reused();
+        assertThrows(SAXException.class, () -> XmlPools.parse(stream("<broken"), new DefaultHandler(), true));
+        AtomicInteger elements = new AtomicInteger();
+        XmlPools.parse(stream(RELS_EXT), new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                elements.incrementAndGet();
+            }
+        }, true);
+        assertEquals(4, elements.get());
+        assertTrue(stats("saxParser-ns").reused() > reusedBefore);
+    }
+
+    @Test
+    public void testDocumentsAndXPath() throws Exception {
+        Document document = XmlPools.parseDocument(stream(RELS_EXT), true);
+        NodeList nodes = (NodeList) XmlPools.evaluate("/rdf:RDF/rdf:Description/*", document, XPathConstants.NODESET);
+        assertEquals(2, nodes.getLength());
+        assertEquals(" http://tiles ", XmlPools.evaluate("//kramerius:tiles-url/text()", document, XPathConstants.STRING));
+        assertNull(XmlPools.parseDocument(stream(RELS_EXT), false).getDocumentElement().getNamespaceURI());
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                results.add(executor.submit(() -> {
+                    Document document = XmlPools.parseDocument(stream(RELS_EXT), true);
+                    return ((NodeList) XmlPools.evaluate("/rdf:RDF/rdf:Description/*", document, XPathConstants.NODESET)).getLength();
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(2, (int) result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        XmlPoolStats stats = stats("documentBuilder-ns");
+        assertTrue(stats.idle() <= stats.capacity());
+        assertTrue(stats.created() < stats.acquired());
+    }
+
+    /**
+     * Pooled parsing compared to a new factory and parser per call
+     */
+    @Disabled
+    @Test
+    void testParsePerformance() throws Exception {
+        int calls = 100_000;
+        byte[] xml = RELS_EXT.getBytes(StandardCharsets.UTF_8);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                SAXParserFactory factory = SAXParserFactory.newInstance();
+                factory.setNamespaceAware(true);
+                factory.newSAXParser().parse(new ByteArrayInputStream(xml), new DefaultHandler());
+            }
+            long unpooled = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                XmlPools.parse(new ByteArrayInputStream(xml), new DefaultHandler(), true);
+            }
+            long pooled = System.nanoTime() - start;
+            LOGGER.info(String.format("new parser per call: %d ms, pooled: %d ms", unpooled / 1_000_000, pooled / 1_000_000));
+        }
+    }
+
+    private static XmlPoolStats stats(String name) {
+        return XmlPools.getStats().stream().filter(s -> s.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
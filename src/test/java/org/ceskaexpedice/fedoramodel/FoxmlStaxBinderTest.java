@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2025 Inovatika
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.ceskaexpedice.fedoramodel;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.ceskaexpedice.testutils.AkubraTestsUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FoxmlStaxBinderTest {
+
+    private static final Logger LOGGER = Logger.getLogger(FoxmlStaxBinderTest.class.getName());
+
+    private static final String[] RESOURCES = {"foxml/534faa9e-b675-46f3-a4db-e107127a1112.xml",
+            "foxml/686cf4a1-f440-4d46-8353-4af3629fc4c8.xml", "foxml/bbae3d9d-ee9f-43a3-9431-024db12de070.xml",
+            "foxml/docWithQuoteEntities.xml"};
+
+    @Test
+    public void testReadMatchesSource() throws Exception {
+        for (String resource : RESOURCES) {
+            byte[] foxml = loadResource(resource);
+            assertSameTree(parseXml(foxml).getDocumentElement(), parseXml(write(read(foxml))).getDocumentElement(), resource);
+        }
+    }
+
+    @Test
+    public void testWriteIsStable() throws Exception {
+        for (String resource : RESOURCES) {
+            // the first pass adds the default FOXML namespace to the scope of detached xmlContent, like JAXB does
+            byte[] written = write(read(write(read(loadResource(resource)))));
+            assertEquals(new String(written, StandardCharsets.UTF_8), new String(write(read(written)), StandardCharsets.UTF_8), resource);
+        }
+    }
+
+    @Test
+    public void testOptionalAttributes() throws Exception {
+        String foxml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<foxml:digitalObject xmlns:foxml=\"" + FoxmlStaxBinder.FOXML_NAMESPACE_URI + "\" VERSION=\"1.1\" PID=\"uuid:1\">" +
+                "<foxml:datastream ID=\" DC \" CONTROL_GROUP=\"X\">" +
+                "<foxml:datastreamVersion ID=\"DC.0\" ALT_IDS=\"a  b\" CREATED=\"2020-01-01T00:00:00.000Z\">" +
+                "<foxml:xmlContent><dc xmlns=\"http://purl.org/dc/elements/1.1/\" xmlns:x=\"urn:x\" x:a=\"1\"><foxml:ref/>text</dc></foxml:xmlContent>" +
+                "</foxml:datastreamVersion>" +
+                "<foxml:datastreamVersion ID=\"DC.1\" SIZE=\"3\" VERSIONABLE=\"1\"><foxml:binaryContent>\nYWJj\n</foxml:binaryContent></foxml:datastreamVersion>" +
+                "</foxml:datastream></foxml:digitalObject>";
+        DigitalObject object = read(foxml.getBytes(StandardCharsets.UTF_8));
+        assertNull(object.getFEDORAURI());
+        assertTrue(object.getOtherAttributes().isEmpty());
+        DatastreamType datastream = object.getDatastream().get(0);
+        assertEquals("DC", datastream.getID());
+        assertNull(datastream.state);
+        assertNull(datastream.versionable);
+        DatastreamVersionType first = datastream.getDatastreamVersion().get(0);
+        assertEquals(List.of("a", "b"), first.getALTIDS());
+        assertNull(first.size);
+        assertEquals("2020-01-01T00:00:00.000Z", first.getCREATED().toXMLFormat());
+        Element dc = first.getXmlContent().getAny().get(0);
+        assertSame(dc, dc.getOwnerDocument().getDocumentElement());
+        assertEquals("1", dc.getAttributeNS("urn:x", "a"));
+        assertEquals(FoxmlStaxBinder.FOXML_NAMESPACE_URI, ((Element) dc.getFirstChild()).getNamespaceURI());
+        DatastreamVersionType second = datastream.getDatastreamVersion().get(1);
+        assertEquals(3L, second.getSIZE());
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), second.getBinaryContent());
+
+        // the inherited foxml prefix stays declared within the detached content
+        Element reread = read(write(object)).getDatastream().get(0).getDatastreamVersion().get(0).getXmlContent().getAny().get(0);
+        assertEquals(FoxmlStaxBinder.FOXML_NAMESPACE_URI, ((Element) reread.getFirstChild()).getNamespaceURI());
+        assertEquals("text", reread.getTextContent());
+    }
+
+    @Test
+    public void testMatchesJaxb() throws Exception {
+        JAXBContext context = JAXBContext.newInstance(DigitalObject.class);
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Marshaller marshaller = context.createMarshaller();
+        for (String resource : RESOURCES) {
+            byte[] foxml = loadResource(resource);
+            DigitalObject jaxbObject = (DigitalObject) unmarshaller.unmarshal(new ByteArrayInputStream(foxml));
+            DigitalObject staxObject = read(foxml);
+            // same object tree: JAXB writes both the same way
+            assertEquals(new String(jaxbMarshal(marshaller, jaxbObject), StandardCharsets.UTF_8),
+                    new String(jaxbMarshal(marshaller, staxObject), StandardCharsets.UTF_8), resource);
+            // same infoset: each binding reads what the other one wrote
+            assertSameTree(parseXml(jaxbMarshal(marshaller, jaxbObject)).getDocumentElement(), parseXml(write(staxObject)).getDocumentElement(), resource);
+            DigitalObject fromStax = (DigitalObject) unmarshaller.unmarshal(new ByteArrayInputStream(write(staxObject)));
+            assertEquals(new String(jaxbMarshal(marshaller, jaxbObject), StandardCharsets.UTF_8),
+                    new String(jaxbMarshal(marshaller, fromStax), StandardCharsets.UTF_8), resource);
+        }
+    }
+
+    @Disabled("benchmark, run manually")
+    @Test
+    public void testPerformance() throws Exception {
+        JAXBContext context = JAXBContext.newInstance(DigitalObject.class);
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Marshaller marshaller = context.createMarshaller();
+        byte[] foxml = loadResource(RESOURCES[0]);
+        int rounds = 20000;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                jaxbMarshal(marshaller, (DigitalObject) unmarshaller.unmarshal(new ByteArrayInputStream(foxml)));
+            }
+            long jaxb = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                write(read(foxml));
+            }
+            long stax = System.nanoTime() - start;
+            LOGGER.info(String.format("read+write x %d: JAXB %d ms, StAX %d ms", rounds, jaxb / 1_000_000, stax / 1_000_000));
+        }
+    }
+
+    private static DigitalObject read(byte[] foxml) throws Exception {
+        return FoxmlStaxBinder.read(new ByteArrayInputStream(foxml));
+    }
+
+    private static byte[] write(DigitalObject object) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FoxmlStaxBinder.write(object, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] jaxbMarshal(Marshaller marshaller, DigitalObject object) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marshaller.marshal(object, out);
+        return out.toByteArray();
+    }
+}
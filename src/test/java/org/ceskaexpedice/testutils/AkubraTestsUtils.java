@@ -16,12 +16,25 @@
  */
 package org.ceskaexpedice.testutils;
 
+import org.apache.commons.io.IOUtils;
 import org.ceskaexpedice.akubra.config.RepositoryConfiguration;
 import org.ceskaexpedice.hazelcast.HazelcastConfiguration;
-
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
 public final class AkubraTestsUtils {
 
 
@@ -69,6 +82,81 @@ public final class AkubraTestsUtils {
         return config;
     }
 
+    /**
+     * Reads a test resource, e.g. one of the FOXML fixtures under {@code foxml/}.
+     */
+    public static byte[] loadResource(String resource) throws Exception {
+        try (InputStream is = AkubraTestsUtils.class.getClassLoader().getResourceAsStream(resource)) {
+            assertNotNull(is, resource);
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    public static Document parseXml(byte[] bytes) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+    }
+
+    public static List<Element> childElements(Element element) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    public static void assertSameTree(Element expected, Element actual) {
+        assertSameTree(expected, actual, "");
+    }
+
+    /**
+     * Compares elements, attributes and non-whitespace text; namespace declarations and comments are ignored.
+     */
+    public static void assertSameTree(Element expected, Element actual, String message) {
+        assertEquals(expected.getNamespaceURI(), actual.getNamespaceURI(), message);
+        assertEquals(expected.getLocalName(), actual.getLocalName(), message);
+        assertEquals(attributeCount(expected), attributeCount(actual), message + " " + expected.getLocalName());
+        for (int i = 0; i < expected.getAttributes().getLength(); i++) {
+            Attr attr = (Attr) expected.getAttributes().item(i);
+            if (!"http://www.w3.org/2000/xmlns/".equals(attr.getNamespaceURI())) {
+                String value = actual.getAttributeNS(attr.getNamespaceURI(), attr.getLocalName());
+                if ("ALT_IDS".equals(attr.getLocalName())) {
+                    assertEquals(attr.getValue().trim().replaceAll("\\s+", " "), value, message);
+                } else {
+                    assertEquals(attr.getValue(), value, message);
+                }
+            }
+        }
+        List<Element> expectedChildren = childElements(expected);
+        List<Element> actualChildren = childElements(actual);
+        assertEquals(expectedChildren.size(), actualChildren.size(), message + " " + expected.getLocalName());
+        for (int i = 0; i < expectedChildren.size(); i++) {
+            assertSameTree(expectedChildren.get(i), actualChildren.get(i), message);
+        }
+        if (expectedChildren.isEmpty()) {
+            String expectedText = expected.getTextContent();
+            String actualText = actual.getTextContent();
+            if ("binaryContent".equals(expected.getLocalName())) {
+                expectedText = expectedText.replaceAll("\\s+", "");
+                actualText = actualText.replaceAll("\\s+", "");
+            }
+            assertEquals(expectedText, actualText, message);
+        }
+    }
+
+    private static int attributeCount(Element element) {
+        int count = 0;
+        for (int i = 0; i < element.getAttributes().getLength(); i++) {
+            if (!"http://www.w3.org/2000/xmlns/".equals(element.getAttributes().item(i).getNamespaceURI())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public static void sleep(int millis){
         try {
             Thread.sleep(millis);